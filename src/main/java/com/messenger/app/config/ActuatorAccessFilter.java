@@ -0,0 +1,45 @@
+package com.messenger.app.config;
+
+import com.messenger.app.service.UserService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Restricts the actuator's metrics endpoints to signed-in admins, as they reveal traffic
+ * and capacity figures. A servlet filter rather than a HandlerInterceptor, as interceptors
+ * registered in WebConfig do not apply to actuator endpoints.
+ */
+public class ActuatorAccessFilter extends OncePerRequestFilter {
+    
+    private final UserService userService;
+    
+    public ActuatorAccessFilter(UserService userService) {
+        this.userService = userService;
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        HttpSession session = request.getSession(false);
+        Long userId = session != null ? (Long) session.getAttribute("userId") : null;
+        if (userId == null) {
+            response.sendError(HttpStatus.UNAUTHORIZED.value());
+            return;
+        }
+        boolean isAdmin = userService.findById(userId)
+            .map(user -> user.getIsAdmin() != null && user.getIsAdmin())
+            .orElse(false);
+        if (!isAdmin) {
+            response.sendError(HttpStatus.FORBIDDEN.value());
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,40 @@
+package com.messenger.app.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.util.MimeType;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+// Accepts CBOR payloads from clients that negotiated the compact encoding
+public class CborMessageConverter extends AbstractMessageConverter {
+    
+    public static final MimeType APPLICATION_CBOR = new MimeType("application", "cbor");
+    
+    private final CBORMapper cborMapper;
+    
+    public CborMessageConverter(CBORMapper cborMapper) {
+        super(APPLICATION_CBOR);
+        this.cborMapper = cborMapper;
+        setStrictContentTypeMatch(true);
+    }
+    
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return true;
+    }
+    
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+        Object payload = message.getPayload();
+        if (payload instanceof byte[] bytes) {
+            return cborMapper.readValue(bytes, targetClass);
+        }
+        return null;
+    }
+    
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+        return cborMapper.writeValueAsBytes(payload);
+    }
+}
@@ -0,0 +1,176 @@
+package com.messenger.app.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor for the STOMP inbound channel that keeps each conversation's sends in order.
+ *
+ * Frames for /app/chat/{conversationId} are queued on one of messenger.stomp.stripes
+ * single-threaded stripes chosen by conversation id, so sends to one conversation are
+ * persisted and broadcast in arrival order, and a hot conversation occupies one thread
+ * rather than the whole pool. All other frames run on the shared pool as before.
+ * Each stripe holds at most messenger.stomp.stripe-queue-capacity frames; a sender facing a
+ * full stripe waits up to messenger.stomp.stripe-offer-timeout-ms, which slows only that
+ * connection, and the frame is then rejected (the client gets a STOMP ERROR and reconnects).
+ * It is a TaskExecutor because Spring exposes it as the clientInboundChannelExecutor bean,
+ * which WebSocketMessageBrokerStats injects by that type.
+ */
+@Component
+public class ConversationStripedExecutor implements TaskExecutor {
+    
+    private static final Logger log = LoggerFactory.getLogger(ConversationStripedExecutor.class);
+    
+    private static final String CHAT_DESTINATION_PREFIX = "/app/chat/";
+    
+    private final Executor sharedExecutor;
+    private final List<BlockingQueue<Queued>> stripes = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final long offerTimeoutMillis;
+    private volatile boolean running = true;
+    
+    private final Timer queueWait;
+    private final Counter rejected;
+    
+    public ConversationStripedExecutor(MeterRegistry meterRegistry,
+                                       Environment environment,
+                                       @Value("${messenger.stomp.stripes:0}") int stripeCount,
+                                       @Value("${messenger.stomp.stripe-queue-capacity:1000}") int queueCapacity,
+                                       @Value("${messenger.stomp.stripe-offer-timeout-ms:1000}") long offerTimeoutMillis) {
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.queueWait = Timer.builder("messenger.stomp.stripe.wait")
+            .description("Time a chat frame waited on its conversation's stripe")
+            .register(meterRegistry);
+        this.rejected = Counter.builder("messenger.stomp.stripe.rejected")
+            .description("Chat frames refused because their stripe stayed full")
+            .register(meterRegistry);
+        
+        ThreadFactory stripeThreads;
+        if (Threading.VIRTUAL.isActive(environment)) {
+            // @MessageMapping handlers block on JDBC; give each inbound frame its own virtual thread
+            this.sharedExecutor = new VirtualThreadTaskExecutor("stomp-inbound-");
+            stripeThreads = new VirtualThreadTaskExecutor("stomp-chat-").getVirtualThreadFactory();
+        } else {
+            // Same sizing Spring uses for the default clientInboundChannel pool
+            ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+            pool.setCorePoolSize(Runtime.getRuntime().availableProcessors() * 2);
+            pool.setAllowCoreThreadTimeOut(true);
+            pool.setThreadNamePrefix("clientInboundChannel-");
+            pool.initialize();
+            this.sharedExecutor = pool;
+            stripeThreads = task -> {
+                Thread thread = new Thread(task);
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+        
+        int count = stripeCount > 0 ? stripeCount : Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < count; i++) {
+            BlockingQueue<Queued> queue = new ArrayBlockingQueue<>(queueCapacity);
+            stripes.add(queue);
+            Gauge.builder("messenger.stomp.stripe.backlog", queue, BlockingQueue::size)
+                .description("Chat frames waiting on this stripe")
+                .tag("stripe", String.valueOf(i))
+                .register(meterRegistry);
+            Thread thread = stripeThreads.newThread(() -> drain(queue));
+            thread.setName("stomp-chat-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+    
+    @Override
+    public void execute(Runnable task) {
+        Long conversationId = task instanceof MessageHandlingRunnable handling
+            ? chatConversationId(handling.getMessage()) : null;
+        if (conversationId == null) {
+            sharedExecutor.execute(task);
+            return;
+        }
+        
+        BlockingQueue<Queued> stripe = stripes.get((int) Math.floorMod(conversationId, (long) stripes.size()));
+        try {
+            if (stripe.offer(new Queued(task), offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejected.increment();
+        throw new RejectedExecutionException("Conversation " + conversationId + " has too many pending messages");
+    }
+    
+    private void drain(BlockingQueue<Queued> stripe) {
+        while (running) {
+            Queued queued;
+            try {
+                queued = stripe.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            queueWait.record(System.nanoTime() - queued.enqueuedAt, TimeUnit.NANOSECONDS);
+            try {
+                queued.task.run();
+            } catch (RuntimeException e) {
+                // The channel already reports handler failures; keep the stripe alive regardless
+                log.warn("Inbound chat frame failed", e);
+            }
+        }
+    }
+    
+    // The conversation id of a SEND to /app/chat/{id}, or null for any other frame
+    private static Long chatConversationId(Message<?> message) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null || !destination.startsWith(CHAT_DESTINATION_PREFIX)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(destination.substring(CHAT_DESTINATION_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        threads.forEach(Thread::interrupt);
+        if (sharedExecutor instanceof ThreadPoolTaskExecutor pool) {
+            pool.shutdown();
+        }
+    }
+    
+    private static class Queued {
+        private final Runnable task;
+        private final long enqueuedAt = System.nanoTime();
+        
+        private Queued(Runnable task) {
+            this.task = task;
+        }
+    }
+}
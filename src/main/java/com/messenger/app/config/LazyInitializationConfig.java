@@ -0,0 +1,34 @@
+package com.messenger.app.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ReflectionUtils;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * With spring.main.lazy-initialization (prod profile), a bean is only created when something
+ * first asks for it. Beans with @Scheduled methods would then never be scheduled, so they are
+ * kept eager: background flushes, sweeps and purges must run whether or not a request has
+ * touched them yet.
+ */
+@Configuration
+public class LazyInitializationConfig {
+    
+    @Bean
+    static LazyInitializationExcludeFilter scheduledBeansAreEager() {
+        return (beanName, beanDefinition, beanType) -> {
+            if (beanType == null) {
+                return false;
+            }
+            AtomicBoolean scheduled = new AtomicBoolean();
+            ReflectionUtils.doWithMethods(beanType,
+                method -> scheduled.set(true),
+                method -> AnnotatedElementUtils.hasAnnotation(method, Scheduled.class));
+            return scheduled.get();
+        };
+    }
+}
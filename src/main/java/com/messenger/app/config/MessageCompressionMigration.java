@@ -0,0 +1,35 @@
+package com.messenger.app.config;
+
+import com.messenger.app.service.MessageCompressionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// One-off compression of existing rows, enabled with messenger.compression.migrate-existing=true
+@Component
+@ConditionalOnProperty(prefix = "messenger.compression", name = "migrate-existing", havingValue = "true")
+public class MessageCompressionMigration implements ApplicationRunner {
+    
+    private static final Logger log = LoggerFactory.getLogger(MessageCompressionMigration.class);
+    
+    @Autowired
+    private MessageCompressionService messageCompressionService;
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        // Runs off the startup thread so a large table doesn't delay serving requests
+        Thread worker = new Thread(() -> {
+            try {
+                messageCompressionService.compressExisting();
+            } catch (RuntimeException e) {
+                log.error("Message compression migration failed", e);
+            }
+        }, "message-compression-migration");
+        worker.setDaemon(true);
+        worker.start();
+    }
+}
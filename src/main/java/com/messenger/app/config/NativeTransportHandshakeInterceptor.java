@@ -0,0 +1,26 @@
+package com.messenger.app.config;
+
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+
+// Marks sessions opened on the native (non-SockJS) endpoint, which can carry binary frames
+public class NativeTransportHandshakeInterceptor implements HandshakeInterceptor {
+    
+    public static final String NATIVE_TRANSPORT_ATTRIBUTE = "nativeTransport";
+    
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        attributes.put(NATIVE_TRANSPORT_ATTRIBUTE, Boolean.TRUE);
+        return true;
+    }
+    
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
@@ -0,0 +1,154 @@
+package com.messenger.app.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-connection payload encoding. A client on the native WebSocket endpoint may send
+ * "payload-encoding: cbor" in its CONNECT frame; outbound JSON payloads for that session
+ * are then re-encoded as CBOR with epoch-millis timestamps. Everyone else keeps JSON.
+ *
+ * Binary bodies go out as application/octet-stream (the only type Spring sends as a
+ * binary WebSocket frame) and carry a "payload-encoding: cbor" header.
+ */
+@Component
+public class PayloadEncodingInterceptor implements ChannelInterceptor {
+    
+    public static final String ENCODING_HEADER = "payload-encoding";
+    public static final String CBOR = "cbor";
+    
+    private final Set<String> cborSessions = ConcurrentHashMap.newKeySet();
+    
+    // The broker fans one payload array out to many sessions; transcode it once per broadcast
+    private final Map<byte[], byte[]> transcoded = Collections.synchronizedMap(new WeakHashMap<>());
+    
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private final CBORMapper cborMapper = CBORMapper.builder().build();
+    private final Timer encodeTimer;
+    private final Timer parseTimer;
+    private final DistributionSummary cborBytes;
+    
+    public PayloadEncodingInterceptor(MeterRegistry meterRegistry) {
+        // Times the CBOR write alone, so it compares like for like with the JSON converter's encode
+        this.encodeTimer = Timer.builder("messenger.stomp.payload.encode")
+            .tag("encoding", CBOR)
+            .register(meterRegistry);
+        // Reading back the broker's JSON is a cost of transcoding, not of the encoding
+        this.parseTimer = Timer.builder("messenger.stomp.payload.transcode.parse")
+            .description("Time spent reading JSON payloads back before re-encoding them as CBOR")
+            .register(meterRegistry);
+        this.cborBytes = DistributionSummary.builder("messenger.stomp.payload.bytes")
+            .tag("encoding", CBOR)
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        meterRegistry.gauge("messenger.stomp.cbor.sessions", cborSessions, Set::size);
+    }
+    
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        if (accessor.getMessageType() == SimpMessageType.CONNECT) {
+            negotiate(message);
+            return message;
+        }
+        if (accessor.getMessageType() == SimpMessageType.MESSAGE
+                && cborSessions.contains(accessor.getSessionId())
+                && message.getPayload() instanceof byte[] json
+                && MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(accessor.getContentType())) {
+            return toCbor(json, accessor);
+        }
+        return message;
+    }
+    
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        cborSessions.remove(event.getSessionId());
+    }
+    
+    private void negotiate(Message<?> message) {
+        StompHeaderAccessor stomp = StompHeaderAccessor.wrap(message);
+        if (stomp.getCommand() != StompCommand.CONNECT && stomp.getCommand() != StompCommand.STOMP) {
+            return;
+        }
+        Map<String, Object> attributes = stomp.getSessionAttributes();
+        boolean nativeTransport = attributes != null
+            && Boolean.TRUE.equals(attributes.get(NativeTransportHandshakeInterceptor.NATIVE_TRANSPORT_ATTRIBUTE));
+        // SockJS frames are text-only, so CBOR is only honoured on the native endpoint
+        if (nativeTransport && CBOR.equalsIgnoreCase(stomp.getFirstNativeHeader(ENCODING_HEADER))) {
+            cborSessions.add(stomp.getSessionId());
+        }
+    }
+    
+    private Message<?> toCbor(byte[] json, SimpMessageHeaderAccessor accessor) {
+        byte[] cbor = transcoded.get(json);
+        if (cbor == null) {
+            long start = System.nanoTime();
+            JsonNode tree = withEpochMillis(jsonMapper.readTree(json));
+            long parsed = System.nanoTime();
+            cbor = cborMapper.writeValueAsBytes(tree);
+            parseTimer.record(parsed - start, TimeUnit.NANOSECONDS);
+            encodeTimer.record(System.nanoTime() - parsed, TimeUnit.NANOSECONDS);
+            cborBytes.record(cbor.length);
+            transcoded.put(json, cbor);
+        }
+        
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.copyHeaders(accessor.toMap());
+        headers.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        headers.setNativeHeader(ENCODING_HEADER, CBOR);
+        headers.setLeaveMutable(true);
+        return MessageBuilder.createMessage(cbor, headers.getMessageHeaders());
+    }
+    
+    // ISO LocalDateTime strings in *At fields become epoch millis in the compact encoding
+    private JsonNode withEpochMillis(JsonNode node) {
+        if (node instanceof ObjectNode object) {
+            Map<String, Long> timestamps = new HashMap<>();
+            for (Map.Entry<String, JsonNode> field : object.properties()) {
+                JsonNode value = field.getValue();
+                if (field.getKey().endsWith("At") && value.isString()) {
+                    try {
+                        timestamps.put(field.getKey(), LocalDateTime.parse(value.asString())
+                            .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+                    } catch (DateTimeParseException e) {
+                        // Not a timestamp; leave as-is
+                    }
+                } else {
+                    withEpochMillis(value);
+                }
+            }
+            timestamps.forEach(object::put);
+        } else if (node.isArray()) {
+            node.forEach(this::withEpochMillis);
+        }
+        return node;
+    }
+}
@@ -0,0 +1,56 @@
+package com.messenger.app.config;
+
+import com.messenger.app.service.RateLimiter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+
+/**
+ * Applies the send and read-receipt token buckets to the HTTP endpoints. Throttled calls
+ * are answered with 429 and Retry-After before the controller (and Postgres) is reached.
+ */
+public class RateLimitInterceptor implements HandlerInterceptor {
+    
+    private final RateLimiter rateLimiter;
+    
+    public RateLimitInterceptor(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        HttpSession session = request.getSession(false);
+        Long userId = session != null ? (Long) session.getAttribute("userId") : null;
+        if (userId == null) {
+            // Unauthenticated calls are rejected by the controller
+            return true;
+        }
+        
+        RateLimiter.Limit exceeded = request.getRequestURI().endsWith("/mark-read")
+            ? rateLimiter.tryAcquireRead(userId, "http")
+            : rateLimiter.tryAcquireSend(userId, parseLong(request.getParameter("conversationId")), "http");
+        if (exceeded == null) {
+            return true;
+        }
+        
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(rateLimiter.retryAfterSeconds(exceeded)));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"Too many requests\",\"limit\":\"" + exceeded.getTag() + "\"}");
+        return false;
+    }
+    
+    private Long parseLong(String value) {
+        try {
+            return value != null ? Long.valueOf(value) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.messenger.app.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Enabled when messenger.datasource.replica.urls is set. The primary pool keeps the
+ * spring.datasource.* settings, including spring.datasource.hikari.*; each replica URL gets its
+ * own pool with the same credentials unless replica credentials are given. Replica pools start
+ * from spring.datasource.hikari.* too, overridden by messenger.datasource.replica.hikari.*
+ * (e.g. a larger maximum-pool-size, since reads outnumber writes).
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "messenger.datasource.replica", name = "urls")
+public class ReadReplicaConfig {
+    
+    @Value("${messenger.datasource.replica.urls}")
+    private List<String> replicaUrls;
+    
+    @Value("${messenger.datasource.replica.username:${spring.datasource.username:}}")
+    private String replicaUsername;
+    
+    @Value("${messenger.datasource.replica.password:${spring.datasource.password:}}")
+    private String replicaPassword;
+    
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, ReadYourWritesTracker readYourWritesTracker,
+                                 Environment environment) {
+        // Pools built here bypass Boot's own Hikari binding, so the settings are bound by hand
+        Binder binder = Binder.get(environment);
+        
+        HikariDataSource primary = properties.initializeDataSourceBuilder()
+            .type(HikariDataSource.class)
+            .build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+        
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(ReplicaRoutingDataSource.PRIMARY, primary);
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            HikariDataSource replica = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(replicaUrls.get(i))
+                .username(replicaUsername)
+                .password(replicaPassword)
+                .build();
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(replica));
+            binder.bind("messenger.datasource.replica.hikari", Bindable.ofInstance(replica));
+            replica.setPoolName(ReplicaRoutingDataSource.REPLICA_PREFIX + i);
+            replica.setReadOnly(true);
+            targets.put(ReplicaRoutingDataSource.REPLICA_PREFIX + i, replica);
+        }
+        
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(replicaUrls.size(), readYourWritesTracker);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+    
+    // Release the connection after every transaction so each one is routed on its own,
+    // even when open-session-in-view keeps the EntityManager open across the request
+    @Bean
+    public HibernatePropertiesCustomizer replicaConnectionHandling() {
+        return properties -> properties.put("hibernate.connection.handling_mode",
+            "DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION");
+    }
+}
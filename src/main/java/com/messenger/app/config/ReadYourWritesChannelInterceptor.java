@@ -0,0 +1,40 @@
+package com.messenger.app.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+
+import java.security.Principal;
+
+/**
+ * The STOMP counterpart of {@link ReadYourWritesInterceptor}: binds the session's user on the
+ * thread that handles an inbound frame, so reads made while handling it see that user's writes.
+ */
+public class ReadYourWritesChannelInterceptor implements ExecutorChannelInterceptor {
+    
+    private final ReadYourWritesTracker tracker;
+    
+    public ReadYourWritesChannelInterceptor(ReadYourWritesTracker tracker) {
+        this.tracker = tracker;
+    }
+    
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        Principal user = SimpMessageHeaderAccessor.getUser(message.getHeaders());
+        if (user != null) {
+            try {
+                tracker.bindCurrentUser(Long.valueOf(user.getName()));
+            } catch (NumberFormatException e) {
+                // Not one of our session principals
+            }
+        }
+        return message;
+    }
+    
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        tracker.clearCurrentUser();
+    }
+}
@@ -0,0 +1,34 @@
+package com.messenger.app.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+public class ReadYourWritesInterceptor implements HandlerInterceptor {
+    
+    private final ReadYourWritesTracker tracker;
+    
+    public ReadYourWritesInterceptor(ReadYourWritesTracker tracker) {
+        this.tracker = tracker;
+    }
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            tracker.bindCurrentUser((Long) session.getAttribute("userId"));
+        }
+        return true;
+    }
+    
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        // Any state-changing request pins the user's following reads to the primary for a while
+        HttpSession session = request.getSession(false);
+        if (session != null && !"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            tracker.recordWrite((Long) session.getAttribute("userId"));
+        }
+        tracker.clearCurrentUser();
+    }
+}
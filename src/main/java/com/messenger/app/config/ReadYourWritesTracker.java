@@ -0,0 +1,56 @@
+package com.messenger.app.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which users wrote recently so their reads stay on the primary until
+ * replicas have had time to catch up. The current user is bound per request by
+ * {@link ReadYourWritesInterceptor} and per inbound STOMP frame by
+ * {@link ReadYourWritesChannelInterceptor}. Work on threads with no user, such as the outbox
+ * dispatcher, has no one to pin; it must use read-write transactions where it needs fresh data.
+ */
+@Component
+public class ReadYourWritesTracker {
+    
+    private static final ThreadLocal<Long> CURRENT_USER = new ThreadLocal<>();
+    
+    private final Map<Long, Long> lastWriteMillis = new ConcurrentHashMap<>();
+    
+    @Value("${messenger.datasource.read-your-writes-window-ms:5000}")
+    private long windowMillis;
+    
+    public void bindCurrentUser(Long userId) {
+        CURRENT_USER.set(userId);
+    }
+    
+    public void clearCurrentUser() {
+        CURRENT_USER.remove();
+    }
+    
+    public void recordWrite(Long userId) {
+        if (userId != null) {
+            lastWriteMillis.put(userId, System.currentTimeMillis());
+        }
+    }
+    
+    public boolean currentUserNeedsPrimary() {
+        Long userId = CURRENT_USER.get();
+        if (userId == null) {
+            return false;
+        }
+        Long lastWrite = lastWriteMillis.get(userId);
+        return lastWrite != null && System.currentTimeMillis() - lastWrite < windowMillis;
+    }
+    
+    // Keeps the map bounded to users who wrote within the window
+    @Scheduled(fixedDelayString = "${messenger.datasource.read-your-writes-window-ms:5000}")
+    public void evictExpired() {
+        long cutoff = System.currentTimeMillis() - windowMillis;
+        lastWriteMillis.values().removeIf(lastWrite -> lastWrite < cutoff);
+    }
+}
@@ -0,0 +1,36 @@
+package com.messenger.app.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only transactions to a replica pool (round-robin) and everything else
+ * to the primary. Must sit behind a LazyConnectionDataSourceProxy so the lookup
+ * happens after the transaction's read-only flag is known.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA_PREFIX = "replica-";
+    
+    private final int replicaCount;
+    private final ReadYourWritesTracker readYourWritesTracker;
+    private final AtomicInteger next = new AtomicInteger();
+    
+    public ReplicaRoutingDataSource(int replicaCount, ReadYourWritesTracker readYourWritesTracker) {
+        this.replicaCount = replicaCount;
+        this.readYourWritesTracker = readYourWritesTracker;
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicaCount == 0
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || readYourWritesTracker.currentUserNeedsPrimary()) {
+            return PRIMARY;
+        }
+        return REPLICA_PREFIX + Math.floorMod(next.getAndIncrement(), replicaCount);
+    }
+}
@@ -0,0 +1,26 @@
+package com.messenger.app.config;
+
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.security.Principal;
+import java.util.Map;
+
+/**
+ * Names each WebSocket session after the logged-in user id so that
+ * user destinations (/user/queue/...) can be resolved per user.
+ */
+public class SessionHandshakeHandler extends DefaultHandshakeHandler {
+    
+    @Override
+    protected Principal determineUser(ServerHttpRequest request, WebSocketHandler wsHandler,
+                                      Map<String, Object> attributes) {
+        Object userId = attributes.get("userId");
+        if (userId == null) {
+            return super.determineUser(request, wsHandler, attributes);
+        }
+        String name = userId.toString();
+        return () -> name;
+    }
+}
@@ -0,0 +1,281 @@
+package com.messenger.app.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Soft limits for subscribers that cannot keep up, ahead of Spring's hard per-session limits.
+ *
+ * Every outbound MESSAGE frame is counted against its session until the socket has actually
+ * written it. Once a session has more than messenger.websocket.slow-consumer.buffer-size bytes
+ * outstanding, or one write has been blocked for longer than send-time-ms, new frames for it
+ * are handled by the configured policy:
+ * <ul>
+ *   <li>drop: the frame is discarded; chat clients fill the gap through the seq catch-up</li>
+ *   <li>coalesce: frames for coalesce-destinations (latest state wins, e.g. typing) are held,
+ *       newest per destination, and sent once the session drains; other frames are dropped</li>
+ *   <li>disconnect: the session is closed and the client reconnects and resumes</li>
+ * </ul>
+ * messenger.websocket.send-time-limit-ms and send-buffer-size-limit stay in force underneath
+ * as Spring's own limits, which close a session that is stuck altogether.
+ */
+@Component
+public class SlowConsumerGuard implements ChannelInterceptor {
+    
+    public enum Policy { DROP, COALESCE, DISCONNECT }
+    
+    private static final byte[] MESSAGE_COMMAND = "MESSAGE\n".getBytes(StandardCharsets.UTF_8);
+    
+    private final Map<String, SessionState> sessions = new ConcurrentHashMap<>();
+    
+    private final MessageChannel clientOutboundChannel;
+    private final Policy policy;
+    private final long bufferSizeLimit;
+    private final long sendTimeLimitNanos;
+    private final List<String> coalesceDestinations;
+    private final DistributionSummary queueDepth;
+    private final Counter dropped;
+    private final Counter coalesced;
+    private final Counter evicted;
+    
+    public SlowConsumerGuard(@Lazy @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+                             MeterRegistry meterRegistry,
+                             @Value("${messenger.websocket.slow-consumer.policy:coalesce}") String policy,
+                             @Value("${messenger.websocket.slow-consumer.buffer-size:131072}") long bufferSizeLimit,
+                             @Value("${messenger.websocket.slow-consumer.send-time-ms:2000}") long sendTimeLimitMillis,
+                             @Value("${messenger.websocket.slow-consumer.coalesce-destinations:/topic/typing/}") List<String> coalesceDestinations) {
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.policy = Policy.valueOf(policy.trim().toUpperCase());
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.sendTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMillis);
+        this.coalesceDestinations = coalesceDestinations;
+        this.queueDepth = DistributionSummary.builder("messenger.websocket.session.queue.depth")
+            .description("Frames a session still had to write when another was published to it")
+            .register(meterRegistry);
+        this.dropped = Counter.builder("messenger.websocket.frames.skipped").tag("reason", "dropped").register(meterRegistry);
+        this.coalesced = Counter.builder("messenger.websocket.frames.skipped").tag("reason", "coalesced").register(meterRegistry);
+        this.evicted = Counter.builder("messenger.websocket.sessions.evicted")
+            .description("Sessions closed for falling behind, by this guard or Spring's hard limits")
+            .register(meterRegistry);
+        meterRegistry.gauge("messenger.websocket.session.queue.max", sessions,
+            map -> map.values().stream().mapToInt(state -> state.pendingFrames.get()).max().orElse(0));
+        meterRegistry.gauge("messenger.websocket.sessions.slow", sessions,
+            map -> map.values().stream().filter(state -> state.isSlow(System.nanoTime())).count());
+    }
+    
+    /** Wraps each new WebSocket session so completed writes are counted off its backlog. */
+    public WebSocketHandler decorateHandler(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                SessionState state = new SessionState();
+                state.session = new TrackedSession(session, state);
+                sessions.put(session.getId(), state);
+                super.afterConnectionEstablished(state.session);
+            }
+            
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+                sessions.remove(session.getId());
+                if (CloseStatus.SESSION_NOT_RELIABLE.equalsCode(status)) {
+                    evicted.increment();
+                }
+                super.afterConnectionClosed(session, status);
+            }
+        };
+    }
+    
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+        SessionState state = sessions.get(SimpMessageHeaderAccessor.getSessionId(headers));
+        if (state == null) {
+            return message;
+        }
+        
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        queueDepth.record(state.pendingFrames.get());
+        if (state.isSlow(System.nanoTime())) {
+            if (policy == Policy.DISCONNECT) {
+                close(state);
+            } else if (policy == Policy.COALESCE && destination != null && isCoalesced(destination)) {
+                if (state.held.put(destination, message) != null) {
+                    coalesced.increment();
+                }
+            } else {
+                dropped.increment();
+            }
+            return null;
+        }
+        
+        // A newer frame supersedes one still held for the same destination
+        if (destination != null && state.held.remove(destination) != null) {
+            coalesced.increment();
+        }
+        int size = payloadSize(message);
+        state.pendingFrames.incrementAndGet();
+        state.pendingBytes.addAndGet(size);
+        state.pendingSizes.add(size);
+        return message;
+    }
+    
+    // Held frames go out once their session has caught up
+    @Scheduled(fixedDelayString = "${messenger.websocket.slow-consumer.flush-interval-ms:250}")
+    public void flushHeld() {
+        long now = System.nanoTime();
+        for (SessionState state : sessions.values()) {
+            if (state.held.isEmpty() || state.isSlow(now)) {
+                continue;
+            }
+            Iterator<Message<?>> held = state.held.values().iterator();
+            while (held.hasNext()) {
+                Message<?> message = held.next();
+                held.remove();
+                clientOutboundChannel.send(message);
+            }
+        }
+    }
+    
+    // The guard runs after PayloadEncodingInterceptor, so a CBOR session's frames are already
+    // re-encoded here and their byte[] is what goes out. Any other body is sized as it will be
+    // written; only an unknown payload type falls back to its STOMP content-length header
+    private static int payloadSize(Message<?> message) {
+        Object payload = message.getPayload();
+        if (payload instanceof byte[] bytes) {
+            return bytes.length;
+        }
+        if (payload instanceof String text) {
+            return text.getBytes(StandardCharsets.UTF_8).length;
+        }
+        String contentLength = SimpMessageHeaderAccessor.wrap(message).getFirstNativeHeader("content-length");
+        try {
+            return contentLength != null ? Integer.parseInt(contentLength) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    private boolean isCoalesced(String destination) {
+        for (String prefix : coalesceDestinations) {
+            if (!prefix.isBlank() && destination.startsWith(prefix.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void close(SessionState state) {
+        if (!state.closing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            state.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException e) {
+            // Already going away
+        }
+    }
+    
+    private class SessionState {
+        private final AtomicInteger pendingFrames = new AtomicInteger();
+        private final AtomicLong pendingBytes = new AtomicLong();
+        private final Queue<Integer> pendingSizes = new ConcurrentLinkedQueue<>();
+        private final Map<String, Message<?>> held = new ConcurrentHashMap<>();
+        private final AtomicBoolean closing = new AtomicBoolean();
+        // When the write in progress started, or 0 while the socket is idle
+        private volatile long writeStartedAt;
+        private volatile WebSocketSession session;
+        
+        private boolean isSlow(long now) {
+            long started = writeStartedAt;
+            return pendingBytes.get() > bufferSizeLimit || (started != 0 && now - started > sendTimeLimitNanos);
+        }
+        
+        private void written() {
+            Integer size = pendingSizes.poll();
+            if (size != null) {
+                pendingFrames.decrementAndGet();
+                pendingBytes.addAndGet(-size);
+            }
+        }
+    }
+    
+    // Sits directly on the transport, under Spring's buffering decorator, so it sees real writes
+    private static class TrackedSession extends WebSocketSessionDecorator {
+        private final SessionState state;
+        
+        private TrackedSession(WebSocketSession delegate, SessionState state) {
+            super(delegate);
+            this.state = state;
+        }
+        
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            state.writeStartedAt = System.nanoTime();
+            try {
+                super.sendMessage(message);
+            } finally {
+                state.writeStartedAt = 0;
+                // Heartbeats, receipts and errors were never counted
+                if (isMessageFrame(message)) {
+                    state.written();
+                }
+            }
+        }
+        
+        private static boolean isMessageFrame(WebSocketMessage<?> message) {
+            if (message instanceof TextMessage text) {
+                return text.getPayload().startsWith("MESSAGE\n");
+            }
+            if (message instanceof BinaryMessage binary) {
+                ByteBuffer payload = binary.getPayload();
+                if (payload.remaining() < MESSAGE_COMMAND.length) {
+                    return false;
+                }
+                for (int i = 0; i < MESSAGE_COMMAND.length; i++) {
+                    if (payload.get(payload.position() + i) != MESSAGE_COMMAND[i]) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.messenger.app.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+
+/**
+ * Logs how long startup took and whether AOT and a CDS archive were in use, and warns when
+ * startup exceeds messenger.startup.budget-ms so a slower deploy restart shows up in the logs.
+ * The same timings are exposed as the application.started.time and application.ready.time metrics.
+ */
+@Component
+public class StartupTimeReporter {
+    
+    private static final Logger log = LoggerFactory.getLogger(StartupTimeReporter.class);
+    
+    @Value("${messenger.startup.budget-ms:0}")
+    private long budgetMillis;
+    
+    @Value("${spring.aot.enabled:false}")
+    private boolean aotEnabled;
+    
+    @EventListener
+    public void onReady(ApplicationReadyEvent event) {
+        Duration taken = event.getTimeTaken();
+        boolean cds = ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+            .anyMatch(argument -> argument.startsWith("-XX:SharedArchiveFile"));
+        log.info("Ready in {} ms (aot={}, cds={})", taken.toMillis(), aotEnabled, cds);
+        if (budgetMillis > 0 && taken.toMillis() > budgetMillis) {
+            log.warn("Startup took {} ms, over the {} ms budget", taken.toMillis(), budgetMillis);
+        }
+    }
+}
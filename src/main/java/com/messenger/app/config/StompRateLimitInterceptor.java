@@ -0,0 +1,88 @@
+package com.messenger.app.config;
+
+import com.messenger.app.service.RateLimiter;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.Map;
+
+/**
+ * Applies the send token buckets to STOMP SEND frames for /app/chat/{conversationId}.
+ * A throttled frame is dropped before any database work and the sender is told on
+ * /user/queue/errors; the connection stays open, as a STOMP ERROR frame would close it.
+ * Frames for /app/typing/{conversationId} draw on the sender's own typing bucket and are
+ * dropped silently when it runs out, as a lost typing event only delays the indicator.
+ */
+@Component
+public class StompRateLimitInterceptor implements ChannelInterceptor {
+    
+    private static final String CHAT_DESTINATION_PREFIX = "/app/chat/";
+    private static final String TYPING_DESTINATION_PREFIX = "/app/typing/";
+    private static final String ERRORS_DESTINATION = "/queue/errors";
+    
+    private final RateLimiter rateLimiter;
+    private final SimpMessagingTemplate messagingTemplate;
+    
+    // The template is built from the channels this interceptor is registered on
+    public StompRateLimitInterceptor(RateLimiter rateLimiter, @Lazy SimpMessagingTemplate messagingTemplate) {
+        this.rateLimiter = rateLimiter;
+        this.messagingTemplate = messagingTemplate;
+    }
+    
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        String destination = accessor.getDestination();
+        if (accessor.getCommand() != StompCommand.SEND || destination == null) {
+            return message;
+        }
+        
+        Principal user = accessor.getUser();
+        if (destination.startsWith(TYPING_DESTINATION_PREFIX)) {
+            Long userId = userId(user);
+            return userId == null || rateLimiter.tryAcquire(RateLimiter.Limit.USER_TYPING, userId, "stomp")
+                ? message : null;
+        }
+        if (!destination.startsWith(CHAT_DESTINATION_PREFIX)) {
+            return message;
+        }
+        
+        RateLimiter.Limit exceeded = rateLimiter.tryAcquireSend(
+            userId(user),
+            parseLong(destination.substring(CHAT_DESTINATION_PREFIX.length())),
+            "stomp"
+        );
+        if (exceeded == null) {
+            return message;
+        }
+        
+        if (user != null) {
+            messagingTemplate.convertAndSendToUser(user.getName(), ERRORS_DESTINATION, Map.of(
+                "error", "Too many requests",
+                "limit", exceeded.getTag(),
+                "destination", destination,
+                "retryAfterSeconds", rateLimiter.retryAfterSeconds(exceeded)
+            ));
+        }
+        return null;
+    }
+    
+    private Long userId(Principal principal) {
+        return principal != null ? parseLong(principal.getName()) : null;
+    }
+    
+    private Long parseLong(String value) {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.messenger.app.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.JacksonJsonMessageConverter;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.concurrent.TimeUnit;
+
+// Default JSON payload converter, instrumented so it can be compared against CBOR
+public class TimedJsonMessageConverter extends JacksonJsonMessageConverter {
+    
+    private final Timer encodeTimer;
+    private final DistributionSummary payloadBytes;
+    
+    public TimedJsonMessageConverter(JsonMapper jsonMapper, MeterRegistry meterRegistry) {
+        super(jsonMapper);
+        this.encodeTimer = Timer.builder("messenger.stomp.payload.encode")
+            .tag("encoding", "json")
+            .register(meterRegistry);
+        this.payloadBytes = DistributionSummary.builder("messenger.stomp.payload.bytes")
+            .tag("encoding", "json")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+    
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+        long start = System.nanoTime();
+        Object result = super.convertToInternal(payload, headers, conversionHint);
+        encodeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (result instanceof byte[] bytes) {
+            payloadBytes.record(bytes.length);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,84 @@
+package com.messenger.app.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+/**
+ * In virtual-thread mode, watches the JFR "jdk.VirtualThreadPinned" event: a virtual thread
+ * that blocks inside a synchronized section (or native frame) holds its carrier thread, which
+ * quietly brings back the thread-pool limits virtual threads are meant to remove. Each pinned
+ * block longer than the threshold is counted in messenger.virtual.pinned and logged with the
+ * application frames involved.
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadPinningMonitor {
+    
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int MAX_FRAMES = 8;
+    
+    private final Counter pinned;
+    private final long thresholdMillis;
+    private RecordingStream stream;
+    
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+                                       @Value("${messenger.virtual-threads.pinned-threshold-ms:20}") long thresholdMillis) {
+        this.pinned = Counter.builder("messenger.virtual.pinned")
+            .description("Virtual threads that blocked while pinned to their carrier")
+            .register(meterRegistry);
+        this.thresholdMillis = thresholdMillis;
+    }
+    
+    @PostConstruct
+    public void start() {
+        try {
+            stream = new RecordingStream();
+            stream.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMillis)).withStackTrace();
+            stream.onEvent(PINNED_EVENT, this::onPinned);
+            stream.startAsync();
+        } catch (RuntimeException e) {
+            log.warn("Could not start virtual thread pinning monitor", e);
+        }
+    }
+    
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+    
+    private void onPinned(RecordedEvent event) {
+        pinned.increment();
+        if (event.getStackTrace() == null) {
+            log.warn("Virtual thread pinned for {} ms", event.getDuration().toMillis());
+            return;
+        }
+        String frames = event.getStackTrace().getFrames().stream()
+            .limit(MAX_FRAMES)
+            .map(this::describe)
+            .collect(Collectors.joining("\n    at "));
+        log.warn("Virtual thread pinned for {} ms\n    at {}", event.getDuration().toMillis(), frames);
+    }
+    
+    private String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+            + ":" + frame.getLineNumber();
+    }
+}
@@ -1,12 +1,41 @@
 package com.messenger.app.config;
 
+import com.messenger.app.service.RateLimiter;
+import com.messenger.app.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
     
+    @Autowired
+    private ReadYourWritesTracker readYourWritesTracker;
+    
+    @Autowired
+    private RateLimiter rateLimiter;
+    
+    @Bean
+    public FilterRegistrationBean<ActuatorAccessFilter> actuatorAccessFilter(UserService userService) {
+        // /actuator/health stays open for load balancers
+        FilterRegistrationBean<ActuatorAccessFilter> registration =
+            new FilterRegistrationBean<>(new ActuatorAccessFilter(userService));
+        registration.addUrlPatterns("/actuator/metrics", "/actuator/metrics/*");
+        return registration;
+    }
+    
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ReadYourWritesInterceptor(readYourWritesTracker))
+                .excludePathPatterns("/css/**", "/js/**", "/uploads/**");
+        registry.addInterceptor(new RateLimitInterceptor(rateLimiter))
+                .addPathPatterns("/message/send", "/message/mark-read");
+    }
+    
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         registry.addResourceHandler("/css/**")
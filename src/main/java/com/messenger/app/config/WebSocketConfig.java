@@ -1,26 +1,106 @@
 package com.messenger.app.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.support.HttpSessionHandshakeInterceptor;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     
+    @Autowired
+    private PayloadEncodingInterceptor payloadEncodingInterceptor;
+    
+    @Autowired
+    private StompRateLimitInterceptor stompRateLimitInterceptor;
+    
+    @Autowired
+    private JsonMapper jsonMapper;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private ConversationStripedExecutor conversationStripedExecutor;
+    
+    @Autowired
+    private SlowConsumerGuard slowConsumerGuard;
+    
+    @Autowired
+    private ReadYourWritesTracker readYourWritesTracker;
+    
+    @Value("${messenger.websocket.send-time-limit-ms:10000}")
+    private int sendTimeLimitMillis;
+    
+    @Value("${messenger.websocket.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+    
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // Enable simple broker
-        config.enableSimpleBroker("/topic");
+        // Enable simple broker (/queue backs per-user destinations such as /user/queue/inbox)
+        config.enableSimpleBroker("/topic", "/queue");
         config.setApplicationDestinationPrefixes("/app");
+        config.setUserDestinationPrefix("/user");
     }
     
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // Copy the HTTP session's userId into the handshake so the session gets a user principal
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
+                .setHandshakeHandler(new SessionHandshakeHandler())
+                .addInterceptors(new HttpSessionHandshakeInterceptor())
                 .withSockJS();
+        
+        // Native WebSocket endpoint for clients that can take binary (CBOR) frames.
+        // Tomcat negotiates permessage-deflate here when the client offers it.
+        registry.addEndpoint("/ws-native")
+                .setAllowedOriginPatterns("*")
+                .setHandshakeHandler(new SessionHandshakeHandler())
+                .addInterceptors(new HttpSessionHandshakeInterceptor(), new NativeTransportHandshakeInterceptor());
+    }
+    
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Throttle before any other work is done for the frame
+        registration.interceptors(stompRateLimitInterceptor, payloadEncodingInterceptor,
+            new ReadYourWritesChannelInterceptor(readYourWritesTracker));
+        // Chat sends run in order per conversation on striped threads (virtual ones when enabled)
+        registration.executor(conversationStripedExecutor);
+    }
+    
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Encode first so the guard counts the bytes that actually go out
+        registration.interceptors(payloadEncodingInterceptor, slowConsumerGuard);
+    }
+    
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Hard limits: a session still over these after the guard's policy has run is closed
+        registration.setSendTimeLimit(sendTimeLimitMillis)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .addDecoratorFactory(slowConsumerGuard::decorateHandler);
+    }
+    
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // JSON stays the default; CBOR is accepted from clients that send application/cbor
+        messageConverters.add(0, new TimedJsonMessageConverter(jsonMapper, meterRegistry));
+        messageConverters.add(1, new CborMessageConverter(CBORMapper.builder().build()));
+        return true;
     }
 }
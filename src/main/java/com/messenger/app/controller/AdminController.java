@@ -1,10 +1,16 @@
 package com.messenger.app.controller;
 
-import com.messenger.app.model.Conversation;
-import com.messenger.app.model.Message;
-import com.messenger.app.model.User;
+import com.messenger.app.dto.AdminConversationView;
+import com.messenger.app.dto.AdminUserView;
+import com.messenger.app.dto.ConversationSummary;
+import com.messenger.app.dto.KeysetPage;
+import com.messenger.app.dto.KeysetRequest;
+import com.messenger.app.dto.MessageDTO;
+import com.messenger.app.repository.ConversationRepositoryCustom.AdminConversationSort;
+import com.messenger.app.repository.UserRepositoryCustom.AdminUserSort;
 import com.messenger.app.service.ConversationService;
 import com.messenger.app.service.MessageService;
+import com.messenger.app.service.PurgeService;
 import com.messenger.app.service.UserService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,6 +34,29 @@ public class AdminController {
     @Autowired
     private MessageService messageService;
     
+    @Autowired
+    private PurgeService purgeService;
+    
+    private static <E extends Enum<E>> E parseSort(Class<E> type, String value, E fallback) {
+        for (E constant : type.getEnumConstants()) {
+            if (constant.name().equalsIgnoreCase(value)) {
+                return constant;
+            }
+        }
+        return fallback;
+    }
+    
+    // "Any" (blank or unknown) filters are null and not applied
+    private static Boolean parseFilter(String value, String whenTrue, String whenFalse) {
+        if (whenTrue.equalsIgnoreCase(value)) {
+            return true;
+        }
+        if (whenFalse.equalsIgnoreCase(value)) {
+            return false;
+        }
+        return null;
+    }
+    
     private boolean isAdmin(HttpSession session) {
         Long userId = (Long) session.getAttribute("userId");
         if (userId == null) {
@@ -47,12 +76,10 @@ public class AdminController {
         String username = (String) session.getAttribute("username");
         
         // Get statistics
-        long totalUsers = userService.findAllUsers().size();
-        long totalConversations = conversationService.findAllConversations().size();
+        long totalUsers = userService.countUsers();
+        long totalConversations = conversationService.countConversations();
         long totalMessages = messageService.getTotalMessageCount();
-        long onlineUsers = userService.findAllUsers().stream()
-            .filter(u -> u.getIsOnline() != null && u.getIsOnline())
-            .count();
+        long onlineUsers = userService.countOnlineUsers();
         
         model.addAttribute("username", username);
         model.addAttribute("totalUsers", totalUsers);
@@ -64,39 +91,63 @@ public class AdminController {
     }
     
     @GetMapping("/users")
-    public String adminUsers(HttpSession session, Model model, @RequestParam(required = false) String search) {
+    public String adminUsers(HttpSession session, Model model,
+                             @RequestParam(required = false) String search,
+                             @RequestParam(required = false) String status,
+                             @RequestParam(required = false) String role,
+                             @RequestParam(defaultValue = "id") String sort,
+                             @RequestParam(defaultValue = "asc") String dir,
+                             @RequestParam(required = false) String after,
+                             @RequestParam(required = false) String before,
+                             @RequestParam(defaultValue = "50") int size) {
         if (!isAdmin(session)) {
             return "redirect:/conversations";
         }
         
         String username = (String) session.getAttribute("username");
-        List<User> users;
-        
-        if (search != null && !search.isEmpty()) {
-            users = userService.searchUsers(search);
-        } else {
-            users = userService.findAllUsers();
-        }
+        AdminUserSort userSort = parseSort(AdminUserSort.class, sort, AdminUserSort.ID);
+        KeysetRequest request = new KeysetRequest(!"desc".equalsIgnoreCase(dir), after, before, size);
+        KeysetPage<AdminUserView> users = userService.getAdminPage(search,
+            parseFilter(status, "online", "offline"), parseFilter(role, "admin", "user"), userSort, request);
         
         model.addAttribute("username", username);
         model.addAttribute("users", users);
         model.addAttribute("search", search);
+        model.addAttribute("status", status);
+        model.addAttribute("role", role);
+        model.addAttribute("sort", userSort.name().toLowerCase());
+        model.addAttribute("dir", request.isAscending() ? "asc" : "desc");
+        model.addAttribute("size", request.getSize());
         
         return "admin/users";
     }
     
     @GetMapping("/conversations")
-    public String adminConversations(HttpSession session, Model model) {
+    public String adminConversations(HttpSession session, Model model,
+                                     @RequestParam(required = false) String search,
+                                     @RequestParam(required = false) String type,
+                                     @RequestParam(defaultValue = "updated") String sort,
+                                     @RequestParam(defaultValue = "desc") String dir,
+                                     @RequestParam(required = false) String after,
+                                     @RequestParam(required = false) String before,
+                                     @RequestParam(defaultValue = "50") int size) {
         if (!isAdmin(session)) {
             return "redirect:/conversations";
         }
         
         String username = (String) session.getAttribute("username");
-        List<Conversation> conversations = conversationService.findAllConversations();
+        AdminConversationSort conversationSort = parseSort(AdminConversationSort.class, sort, AdminConversationSort.UPDATED);
+        KeysetRequest request = new KeysetRequest("asc".equalsIgnoreCase(dir), after, before, size);
+        KeysetPage<AdminConversationView> conversations = conversationService.getAdminPage(search,
+            parseFilter(type, "group", "direct"), conversationSort, request);
         
         model.addAttribute("username", username);
         model.addAttribute("conversations", conversations);
-        model.addAttribute("conversationService", conversationService);
+        model.addAttribute("search", search);
+        model.addAttribute("type", type);
+        model.addAttribute("sort", conversationSort.name().toLowerCase());
+        model.addAttribute("dir", request.isAscending() ? "asc" : "desc");
+        model.addAttribute("size", request.getSize());
         
         return "admin/conversations";
     }
@@ -132,7 +183,7 @@ public class AdminController {
             userService.deleteUser(id);
         });
         
-        redirectAttributes.addFlashAttribute("message", "User deleted successfully");
+        redirectAttributes.addFlashAttribute("message", "User deleted; their data is being purged in the background");
         return "redirect:/admin/users";
     }
     
@@ -143,10 +194,24 @@ public class AdminController {
         }
         
         conversationService.deleteConversation(id);
-        redirectAttributes.addFlashAttribute("message", "Conversation deleted successfully");
+        redirectAttributes.addFlashAttribute("message", "Conversation deleted; its messages are being purged in the background");
         return "redirect:/admin/conversations";
     }
     
+    @GetMapping("/purges")
+    public String adminPurges(HttpSession session, Model model) {
+        if (!isAdmin(session)) {
+            return "redirect:/conversations";
+        }
+        
+        String username = (String) session.getAttribute("username");
+        
+        model.addAttribute("username", username);
+        model.addAttribute("jobs", purgeService.getRecentJobs());
+        
+        return "admin/purges";
+    }
+    
     @GetMapping("/conversations/{id}/messages")
     public String viewConversationMessages(@PathVariable Long id, HttpSession session, Model model) {
         if (!isAdmin(session)) {
@@ -154,10 +219,10 @@ public class AdminController {
         }
         
         String username = (String) session.getAttribute("username");
-        Conversation conversation = conversationService.findById(id)
+        ConversationSummary conversation = conversationService.findSummaryById(id)
             .orElseThrow(() -> new RuntimeException("Conversation not found"));
         
-        List<Message> messages = messageService.getConversationMessages(id);
+        List<MessageDTO> messages = messageService.getConversationMessageDTOs(id);
         
         model.addAttribute("username", username);
         model.addAttribute("conversation", conversation);
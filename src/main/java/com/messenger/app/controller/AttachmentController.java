@@ -0,0 +1,152 @@
+package com.messenger.app.controller;
+
+import com.messenger.app.model.Attachment;
+import com.messenger.app.service.AttachmentService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Resumable attachment uploads and ranged downloads.
+ *
+ * POST /attachments starts an upload and returns its id and chunk size. Each chunk is the raw
+ * request body of PUT /attachments/{id}/chunks?offset=N, with an optional X-Chunk-Sha256 header;
+ * GET /attachments/{id}/status tells a reconnecting client where to resume. Once complete, the
+ * id is passed as attachmentId when sending the message. Downloads honour Range headers.
+ */
+@Controller
+public class AttachmentController {
+    
+    @Autowired
+    private AttachmentService attachmentService;
+    
+    @PostMapping("/attachments")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> startUpload(@RequestParam Long conversationId,
+                                                           @RequestParam String fileName,
+                                                           @RequestParam(required = false) String contentType,
+                                                           @RequestParam long size,
+                                                           HttpSession session) throws IOException {
+        Long userId = (Long) session.getAttribute("userId");
+        if (userId == null) {
+            return error(401, "Not authenticated");
+        }
+        
+        Attachment attachment;
+        try {
+            attachment = attachmentService.start(userId, conversationId, fileName, contentType, size);
+        } catch (IllegalArgumentException e) {
+            return error(400, e.getMessage());
+        }
+        return ResponseEntity.ok(status(attachment));
+    }
+    
+    @GetMapping("/attachments/{id}/status")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> uploadStatus(@PathVariable Long id, HttpSession session) {
+        Long userId = (Long) session.getAttribute("userId");
+        if (userId == null) {
+            return error(401, "Not authenticated");
+        }
+        
+        return attachmentService.findUpload(id, userId)
+            .map(attachment -> ResponseEntity.ok(status(attachment)))
+            .orElseGet(() -> error(404, "Upload not found"));
+    }
+    
+    @PutMapping("/attachments/{id}/chunks")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> uploadChunk(@PathVariable Long id,
+                                                           @RequestParam long offset,
+                                                           @RequestHeader(value = "X-Chunk-Sha256", required = false) String sha256,
+                                                           HttpServletRequest request,
+                                                           HttpSession session) throws IOException {
+        Long userId = (Long) session.getAttribute("userId");
+        if (userId == null) {
+            return error(401, "Not authenticated");
+        }
+        // The declared length bounds how much of the body is read; streamed bodies without one are refused
+        long length = request.getContentLengthLong();
+        if (length < 0) {
+            return error(411, "Content-Length is required");
+        }
+        
+        try {
+            Attachment attachment = attachmentService.writeChunk(id, userId, offset, length, sha256, request.getInputStream());
+            return ResponseEntity.ok(status(attachment));
+        } catch (IllegalStateException e) {
+            // Stale offset or a concurrent chunk: report where the upload stands so the client can resume
+            Map<String, Object> conflict = attachmentService.findUpload(id, userId)
+                .map(this::status)
+                .orElseGet(HashMap::new);
+            conflict.put("error", e.getMessage());
+            return ResponseEntity.status(409).body(conflict);
+        } catch (IllegalArgumentException e) {
+            return error(400, e.getMessage());
+        }
+    }
+    
+    @GetMapping("/attachments/{id}")
+    public ResponseEntity<Resource> download(@PathVariable Long id, HttpSession session) {
+        Long userId = (Long) session.getAttribute("userId");
+        if (userId == null) {
+            return ResponseEntity.status(401).build();
+        }
+        
+        Optional<Attachment> found = attachmentService.findDownloadable(id, userId);
+        if (found.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        Attachment attachment = found.get();
+        
+        // A Resource body lets Spring answer Range requests with 206 and stream only those bytes
+        ContentDisposition disposition = ContentDisposition.attachment()
+            .filename(attachment.getFileName(), StandardCharsets.UTF_8)
+            .build();
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+            .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+            .header("X-Content-Type-Options", "nosniff")
+            .contentType(mediaType(attachment.getContentType()))
+            .body(new FileSystemResource(attachmentService.resolve(attachment)));
+    }
+    
+    private Map<String, Object> status(Attachment attachment) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("id", attachment.getId());
+        status.put("fileName", attachment.getFileName());
+        status.put("size", attachment.getSize());
+        status.put("receivedBytes", attachment.getReceivedBytes());
+        status.put("complete", attachment.getStatus() == Attachment.Status.COMPLETE);
+        status.put("chunkSize", attachmentService.getMaxChunkSize());
+        return status;
+    }
+    
+    private static MediaType mediaType(String contentType) {
+        try {
+            return MediaType.parseMediaType(contentType);
+        } catch (IllegalArgumentException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+    
+    private static ResponseEntity<Map<String, Object>> error(int status, String message) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", message);
+        return ResponseEntity.status(status).body(error);
+    }
+}
@@ -1,18 +1,25 @@
 package com.messenger.app.controller;
 
+import com.messenger.app.dto.ConversationSummary;
+import com.messenger.app.dto.InboxConversationView;
+import com.messenger.app.dto.MessageDTO;
+import com.messenger.app.dto.UserSummary;
+import com.messenger.app.dto.UserView;
 import com.messenger.app.model.Conversation;
-import com.messenger.app.model.User;
 import com.messenger.app.service.ConversationService;
 import com.messenger.app.service.MessageService;
 import com.messenger.app.service.UserService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Controller
 public class ConversationController {
@@ -34,7 +41,7 @@ public class ConversationController {
         }
         
         String username = (String) session.getAttribute("username");
-        List<Conversation> conversations = conversationService.getUserConversations(userId);
+        List<InboxConversationView> conversations = conversationService.getInboxViews(userId);
         
         // Check if user is admin
         boolean isAdmin = userService.findById(userId)
@@ -44,8 +51,6 @@ public class ConversationController {
         model.addAttribute("conversations", conversations);
         model.addAttribute("currentUserId", userId);
         model.addAttribute("username", username);
-        model.addAttribute("conversationService", conversationService);
-        model.addAttribute("messageService", messageService);
         model.addAttribute("isAdmin", isAdmin);
         
         return "conversations";
@@ -61,14 +66,14 @@ public class ConversationController {
         }
         
         String username = (String) session.getAttribute("username");
-        Conversation conversation = conversationService.findById(id)
+        ConversationSummary conversation = conversationService.findSummaryById(id)
             .orElseThrow(() -> new RuntimeException("Conversation not found"));
         
         // Mark messages as read (read receipts will be broadcast when user loads messages)
         
         // Load only latest messages for initial display (pagination will load more)
-        List<com.messenger.app.model.Message> messages = messageService.getLatestMessages(id, 50);
-        List<User> participants = conversationService.getConversationParticipants(id, userId);
+        List<MessageDTO> messages = messageService.getLatestMessageDTOs(id, 50);
+        List<UserSummary> participants = conversationService.getOtherParticipants(id, userId);
         
         // Check if user is admin
         boolean isAdmin = userService.findById(userId)
@@ -80,7 +85,7 @@ public class ConversationController {
         model.addAttribute("participants", participants);
         model.addAttribute("currentUserId", userId);
         model.addAttribute("username", username);
-        model.addAttribute("conversationName", conversationService.getConversationDisplayName(conversation, userId));
+        model.addAttribute("conversationName", conversationService.getConversationDisplayName(conversation, participants));
         model.addAttribute("isAdmin", isAdmin);
         
         return "chat";
@@ -99,6 +104,65 @@ public class ConversationController {
         return "redirect:/conversation/" + conversation.getId();
     }
     
+    @PostMapping("/conversation/{id}/members/add")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> addMembers(@PathVariable Long id,
+                                                         @RequestParam List<Long> userIds,
+                                                         HttpSession session) {
+        Long userId = (Long) session.getAttribute("userId");
+        Map<String, Object> response = new HashMap<>();
+        if (userId == null) {
+            response.put("error", "Not authenticated");
+            return ResponseEntity.status(401).body(response);
+        }
+        if (!conversationService.isParticipant(userId, id)) {
+            response.put("error", "Not a participant");
+            return ResponseEntity.status(403).body(response);
+        }
+        
+        try {
+            response.put("added", conversationService.addMembers(id, userIds));
+        } catch (IllegalStateException e) {
+            response.put("error", e.getMessage());
+            return ResponseEntity.status(409).body(response);
+        } catch (RuntimeException e) {
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping("/conversation/{id}/members/remove")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> removeMembers(@PathVariable Long id,
+                                                            @RequestParam List<Long> userIds,
+                                                            HttpSession session) {
+        Long userId = (Long) session.getAttribute("userId");
+        Map<String, Object> response = new HashMap<>();
+        if (userId == null) {
+            response.put("error", "Not authenticated");
+            return ResponseEntity.status(401).body(response);
+        }
+        if (!conversationService.isParticipant(userId, id)) {
+            response.put("error", "Not a participant");
+            return ResponseEntity.status(403).body(response);
+        }
+        
+        // Groups have no owner: as with adding, any member may remove any member
+        try {
+            response.put("removed", conversationService.removeMembers(id, userIds));
+        } catch (IllegalStateException e) {
+            response.put("error", e.getMessage());
+            return ResponseEntity.status(409).body(response);
+        } catch (IllegalArgumentException e) {
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+    
     @GetMapping("/users")
     public String users(HttpSession session, Model model, @RequestParam(required = false) String search) {
         Long userId = (Long) session.getAttribute("userId");
@@ -107,11 +171,11 @@ public class ConversationController {
         }
         
         String username = (String) session.getAttribute("username");
-        List<User> users;
+        List<UserView> users;
         if (search != null && !search.isEmpty()) {
-            users = userService.searchUsers(search);
+            users = userService.searchUserViews(search);
         } else {
-            users = userService.findAllUsers();
+            users = userService.findAllUserViews();
         }
         
         // Remove current user from list
@@ -2,20 +2,26 @@ package com.messenger.app.controller;
 
 import com.messenger.app.dto.ChatMessage;
 import com.messenger.app.dto.MessageDTO;
-import com.messenger.app.dto.ReadReceipt;
-import com.messenger.app.model.Message;
+import com.messenger.app.dto.SendResult;
+import com.messenger.app.dto.UserSummary;
+import com.messenger.app.service.ConversationService;
+import com.messenger.app.service.ConversationStreamBuffer;
+import com.messenger.app.service.MessageDeduplicator;
 import com.messenger.app.service.MessageService;
+import com.messenger.app.service.ReadWatermarkService;
+import com.messenger.app.service.TypingIndicatorService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.function.Function;
 
 @Controller
 public class MessageController {
@@ -24,12 +30,26 @@ public class MessageController {
     private MessageService messageService;
     
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private MessageDeduplicator messageDeduplicator;
+    
+    @Autowired
+    private TypingIndicatorService typingIndicatorService;
+    
+    @Autowired
+    private ConversationStreamBuffer streamBuffer;
+    
+    @Autowired
+    private ReadWatermarkService readWatermarkService;
+    
+    @Autowired
+    private ConversationService conversationService;
     
     @PostMapping("/message/send")
     @ResponseBody
     public ResponseEntity<Map<String, Object>> sendMessage(@RequestParam Long conversationId,
-                                                          @RequestParam String content,
+                                                          @RequestParam(defaultValue = "") String content,
+                                                          @RequestParam(required = false) String clientMessageId,
+                                                          @RequestParam(required = false) Long attachmentId,
                                                           HttpSession session) {
         Long userId = (Long) session.getAttribute("userId");
         if (userId == null) {
@@ -38,29 +58,34 @@ public class MessageController {
             return ResponseEntity.status(401).body(error);
         }
         
-        Message message = messageService.sendMessage(userId, conversationId, content);
+        // Retries carrying the same clientMessageId get the original message back
+        SendResult result;
+        try {
+            result = messageDeduplicator.send(userId, conversationId, content, clientMessageId, attachmentId);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+        ChatMessage chatMessage = result.getMessage();
         
         Map<String, Object> response = new HashMap<>();
-        response.put("id", message.getId());
-        response.put("content", message.getContent());
-        response.put("senderId", message.getSender().getId());
-        response.put("senderUsername", message.getSender().getUsername());
-        response.put("senderProfilePicture", message.getSender().getProfilePicture());
-        response.put("isRead", message.getIsRead());
-        response.put("createdAt", message.getCreatedAt().toString());
-        
-        // Broadcast message via WebSocket to all subscribers
-        ChatMessage chatMessage = new ChatMessage(
-            message.getId(),
-            message.getContent(),
-            message.getSender().getId(),
-            message.getSender().getUsername(),
-            message.getSender().getProfilePicture(),
-            conversationId,
-            message.getCreatedAt()
-        );
-        String destination = "/topic/conversation/" + conversationId;
-        messagingTemplate.convertAndSend(destination, chatMessage);
+        response.put("id", chatMessage.getId());
+        response.put("content", chatMessage.getContent());
+        response.put("senderId", chatMessage.getSenderId());
+        response.put("senderUsername", chatMessage.getSenderUsername());
+        response.put("senderProfilePicture", chatMessage.getSenderProfilePicture());
+        response.put("isRead", false);
+        response.put("createdAt", chatMessage.getCreatedAt().toString());
+        response.put("seq", chatMessage.getSeq());
+        response.put("clientMessageId", chatMessage.getClientMessageId());
+        response.put("attachment", chatMessage.getAttachment());
+        response.put("duplicate", result.isDuplicate());
+        
+        // The broadcast and inbox updates were written to the outbox with the message itself
+        if (!result.isDuplicate()) {
+            typingIndicatorService.clear(conversationId, userId);
+        }
         
         return ResponseEntity.ok(response);
     }
@@ -77,47 +102,109 @@ public class MessageController {
             return ResponseEntity.status(401).build();
         }
         
-        // For initial load (page 0), get latest messages
-        List<Message> messages;
-        boolean hasMore = false;
-        
         if (page == 0) {
-            // Load latest messages
-            messages = messageService.getLatestMessages(conversationId, size);
-            // Check if there are more messages
-            var pageResult = messageService.getConversationMessagesPaginated(conversationId, 1, size);
-            hasMore = pageResult.hasContent();
-        } else {
-            // Load older messages (pagination)
-            var pageResult = messageService.getConversationMessagesPaginated(conversationId, page, size);
-            messages = pageResult.getContent();
-            // Reverse to get chronological order (oldest first)
-            messages = messages.stream()
-                .sorted((m1, m2) -> m1.getCreatedAt().compareTo(m2.getCreatedAt()))
-                .collect(Collectors.toList());
-            hasMore = pageResult.hasNext();
+            // Latest messages come from the hot-conversation cache when possible. Only a full page
+            // can have older messages, and none exist once it reaches seq 1. Purges and deleted
+            // senders leave gaps in seq, so a full page may still be followed by an empty one.
+            List<MessageDTO> latest = messageService.getLatestMessageDTOs(conversationId, size);
+            Map<String, Object> response = new HashMap<>();
+            response.put("messages", latest);
+            response.put("hasMore", hasOlder(latest, size));
+            response.put("page", page);
+            putSeenBy(response, conversationId, latest, MessageDTO::getSeq, MessageDTO::getSenderId);
+            return ResponseEntity.ok(response);
         }
         
-        List<MessageDTO> messageDTOs = messages.stream()
-            .map(msg -> new MessageDTO(
-                msg.getId(),
-                msg.getContent(),
-                msg.getSender().getId(),
-                msg.getSender().getUsername(),
-                msg.getSender().getProfilePicture(),
-                msg.getCreatedAt(),
-                msg.getIsRead()
-            ))
-            .collect(Collectors.toList());
+        // Older pages come back oldest first from one projection query; hasMore as above
+        List<MessageDTO> messageDTOs = messageService.getMessageDTOPage(conversationId, page, size);
+        boolean hasMore = hasOlder(messageDTOs, size);
         
         Map<String, Object> response = new HashMap<>();
         response.put("messages", messageDTOs);
         response.put("hasMore", hasMore);
         response.put("page", page);
+        putSeenBy(response, conversationId, messageDTOs, MessageDTO::getSeq, MessageDTO::getSenderId);
         
         return ResponseEntity.ok(response);
     }
     
+    // The page is oldest first
+    private static boolean hasOlder(List<MessageDTO> messages, int size) {
+        return !messages.isEmpty() && messages.size() >= size && messages.get(0).getSeq() != null && messages.get(0).getSeq() > 1;
+    }
+    
+    @GetMapping("/message/conversation/{conversationId}/since")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getMessagesSince(
+            @PathVariable Long conversationId,
+            @RequestParam long afterSeq,
+            @RequestParam(defaultValue = "200") int limit,
+            HttpSession session) {
+        Long userId = (Long) session.getAttribute("userId");
+        if (userId == null) {
+            return ResponseEntity.status(401).build();
+        }
+        if (!conversationService.isParticipant(userId, conversationId)) {
+            return ResponseEntity.status(403).build();
+        }
+        
+        // Recent gaps are served from the in-memory stream buffer; older ones from the database
+        Optional<List<ChatMessage>> buffered = streamBuffer.after(conversationId, afterSeq);
+        List<ChatMessage> messages;
+        boolean hasMore;
+        if (buffered.isPresent() && buffered.get().size() <= limit) {
+            messages = buffered.get();
+            hasMore = false;
+        } else {
+            messages = messageService.getMessagesAfter(conversationId, afterSeq, limit + 1);
+            hasMore = messages.size() > limit;
+            if (hasMore) {
+                messages = messages.subList(0, limit);
+            }
+        }
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("messages", messages);
+        response.put("hasMore", hasMore);
+        response.put("source", buffered.isPresent() && !hasMore ? "memory" : "database");
+        putSeenBy(response, conversationId, messages, ChatMessage::getSeq, ChatMessage::getSenderId);
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    // Who has read one group message, fetched when the user opens its "seen by" count
+    @GetMapping("/message/conversation/{conversationId}/seen-by")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getSeenBy(
+            @PathVariable Long conversationId,
+            @RequestParam long seq,
+            @RequestParam(defaultValue = "50") int limit,
+            HttpSession session) {
+        Long userId = (Long) session.getAttribute("userId");
+        if (userId == null) {
+            return ResponseEntity.status(401).build();
+        }
+        if (!conversationService.isParticipant(userId, conversationId)) {
+            return ResponseEntity.status(403).build();
+        }
+        
+        List<UserSummary> readers = readWatermarkService.findReaders(conversationId, seq, Math.min(Math.max(limit, 1), 500));
+        List<Map<String, Object>> readerViews = new ArrayList<>(readers.size());
+        for (UserSummary reader : readers) {
+            Map<String, Object> view = new HashMap<>();
+            view.put("id", reader.getId());
+            view.put("username", reader.getUsername());
+            view.put("profilePicture", reader.getProfilePicture());
+            readerViews.add(view);
+        }
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("seq", seq);
+        response.put("seenBy", readWatermarkService.seenBy(conversationId, seq));
+        response.put("readers", readerViews);
+        return ResponseEntity.ok(response);
+    }
+    
     @PostMapping("/message/mark-read")
     @ResponseBody
     public ResponseEntity<Map<String, Object>> markMessagesAsRead(
@@ -130,32 +217,22 @@ public class MessageController {
             return ResponseEntity.status(401).body(error);
         }
         
-        // Get unread messages before marking as read
-        List<Message> unreadMessages = messageService.getUnreadMessages(conversationId, userId);
-        
-        // Mark all unread messages in the conversation as read
-        messageService.markConversationAsRead(conversationId, userId);
-        
-        // Get all read messages from other users (to notify their senders)
-        List<Message> allReadMessages = messageService.getReadMessagesFromOthers(conversationId, userId);
-        
-        // Broadcast read receipts for all read messages (so senders know their messages are read)
-        String destination = "/topic/read-receipt/" + conversationId;
-        for (Message message : allReadMessages) {
-            ReadReceipt receipt = new ReadReceipt(
-                message.getId(),
-                conversationId,
-                message.getSender().getId(),
-                userId,
-                true
-            );
-            messagingTemplate.convertAndSend(destination, receipt);
-        }
+        // Receipts are broadcast from the outbox once the update has committed
+        int markedCount = messageService.markConversationAsRead(conversationId, userId);
         
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
-        response.put("markedCount", unreadMessages.size());
+        response.put("markedCount", markedCount);
         
         return ResponseEntity.ok(response);
     }
+    
+    // Group pages carry "seen by" counts keyed by seq; direct conversations use isRead instead
+    private <T> void putSeenBy(Map<String, Object> response, Long conversationId, List<T> messages,
+                               Function<T, Long> seq, Function<T, Long> senderId) {
+        Map<Long, Integer> seenBy = readWatermarkService.seenBy(conversationId, messages, seq, senderId);
+        if (!seenBy.isEmpty()) {
+            response.put("seenBy", seenBy);
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package com.messenger.app.controller;
 
+import com.messenger.app.dto.UserView;
 import com.messenger.app.model.User;
 import com.messenger.app.service.ImageService;
 import com.messenger.app.service.UserService;
@@ -31,16 +32,16 @@ public class ProfileController {
             return "redirect:/login";
         }
         
-        Optional<User> userOpt = userService.findById(userId);
+        Optional<UserView> userOpt = userService.findViewById(userId);
         if (userOpt.isEmpty()) {
             return "redirect:/login";
         }
         
-        User user = userOpt.get();
+        UserView user = userOpt.get();
         String username = (String) session.getAttribute("username");
         
         // Check if user is admin
-        boolean isAdmin = user.getIsAdmin() != null && user.getIsAdmin();
+        boolean isAdmin = Boolean.TRUE.equals(user.getIsAdmin());
         
         model.addAttribute("user", user);
         model.addAttribute("username", username);
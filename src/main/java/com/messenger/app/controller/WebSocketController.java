@@ -1,42 +1,72 @@
 package com.messenger.app.controller;
 
 import com.messenger.app.dto.ChatMessage;
-import com.messenger.app.model.Message;
-import com.messenger.app.service.MessageService;
+import com.messenger.app.dto.SendResult;
+import com.messenger.app.dto.TypingEvent;
+import com.messenger.app.service.MessageDeduplicator;
+import com.messenger.app.service.TypingIndicatorService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
-import org.springframework.messaging.handler.annotation.SendTo;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.stereotype.Controller;
 
+import java.security.Principal;
+import java.util.Map;
+
 @Controller
 public class WebSocketController {
     
     @Autowired
-    private MessageService messageService;
+    private MessageDeduplicator messageDeduplicator;
+    
+    @Autowired
+    private TypingIndicatorService typingIndicatorService;
     
     @MessageMapping("/chat/{conversationId}")
-    @SendTo("/topic/conversation/{conversationId}")
-    public ChatMessage sendMessage(@DestinationVariable Long conversationId, 
-                                  ChatMessage chatMessage) {
-        // Save message to database
-        Message message = messageService.sendMessage(
-            chatMessage.getSenderId(),
+    public void sendMessage(@DestinationVariable Long conversationId, 
+                            ChatMessage chatMessage,
+                            SimpMessageHeaderAccessor headerAccessor) {
+        // The sender is the handshake's user; a senderId in the payload is ignored
+        Principal user = headerAccessor.getUser();
+        if (user == null) {
+            return;
+        }
+        Long senderId = Long.valueOf(user.getName());
+        
+        // Save message to database; a retried clientMessageId is answered without a second write
+        SendResult result = messageDeduplicator.send(
+            senderId,
             conversationId,
-            chatMessage.getContent()
+            chatMessage.getContent(),
+            chatMessage.getClientMessageId(),
+            chatMessage.getAttachment() != null ? chatMessage.getAttachment().getId() : null
         );
+        if (result.isDuplicate()) {
+            return;
+        }
         
-        // Convert to DTO and broadcast
-        ChatMessage response = new ChatMessage(
-            message.getId(),
-            message.getContent(),
-            message.getSender().getId(),
-            message.getSender().getUsername(),
-            message.getSender().getProfilePicture(),
+        // The broadcast and inbox updates go out from the outbox once the message has committed
+        typingIndicatorService.clear(conversationId, senderId);
+    }
+    
+    @MessageMapping("/typing/{conversationId}")
+    public void typing(@DestinationVariable Long conversationId,
+                       TypingEvent event,
+                       SimpMessageHeaderAccessor headerAccessor) {
+        // Identity comes from the handshake (the HTTP session), never from the payload
+        Principal user = headerAccessor.getUser();
+        Map<String, Object> attributes = headerAccessor.getSessionAttributes();
+        if (user == null || attributes == null) {
+            return;
+        }
+        // Non-members are dropped by the service; their membership is cached per session
+        typingIndicatorService.update(
+            headerAccessor.getSessionId(),
             conversationId,
-            message.getCreatedAt()
+            Long.valueOf(user.getName()),
+            (String) attributes.get("username"),
+            Boolean.TRUE.equals(event.getTyping())
         );
-        
-        return response;
     }
 }
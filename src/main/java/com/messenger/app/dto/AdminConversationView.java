@@ -0,0 +1,55 @@
+package com.messenger.app.dto;
+
+import java.time.LocalDateTime;
+
+// One row of the admin conversation listing, with the member count and messages sent computed in SQL
+public class AdminConversationView {
+    private final Long id;
+    private final String conversationName;
+    private final boolean isGroup;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+    private final long participantCount;
+    // Messages ever sent, i.e. the last seq handed out. Not a count of the messages stored now:
+    // it keeps counting messages that have since been purged
+    private final long messagesSent;
+    
+    public AdminConversationView(Long id, String conversationName, boolean isGroup, LocalDateTime createdAt,
+                                 LocalDateTime updatedAt, long participantCount, long messagesSent) {
+        this.id = id;
+        this.conversationName = conversationName;
+        this.isGroup = isGroup;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.participantCount = participantCount;
+        this.messagesSent = messagesSent;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public String getConversationName() {
+        return conversationName;
+    }
+    
+    public boolean getIsGroup() {
+        return isGroup;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public long getParticipantCount() {
+        return participantCount;
+    }
+    
+    public long getMessagesSent() {
+        return messagesSent;
+    }
+}
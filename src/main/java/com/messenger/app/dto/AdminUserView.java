@@ -0,0 +1,53 @@
+package com.messenger.app.dto;
+
+import java.time.LocalDateTime;
+
+// One row of the admin user listing, read straight from the users table
+public class AdminUserView {
+    private final Long id;
+    private final String username;
+    private final String email;
+    private final String fullName;
+    private final boolean isOnline;
+    private final boolean isAdmin;
+    private final LocalDateTime createdAt;
+    
+    public AdminUserView(Long id, String username, String email, String fullName,
+                         boolean isOnline, boolean isAdmin, LocalDateTime createdAt) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+        this.fullName = fullName;
+        this.isOnline = isOnline;
+        this.isAdmin = isAdmin;
+        this.createdAt = createdAt;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public String getUsername() {
+        return username;
+    }
+    
+    public String getEmail() {
+        return email;
+    }
+    
+    public String getFullName() {
+        return fullName;
+    }
+    
+    public boolean getIsOnline() {
+        return isOnline;
+    }
+    
+    public boolean getIsAdmin() {
+        return isAdmin;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,57 @@
+package com.messenger.app.dto;
+
+import com.messenger.app.model.Attachment;
+
+// What clients need to show and download a message's attachment
+public class AttachmentInfo {
+    private Long id;
+    private String fileName;
+    private String contentType;
+    private long size;
+    
+    public AttachmentInfo() {}
+    
+    public AttachmentInfo(Long id, String fileName, String contentType, long size) {
+        this.id = id;
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.size = size;
+    }
+    
+    public static AttachmentInfo of(Attachment attachment) {
+        return attachment == null ? null : new AttachmentInfo(attachment.getId(), attachment.getFileName(),
+            attachment.getContentType(), attachment.getSize());
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getFileName() {
+        return fileName;
+    }
+    
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+    
+    public String getContentType() {
+        return contentType;
+    }
+    
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+    
+    public long getSize() {
+        return size;
+    }
+    
+    public void setSize(long size) {
+        this.size = size;
+    }
+}
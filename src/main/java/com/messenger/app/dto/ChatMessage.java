@@ -10,6 +10,9 @@ public class ChatMessage {
     private String senderProfilePicture;
     private Long conversationId;
     private LocalDateTime createdAt;
+    private Long seq;
+    private AttachmentInfo attachment;
+    private String clientMessageId;
     
     public ChatMessage() {}
     
@@ -80,4 +83,28 @@ public class ChatMessage {
     public void setSenderProfilePicture(String senderProfilePicture) {
         this.senderProfilePicture = senderProfilePicture;
     }
+    
+    public String getClientMessageId() {
+        return clientMessageId;
+    }
+    
+    public void setClientMessageId(String clientMessageId) {
+        this.clientMessageId = clientMessageId;
+    }
+    
+    public Long getSeq() {
+        return seq;
+    }
+    
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+    
+    public AttachmentInfo getAttachment() {
+        return attachment;
+    }
+    
+    public void setAttachment(AttachmentInfo attachment) {
+        this.attachment = attachment;
+    }
 }
@@ -0,0 +1,8 @@
+package com.messenger.app.dto;
+
+// Interface projection with the conversation fields needed for inbox events
+public interface ConversationSummary {
+    Long getId();
+    String getConversationName();
+    Boolean getIsGroup();
+}
@@ -0,0 +1,12 @@
+package com.messenger.app.dto;
+
+import java.time.LocalDateTime;
+
+// Interface projection with one inbox row: display name and unread count resolved in the query
+public interface InboxConversationView {
+    Long getId();
+    String getDisplayName();
+    Boolean getIsGroup();
+    LocalDateTime getUpdatedAt();
+    Long getUnreadCount();
+}
@@ -0,0 +1,93 @@
+package com.messenger.app.dto;
+
+import java.time.LocalDateTime;
+
+public class InboxUpdate {
+    private Long conversationId;
+    private String conversationName;
+    private Boolean isGroup;
+    private Long senderId;
+    private String senderUsername;
+    private String preview;
+    private Long unreadCount;
+    private LocalDateTime updatedAt;
+    
+    public InboxUpdate() {}
+    
+    public InboxUpdate(Long conversationId, String conversationName, Boolean isGroup, Long senderId,
+                       String senderUsername, String preview, Long unreadCount, LocalDateTime updatedAt) {
+        this.conversationId = conversationId;
+        this.conversationName = conversationName;
+        this.isGroup = isGroup;
+        this.senderId = senderId;
+        this.senderUsername = senderUsername;
+        this.preview = preview;
+        this.unreadCount = unreadCount;
+        this.updatedAt = updatedAt;
+    }
+    
+    // Getters and Setters
+    public Long getConversationId() {
+        return conversationId;
+    }
+    
+    public void setConversationId(Long conversationId) {
+        this.conversationId = conversationId;
+    }
+    
+    public String getConversationName() {
+        return conversationName;
+    }
+    
+    public void setConversationName(String conversationName) {
+        this.conversationName = conversationName;
+    }
+    
+    public Boolean getIsGroup() {
+        return isGroup;
+    }
+    
+    public void setIsGroup(Boolean isGroup) {
+        this.isGroup = isGroup;
+    }
+    
+    public Long getSenderId() {
+        return senderId;
+    }
+    
+    public void setSenderId(Long senderId) {
+        this.senderId = senderId;
+    }
+    
+    public String getSenderUsername() {
+        return senderUsername;
+    }
+    
+    public void setSenderUsername(String senderUsername) {
+        this.senderUsername = senderUsername;
+    }
+    
+    public String getPreview() {
+        return preview;
+    }
+    
+    public void setPreview(String preview) {
+        this.preview = preview;
+    }
+    
+    public Long getUnreadCount() {
+        return unreadCount;
+    }
+    
+    public void setUnreadCount(Long unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
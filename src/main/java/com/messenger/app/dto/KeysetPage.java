@@ -0,0 +1,38 @@
+package com.messenger.app.dto;
+
+import java.util.List;
+
+// One page of a keyset listing; cursors are opaque positions for the neighbouring pages
+public class KeysetPage<T> {
+    private final List<T> items;
+    private final String previousCursor;
+    private final String nextCursor;
+    
+    public KeysetPage(List<T> items, String previousCursor, String nextCursor) {
+        this.items = List.copyOf(items);
+        this.previousCursor = previousCursor;
+        this.nextCursor = nextCursor;
+    }
+    
+    public List<T> getItems() {
+        return items;
+    }
+    
+    // Pass as "before" to load the preceding page; null on the first page
+    public String getPreviousCursor() {
+        return previousCursor;
+    }
+    
+    // Pass as "after" to load the following page; null on the last page
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public boolean hasPrevious() {
+        return previousCursor != null;
+    }
+    
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,34 @@
+package com.messenger.app.dto;
+
+// Position, direction and size of a keyset page; at most one of after/before is set
+public class KeysetRequest {
+    public static final int MAX_SIZE = 200;
+    
+    private final boolean ascending;
+    private final String after;
+    private final String before;
+    private final int size;
+    
+    public KeysetRequest(boolean ascending, String after, String before, int size) {
+        this.ascending = ascending;
+        this.after = after != null && !after.isEmpty() ? after : null;
+        this.before = this.after == null && before != null && !before.isEmpty() ? before : null;
+        this.size = Math.max(1, Math.min(size, MAX_SIZE));
+    }
+    
+    public boolean isAscending() {
+        return ascending;
+    }
+    
+    public String getAfter() {
+        return after;
+    }
+    
+    public String getBefore() {
+        return before;
+    }
+    
+    public int getSize() {
+        return size;
+    }
+}
@@ -9,6 +9,8 @@ public class MessageDTO {
     private String senderUsername;
     private String senderProfilePicture;
     private LocalDateTime createdAt;
+    private Long seq;
+    private AttachmentInfo attachment;
     private Boolean isRead;
     
     public MessageDTO() {}
@@ -24,6 +26,17 @@ public class MessageDTO {
         this.isRead = isRead;
     }
     
+    // Constructor expression for history queries; the attachment columns are null without one
+    public MessageDTO(Long id, String content, Long senderId, String senderUsername,
+                     String senderProfilePicture, LocalDateTime createdAt, Boolean isRead, Long seq,
+                     Long attachmentId, String attachmentFileName, String attachmentContentType, Long attachmentSize) {
+        this(id, content, senderId, senderUsername, senderProfilePicture, createdAt, isRead);
+        this.seq = seq;
+        if (attachmentId != null) {
+            this.attachment = new AttachmentInfo(attachmentId, attachmentFileName, attachmentContentType, attachmentSize);
+        }
+    }
+    
     // Getters and Setters
     public Long getId() {
         return id;
@@ -80,5 +93,20 @@ public class MessageDTO {
     public void setSenderProfilePicture(String senderProfilePicture) {
         this.senderProfilePicture = senderProfilePicture;
     }
+    
+    public Long getSeq() {
+        return seq;
+    }
+    
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+    
+    public AttachmentInfo getAttachment() {
+        return attachment;
+    }
+    
+    public void setAttachment(AttachmentInfo attachment) {
+        this.attachment = attachment;
+    }
 }
-
@@ -0,0 +1,62 @@
+package com.messenger.app.dto;
+
+import java.util.Map;
+
+// A group member's read watermark moving from fromSeq to toSeq; seenBy holds the new
+// "seen by N" counts (by seq) of the messages in between, filled in when it is broadcast
+public class ReadProgress {
+    private Long conversationId;
+    private Long readerId;
+    private Long fromSeq;
+    private Long toSeq;
+    private Map<Long, Integer> seenBy;
+    
+    public ReadProgress() {}
+    
+    public ReadProgress(Long conversationId, Long readerId, Long fromSeq, Long toSeq) {
+        this.conversationId = conversationId;
+        this.readerId = readerId;
+        this.fromSeq = fromSeq;
+        this.toSeq = toSeq;
+    }
+    
+    public Long getConversationId() {
+        return conversationId;
+    }
+    
+    public void setConversationId(Long conversationId) {
+        this.conversationId = conversationId;
+    }
+    
+    public Long getReaderId() {
+        return readerId;
+    }
+    
+    public void setReaderId(Long readerId) {
+        this.readerId = readerId;
+    }
+    
+    public Long getFromSeq() {
+        return fromSeq;
+    }
+    
+    public void setFromSeq(Long fromSeq) {
+        this.fromSeq = fromSeq;
+    }
+    
+    public Long getToSeq() {
+        return toSeq;
+    }
+    
+    public void setToSeq(Long toSeq) {
+        this.toSeq = toSeq;
+    }
+    
+    public Map<Long, Integer> getSeenBy() {
+        return seenBy;
+    }
+    
+    public void setSeenBy(Map<Long, Integer> seenBy) {
+        this.seenBy = seenBy;
+    }
+}
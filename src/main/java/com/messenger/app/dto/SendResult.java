@@ -0,0 +1,20 @@
+package com.messenger.app.dto;
+
+public class SendResult {
+    private final ChatMessage message;
+    private final boolean duplicate;
+    
+    public SendResult(ChatMessage message, boolean duplicate) {
+        this.message = message;
+        this.duplicate = duplicate;
+    }
+    
+    public ChatMessage getMessage() {
+        return message;
+    }
+    
+    // True when the send was a retry of an already persisted message; callers skip the broadcast
+    public boolean isDuplicate() {
+        return duplicate;
+    }
+}
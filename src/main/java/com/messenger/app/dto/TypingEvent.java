@@ -0,0 +1,19 @@
+package com.messenger.app.dto;
+
+public class TypingEvent {
+    private Boolean typing;
+    
+    public TypingEvent() {}
+    
+    public TypingEvent(Boolean typing) {
+        this.typing = typing;
+    }
+    
+    public Boolean getTyping() {
+        return typing;
+    }
+    
+    public void setTyping(Boolean typing) {
+        this.typing = typing;
+    }
+}
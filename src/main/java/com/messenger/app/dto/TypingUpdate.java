@@ -0,0 +1,51 @@
+package com.messenger.app.dto;
+
+import java.util.List;
+
+public class TypingUpdate {
+    private Long conversationId;
+    private List<Long> userIds;
+    private List<String> usernames;
+    private Integer count;
+    
+    public TypingUpdate() {}
+    
+    public TypingUpdate(Long conversationId, List<Long> userIds, List<String> usernames, Integer count) {
+        this.conversationId = conversationId;
+        this.userIds = userIds;
+        this.usernames = usernames;
+        this.count = count;
+    }
+    
+    public Long getConversationId() {
+        return conversationId;
+    }
+    
+    public void setConversationId(Long conversationId) {
+        this.conversationId = conversationId;
+    }
+    
+    public List<Long> getUserIds() {
+        return userIds;
+    }
+    
+    public void setUserIds(List<Long> userIds) {
+        this.userIds = userIds;
+    }
+    
+    public List<String> getUsernames() {
+        return usernames;
+    }
+    
+    public void setUsernames(List<String> usernames) {
+        this.usernames = usernames;
+    }
+    
+    public Integer getCount() {
+        return count;
+    }
+    
+    public void setCount(Integer count) {
+        this.count = count;
+    }
+}
@@ -0,0 +1,8 @@
+package com.messenger.app.dto;
+
+// Interface projection with the sender fields needed to render or broadcast a message
+public interface UserSummary {
+    Long getId();
+    String getUsername();
+    String getProfilePicture();
+}
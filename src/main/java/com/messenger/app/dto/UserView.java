@@ -0,0 +1,15 @@
+package com.messenger.app.dto;
+
+import java.time.LocalDateTime;
+
+// Interface projection with the user fields shown on profile, user-list and admin pages
+public interface UserView {
+    Long getId();
+    String getUsername();
+    String getEmail();
+    String getFullName();
+    String getProfilePicture();
+    Boolean getIsOnline();
+    Boolean getIsAdmin();
+    LocalDateTime getCreatedAt();
+}
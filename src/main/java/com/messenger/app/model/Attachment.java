@@ -0,0 +1,158 @@
+package com.messenger.app.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A file uploaded in chunks for a message. The bytes live on disk under
+ * messenger.attachments.dir as {@code storageKey}; this row tracks how far the upload got,
+ * so a client can resume from {@code receivedBytes} after a dropped connection.
+ */
+@Entity
+@Table(name = "attachments")
+public class Attachment {
+    
+    public enum Status { UPLOADING, COMPLETE }
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "conversation_id", nullable = false)
+    private Long conversationId;
+    
+    @Column(name = "uploader_id", nullable = false)
+    private Long uploaderId;
+    
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+    
+    @Column(name = "content_type", nullable = false, length = 127)
+    private String contentType;
+    
+    // Declared by the client up front; the upload is complete once receivedBytes reaches it
+    @Column(name = "size_bytes", nullable = false)
+    private long size;
+    
+    @Column(name = "received_bytes", nullable = false)
+    private long receivedBytes;
+    
+    @Column(name = "storage_key", nullable = false, unique = true, length = 64)
+    private String storageKey;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.UPLOADING;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+    
+    // Constructors
+    public Attachment() {}
+    
+    public Attachment(Long conversationId, Long uploaderId, String fileName, String contentType, long size, String storageKey) {
+        this.conversationId = conversationId;
+        this.uploaderId = uploaderId;
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.size = size;
+        this.storageKey = storageKey;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Long getConversationId() {
+        return conversationId;
+    }
+    
+    public void setConversationId(Long conversationId) {
+        this.conversationId = conversationId;
+    }
+    
+    public Long getUploaderId() {
+        return uploaderId;
+    }
+    
+    public void setUploaderId(Long uploaderId) {
+        this.uploaderId = uploaderId;
+    }
+    
+    public String getFileName() {
+        return fileName;
+    }
+    
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+    
+    public String getContentType() {
+        return contentType;
+    }
+    
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+    
+    public long getSize() {
+        return size;
+    }
+    
+    public void setSize(long size) {
+        this.size = size;
+    }
+    
+    public long getReceivedBytes() {
+        return receivedBytes;
+    }
+    
+    public void setReceivedBytes(long receivedBytes) {
+        this.receivedBytes = receivedBytes;
+    }
+    
+    public String getStorageKey() {
+        return storageKey;
+    }
+    
+    public void setStorageKey(String storageKey) {
+        this.storageKey = storageKey;
+    }
+    
+    public Status getStatus() {
+        return status;
+    }
+    
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+    
+    public void setCompletedAt(LocalDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+}
@@ -0,0 +1,31 @@
+package com.messenger.app.model;
+
+import com.messenger.app.util.MessageContentCodec;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.springframework.beans.factory.annotation.Value;
+
+/**
+ * Compresses message content above a size threshold when
+ * messenger.compression.enabled is set. Reads always decode, so rows written
+ * with compression on stay readable after it is switched off.
+ */
+@Converter
+public class CompressedContentConverter implements AttributeConverter<String, String> {
+    
+    @Value("${messenger.compression.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${messenger.compression.threshold-bytes:1024}")
+    private int thresholdBytes;
+    
+    @Override
+    public String convertToDatabaseColumn(String content) {
+        return MessageContentCodec.encode(content, enabled ? thresholdBytes : Integer.MAX_VALUE);
+    }
+    
+    @Override
+    public String convertToEntityAttribute(String stored) {
+        return MessageContentCodec.decode(stored);
+    }
+}
@@ -1,12 +1,16 @@
 package com.messenger.app.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.SQLRestriction;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "conversations")
+@SQLRestriction("deleted_at IS NULL")
+@Table(name = "conversations", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_conversations_direct_pair", columnNames = {"direct_user_low", "direct_user_high"})
+})
 public class Conversation {
     
     @Id
@@ -22,9 +26,20 @@ public class Conversation {
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
-    @Column(name = "updated_at")
+    @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
     
+    // Canonical (min, max) user id pair for direct conversations; null for groups
+    @Column(name = "direct_user_low")
+    private Long directUserLow;
+    
+    @Column(name = "direct_user_high")
+    private Long directUserHigh;
+    
+    // Set when an admin deletes the conversation; rows are then purged in the background
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+    
     @OneToMany(mappedBy = "conversation", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<Participant> participants = new HashSet<>();
     
@@ -92,6 +107,30 @@ public class Conversation {
         this.updatedAt = updatedAt;
     }
     
+    public Long getDirectUserLow() {
+        return directUserLow;
+    }
+    
+    public void setDirectUserLow(Long directUserLow) {
+        this.directUserLow = directUserLow;
+    }
+    
+    public Long getDirectUserHigh() {
+        return directUserHigh;
+    }
+    
+    public void setDirectUserHigh(Long directUserHigh) {
+        this.directUserHigh = directUserHigh;
+    }
+    
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+    
+    public void setDeletedAt(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+    
     public Set<Participant> getParticipants() {
         return participants;
     }
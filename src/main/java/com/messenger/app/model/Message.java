@@ -6,7 +6,10 @@ import jakarta.validation.constraints.NotBlank;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_messages_sender_client_id", columnNames = {"sender_id", "client_message_id"}),
+    @UniqueConstraint(name = "uk_messages_conversation_seq", columnNames = {"conversation_id", "seq"})
+})
 public class Message {
     
     @Id
@@ -15,6 +18,7 @@ public class Message {
     
     @NotBlank(message = "Message content cannot be empty")
     @Column(nullable = false, columnDefinition = "TEXT")
+    @Convert(converter = CompressedContentConverter.class)
     private String content;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -29,6 +33,19 @@ public class Message {
     @Column(name = "is_read")
     private Boolean isRead = false;
     
+    // Optional id generated by the client so retried sends can be recognised
+    @Column(name = "client_message_id", length = 64)
+    private String clientMessageId;
+    
+    // Position in the conversation's stream: gap-free and strictly increasing per conversation
+    @Column(name = "seq")
+    private Long seq;
+    
+    // Optional file sent with the message; each upload belongs to at most one message
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "attachment_id")
+    private Attachment attachment;
+    
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
@@ -87,6 +104,30 @@ public class Message {
         this.isRead = isRead;
     }
     
+    public String getClientMessageId() {
+        return clientMessageId;
+    }
+    
+    public void setClientMessageId(String clientMessageId) {
+        this.clientMessageId = clientMessageId;
+    }
+    
+    public Long getSeq() {
+        return seq;
+    }
+    
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+    
+    public Attachment getAttachment() {
+        return attachment;
+    }
+    
+    public void setAttachment(Attachment attachment) {
+        this.attachment = attachment;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -5,7 +5,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "participants", uniqueConstraints = {
-    @UniqueConstraint(columnNames = {"user_id", "conversation_id"})
+    @UniqueConstraint(name = "uk_participants_user_conversation", columnNames = {"user_id", "conversation_id"})
 })
 public class Participant {
     
@@ -27,6 +27,10 @@ public class Participant {
     @Column(name = "last_read_at")
     private LocalDateTime lastReadAt;
     
+    // Highest message seq this member has read; only ever advanced (see advanceReadWatermark)
+    @Column(name = "last_read_seq", nullable = false)
+    private Long lastReadSeq = 0L;
+    
     @PrePersist
     protected void onCreate() {
         joinedAt = LocalDateTime.now();
@@ -81,4 +85,12 @@ public class Participant {
     public void setLastReadAt(LocalDateTime lastReadAt) {
         this.lastReadAt = lastReadAt;
     }
+    
+    public Long getLastReadSeq() {
+        return lastReadSeq;
+    }
+    
+    public void setLastReadSeq(Long lastReadSeq) {
+        this.lastReadSeq = lastReadSeq;
+    }
 }
@@ -0,0 +1,141 @@
+package com.messenger.app.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "purge_jobs")
+public class PurgeJob {
+    
+    public enum TargetType { CONVERSATION, USER }
+    
+    public enum Status { PENDING, RUNNING, DONE, FAILED }
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "target_type", nullable = false)
+    private TargetType targetType;
+    
+    @Column(name = "target_id", nullable = false)
+    private Long targetId;
+    
+    @Column(name = "target_name")
+    private String targetName;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status = Status.PENDING;
+    
+    @Column(name = "rows_deleted")
+    private Long rowsDeleted = 0L;
+    
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+    
+    @Column(name = "claimed_until")
+    private LocalDateTime claimedUntil;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+    
+    // Constructors
+    public PurgeJob() {}
+    
+    public PurgeJob(TargetType targetType, Long targetId, String targetName) {
+        this.targetType = targetType;
+        this.targetId = targetId;
+        this.targetName = targetName;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public TargetType getTargetType() {
+        return targetType;
+    }
+    
+    public void setTargetType(TargetType targetType) {
+        this.targetType = targetType;
+    }
+    
+    public Long getTargetId() {
+        return targetId;
+    }
+    
+    public void setTargetId(Long targetId) {
+        this.targetId = targetId;
+    }
+    
+    public String getTargetName() {
+        return targetName;
+    }
+    
+    public void setTargetName(String targetName) {
+        this.targetName = targetName;
+    }
+    
+    public Status getStatus() {
+        return status;
+    }
+    
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+    
+    public Long getRowsDeleted() {
+        return rowsDeleted;
+    }
+    
+    public void setRowsDeleted(Long rowsDeleted) {
+        this.rowsDeleted = rowsDeleted;
+    }
+    
+    public String getLastError() {
+        return lastError;
+    }
+    
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+    
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+    
+    public LocalDateTime getClaimedUntil() {
+        return claimedUntil;
+    }
+    
+    public void setClaimedUntil(LocalDateTime claimedUntil) {
+        this.claimedUntil = claimedUntil;
+    }
+}
@@ -19,12 +19,12 @@ public class User {
     
     @NotBlank(message = "Username is required")
     @Size(min = 3, max = 50, message = "Username must be between 3 and 50 characters")
-    @Column(unique = true, nullable = false)
+    @Column(nullable = false)
     private String username;
     
     @NotBlank(message = "Email is required")
     @Email(message = "Email should be valid")
-    @Column(unique = true, nullable = false)
+    @Column(nullable = false)
     private String email;
     
     @NotBlank(message = "Password is required")
@@ -50,6 +50,10 @@ public class User {
     @Column(name = "is_admin")
     private Boolean isAdmin = false;
     
+    // Set when an admin deletes the user; rows are then purged in the background
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+    
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<Participant> participants = new HashSet<>();
     
@@ -153,6 +157,14 @@ public class User {
         this.isAdmin = isAdmin;
     }
     
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+    
+    public void setDeletedAt(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+    
     public Set<Participant> getParticipants() {
         return participants;
     }
@@ -0,0 +1,54 @@
+package com.messenger.app.repository;
+
+import com.messenger.app.model.Attachment;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AttachmentRepository extends JpaRepository<Attachment, Long> {
+    
+    // Moves the upload forward only from the offset the chunk was written at, so a racing
+    // or replayed chunk cannot advance it twice
+    @Transactional
+    @Modifying
+    @Query("UPDATE Attachment a SET a.receivedBytes = :received, a.status = :status, a.completedAt = :completedAt " +
+           "WHERE a.id = :id AND a.receivedBytes = :offset " +
+           "AND a.status = com.messenger.app.model.Attachment.Status.UPLOADING")
+    int advance(@Param("id") Long id,
+                @Param("offset") long offset,
+                @Param("received") long received,
+                @Param("status") Attachment.Status status,
+                @Param("completedAt") LocalDateTime completedAt);
+    
+    // Where an unfinished upload stands, read on the primary (read-write transaction) so a
+    // chunk stored a moment ago by another request is seen
+    @Transactional
+    @Query("SELECT a.receivedBytes FROM Attachment a WHERE a.id = :id " +
+           "AND a.status = com.messenger.app.model.Attachment.Status.UPLOADING")
+    Optional<Long> findUploadingOffset(@Param("id") Long id);
+    
+    // Uploads that were started before the cutoff and never sent with a message
+    @Query("SELECT a FROM Attachment a WHERE a.createdAt < :cutoff " +
+           "AND NOT EXISTS (SELECT m.id FROM Message m WHERE m.attachment = a) " +
+           "ORDER BY a.id")
+    List<Attachment> findUnsentBefore(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+    
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Attachment a WHERE a.id = :id " +
+           "AND NOT EXISTS (SELECT m.id FROM Message m WHERE m.attachment = a)")
+    int deleteUnsent(@Param("id") Long id);
+    
+    List<Attachment> findByConversationIdOrderByIdAsc(Long conversationId, Pageable pageable);
+    
+    List<Attachment> findByUploaderIdOrderByIdAsc(Long uploaderId, Pageable pageable);
+}
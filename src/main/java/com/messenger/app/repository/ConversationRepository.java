@@ -1,14 +1,19 @@
 package com.messenger.app.repository;
 
+import com.messenger.app.dto.ConversationSummary;
+import com.messenger.app.dto.InboxConversationView;
 import com.messenger.app.model.Conversation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface ConversationRepository extends JpaRepository<Conversation, Long> {
+public interface ConversationRepository extends JpaRepository<Conversation, Long>, ConversationRepositoryCustom {
     
     @Query("SELECT DISTINCT c FROM Conversation c " +
            "JOIN c.participants p " +
@@ -16,10 +21,45 @@ public interface ConversationRepository extends JpaRepository<Conversation, Long
            "ORDER BY c.updatedAt DESC")
     List<Conversation> findByUserId(@Param("userId") Long userId);
     
-    @Query("SELECT c FROM Conversation c " +
-           "JOIN c.participants p1 " +
-           "JOIN c.participants p2 " +
-           "WHERE p1.user.id = :userId1 AND p2.user.id = :userId2 " +
-           "AND c.isGroup = false")
-    Conversation findDirectConversation(@Param("userId1") Long userId1, @Param("userId2") Long userId2);
+    // Inbox rows in one query: direct chats are named after the other participant while that
+    // user is not pending purge
+    @Query("SELECT c.id AS id, " +
+           "CASE WHEN c.isGroup = true THEN c.conversationName " +
+           "ELSE COALESCE((SELECT MIN(ou.username) FROM Participant op JOIN op.user ou " +
+           "WHERE op.conversation = c AND ou.id <> :userId AND ou.deletedAt IS NULL), c.conversationName) END AS displayName, " +
+           "c.isGroup AS isGroup, c.updatedAt AS updatedAt, " +
+           "(SELECT COUNT(m) FROM Message m WHERE m.conversation = c " +
+           "AND m.sender.id <> :userId AND m.isRead = false) AS unreadCount " +
+           "FROM Conversation c JOIN c.participants p " +
+           "WHERE p.user.id = :userId " +
+           "ORDER BY c.updatedAt DESC")
+    List<InboxConversationView> findInboxViewsByUserId(@Param("userId") Long userId);
+    
+    @Query("SELECT c.id AS id, c.conversationName AS conversationName, c.isGroup AS isGroup " +
+           "FROM Conversation c WHERE c.id = :id")
+    Optional<ConversationSummary> findSummaryById(@Param("id") Long id);
+    
+    // Seq of the latest committed message; empty before the first one
+    @Query(value = "SELECT s.last_seq FROM conversation_sequences s WHERE s.conversation_id = :id", nativeQuery = true)
+    Optional<Long> findLastSeqById(@Param("id") Long id);
+    
+    Optional<Conversation> findByDirectUserLowAndDirectUserHigh(Long directUserLow, Long directUserHigh);
+    
+    // Soft delete; the pair key is released so the two users can start a fresh direct chat
+    @Modifying
+    @Query("UPDATE Conversation c SET c.deletedAt = :now, c.directUserLow = null, c.directUserHigh = null " +
+           "WHERE c.id = :id AND c.deletedAt IS NULL")
+    int markDeleted(@Param("id") Long id, @Param("now") LocalDateTime now);
+    
+    // Atomic create for direct conversations: a concurrent insert for the same pair becomes a no-op
+    @Modifying
+    @Query(value = "INSERT INTO conversations " +
+                   "(conversation_name, is_group, created_at, updated_at, direct_user_low, direct_user_high) " +
+                   "VALUES (:name, false, :now, :now, :low, :high) " +
+                   "ON CONFLICT (direct_user_low, direct_user_high) DO NOTHING",
+           nativeQuery = true)
+    int insertDirectConversationIfAbsent(@Param("name") String name,
+                                         @Param("low") Long low,
+                                         @Param("high") Long high,
+                                         @Param("now") LocalDateTime now);
 }
@@ -0,0 +1,50 @@
+package com.messenger.app.repository;
+
+import com.messenger.app.dto.AdminConversationView;
+import com.messenger.app.dto.KeysetPage;
+import com.messenger.app.dto.KeysetRequest;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+public interface ConversationRepositoryCustom {
+    
+    enum AdminConversationSort implements KeysetSort {
+        ID("c.id", "bigint"),
+        UPDATED("c.updated_at", "timestamp");
+        
+        private final String expression;
+        private final String sqlType;
+        
+        AdminConversationSort(String expression, String sqlType) {
+            this.expression = expression;
+            this.sqlType = sqlType;
+        }
+        
+        @Override
+        public String getExpression() {
+            return expression;
+        }
+        
+        @Override
+        public String getSqlType() {
+            return sqlType;
+        }
+    }
+    
+    // Batch-applies last-activity timestamps; a row is only moved forward, never back
+    void updateActivity(Map<Long, LocalDateTime> activity);
+    
+    // Atomically advances and returns the conversation's sequence counter, kept in its own
+    // conversation_sequences row. That row's lock is held until the calling transaction ends, on
+    // purpose: sends to one conversation then commit in seq order, so a client resuming after
+    // seq N (findAfterSeq) cannot miss a lower seq committed later. Nothing else writes the row,
+    // so only sends to the same conversation wait on it. Call it as the last step before the
+    // inserts that carry the seq, after every lookup and check, so the lock covers only those
+    // inserts and the commit.
+    long nextSequence(Long conversationId);
+    
+    // One keyset page of live conversations with participant and message counts; null filters are not applied
+    KeysetPage<AdminConversationView> findAdminPage(String search, Boolean group,
+                                                    AdminConversationSort sort, KeysetRequest request);
+}
@@ -0,0 +1,96 @@
+package com.messenger.app.repository;
+
+import com.messenger.app.dto.AdminConversationView;
+import com.messenger.app.dto.KeysetPage;
+import com.messenger.app.dto.KeysetRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class ConversationRepositoryImpl implements ConversationRepositoryCustom {
+    
+    private static final int BATCH_SIZE = 500;
+    
+    private static final String UPDATE_ACTIVITY_SQL =
+        "UPDATE conversations SET updated_at = ? " +
+        "WHERE id = ? AND (updated_at IS NULL OR updated_at < ?)";
+    
+    // The first send creates the counter row; later ones advance it under its row lock. Selecting
+    // the id from conversations returns no row for an unknown conversation instead of an FK error
+    private static final String NEXT_SEQUENCE_SQL =
+        "INSERT INTO conversation_sequences AS s (conversation_id, last_seq) " +
+        "SELECT id, 1 FROM conversations WHERE id = ? " +
+        "ON CONFLICT (conversation_id) DO UPDATE SET last_seq = s.last_seq + 1 RETURNING s.last_seq";
+    
+    // Messages sent is the conversation's last seq, read from one row where a COUNT(*) over
+    // messages would grow with the conversation. It is not the number of messages stored now
+    private static final String ADMIN_COLUMNS =
+        "c.id, c.conversation_name, COALESCE(c.is_group, false) AS is_group, c.created_at, c.updated_at, " +
+        "COALESCE((SELECT s.last_seq FROM conversation_sequences s WHERE s.conversation_id = c.id), 0) AS messages_sent";
+    
+    // Evaluated for the rows of the page only; an index-only scan on conversation_id
+    private static final String ADMIN_COUNTS =
+        ", (SELECT COUNT(*) FROM participants p WHERE p.conversation_id = page.id) AS participant_count";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Override
+    public void updateActivity(Map<Long, LocalDateTime> activity) {
+        if (activity.isEmpty()) {
+            return;
+        }
+        
+        List<Map.Entry<Long, LocalDateTime>> entries = new ArrayList<>(activity.entrySet());
+        jdbcTemplate.batchUpdate(UPDATE_ACTIVITY_SQL, entries, BATCH_SIZE, (ps, entry) -> {
+            Timestamp updatedAt = Timestamp.valueOf(entry.getValue());
+            ps.setTimestamp(1, updatedAt);
+            ps.setLong(2, entry.getKey());
+            ps.setTimestamp(3, updatedAt);
+        });
+    }
+    
+    @Override
+    public long nextSequence(Long conversationId) {
+        List<Long> seq = jdbcTemplate.queryForList(NEXT_SEQUENCE_SQL, Long.class, conversationId);
+        if (seq.isEmpty()) {
+            throw new RuntimeException("Conversation not found: " + conversationId);
+        }
+        return seq.get(0);
+    }
+    
+    @Override
+    public KeysetPage<AdminConversationView> findAdminPage(String search, Boolean group,
+                                                           AdminConversationSort sort, KeysetRequest request) {
+        List<String> conditions = new ArrayList<>(List.of("c.deleted_at IS NULL"));
+        List<Object> args = new ArrayList<>();
+        if (search != null && !search.isBlank()) {
+            conditions.add("c.conversation_name ILIKE ?");
+            args.add(KeysetQuery.containsPattern(search.trim()));
+        }
+        if (group != null) {
+            conditions.add("COALESCE(c.is_group, false) = ?");
+            args.add(group);
+        }
+        
+        return KeysetQuery.fetch(jdbcTemplate, ADMIN_COLUMNS, "conversations c", "c.id", conditions, args,
+            ADMIN_COUNTS, sort, request, (rs, rowNum) -> {
+                Timestamp createdAt = rs.getTimestamp("created_at");
+                Timestamp updatedAt = rs.getTimestamp("updated_at");
+                return new AdminConversationView(
+                    rs.getLong("id"),
+                    rs.getString("conversation_name"),
+                    rs.getBoolean("is_group"),
+                    createdAt != null ? createdAt.toLocalDateTime() : null,
+                    updatedAt != null ? updatedAt.toLocalDateTime() : null,
+                    rs.getLong("participant_count"),
+                    rs.getLong("messages_sent")
+                );
+            });
+    }
+}
@@ -0,0 +1,119 @@
+package com.messenger.app.repository;
+
+import com.messenger.app.dto.KeysetPage;
+import com.messenger.app.dto.KeysetRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keyset ("seek") pagination for JdbcTemplate listings. Rows are ordered by (sort expression, id)
+ * and a page continues from the pair of the row it starts after, so every page is one index range
+ * scan of size + 1 rows no matter how deep it is; there is no OFFSET and no total COUNT.
+ *
+ * The page is selected in a subquery first, so per-row extras such as counts are computed only
+ * for the rows actually shown.
+ */
+final class KeysetQuery {
+    
+    private KeysetQuery() {
+    }
+    
+    /**
+     * @param columns    inner select list; must include the row's primary key aliased as "id"
+     * @param from       FROM clause with aliases
+     * @param conditions filter predicates, ANDed; "?" placeholders take their values from args
+     * @param extras     extra select items evaluated per page row against the alias "page", or ""
+     */
+    static <T> KeysetPage<T> fetch(JdbcTemplate jdbcTemplate, String columns, String from, String idExpression,
+                                   List<String> conditions, List<Object> args, String extras,
+                                   KeysetSort sort, KeysetRequest request, RowMapper<T> rowMapper) {
+        boolean backward = request.getBefore() != null;
+        boolean ascending = backward != request.isAscending();
+        String[] cursor = decode(backward ? request.getBefore() : request.getAfter());
+        
+        List<String> where = new ArrayList<>(conditions);
+        List<Object> params = new ArrayList<>(args);
+        if (cursor != null) {
+            where.add("(" + sort.getExpression() + ", " + idExpression + ") " + (ascending ? ">" : "<") +
+                " (CAST(? AS " + sort.getSqlType() + "), ?)");
+            params.add(cursor[1]);
+            params.add(Long.parseLong(cursor[0]));
+        }
+        params.add(request.getSize() + 1);
+        
+        String direction = ascending ? " ASC" : " DESC";
+        String sql = "SELECT page.*" + extras + " FROM (" +
+            "SELECT " + columns + ", " + sort.getExpression() + " AS sort_key FROM " + from +
+            (where.isEmpty() ? "" : " WHERE " + String.join(" AND ", where)) +
+            " ORDER BY " + sort.getExpression() + direction + ", " + idExpression + direction +
+            " LIMIT ?) page ORDER BY page.sort_key" + direction + ", page.id" + direction;
+        
+        List<Positioned<T>> rows = jdbcTemplate.query(sql, (rs, rowNum) -> new Positioned<>(
+            rowMapper.mapRow(rs, rowNum), encode(rs.getLong("id"), rs.getObject("sort_key"))), params.toArray());
+        
+        boolean more = rows.size() > request.getSize();
+        if (more) {
+            rows = rows.subList(0, request.getSize());
+        }
+        if (backward) {
+            rows = new ArrayList<>(rows);
+            Collections.reverse(rows);
+        }
+        
+        List<T> items = new ArrayList<>(rows.size());
+        rows.forEach(row -> items.add(row.item));
+        if (rows.isEmpty()) {
+            return new KeysetPage<>(items, null, null);
+        }
+        // Moving forward there is a previous page exactly when we started from a cursor, and vice versa
+        boolean hasPrevious = backward ? more : cursor != null;
+        boolean hasNext = backward || more;
+        return new KeysetPage<>(items,
+            hasPrevious ? rows.get(0).cursor : null,
+            hasNext ? rows.get(rows.size() - 1).cursor : null);
+    }
+    
+    // ILIKE pattern matching the text anywhere, with LIKE wildcards in it taken literally
+    static String containsPattern(String text) {
+        return "%" + text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+    
+    private static String encode(long id, Object sortValue) {
+        String raw = id + ":" + sortValue;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    // Returns {id, sort value}; a malformed cursor is ignored and the listing starts from the top
+    private static String[] decode(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            if (separator <= 0) {
+                return null;
+            }
+            Long.parseLong(raw.substring(0, separator));
+            return new String[] {raw.substring(0, separator), raw.substring(separator + 1)};
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    private static class Positioned<T> {
+        private final T item;
+        private final String cursor;
+        
+        private Positioned(T item, String cursor) {
+            this.item = item;
+            this.cursor = cursor;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.messenger.app.repository;
+
+// A sort order usable for keyset pagination: a non-null SQL expression, with the id as tie-breaker
+public interface KeysetSort {
+    
+    String getExpression();
+    
+    // SQL type the cursor's sort value is cast back to when seeking
+    String getSqlType();
+}
@@ -1,26 +1,57 @@
 package com.messenger.app.repository;
 
+import com.messenger.app.dto.MessageDTO;
 import com.messenger.app.model.Message;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface MessageRepository extends JpaRepository<Message, Long> {
+public interface MessageRepository extends JpaRepository<Message, Long>, MessageRepositoryCustom {
     
     List<Message> findByConversationIdOrderByCreatedAtAsc(Long conversationId);
     
-    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId " +
-           "ORDER BY m.createdAt DESC")
-    List<Message> findLatestByConversationId(@Param("conversationId") Long conversationId);
+    Optional<Message> findBySenderIdAndClientMessageId(Long senderId, String clientMessageId);
     
-    @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId " +
-           "ORDER BY m.createdAt DESC")
-    Page<Message> findByConversationIdOrderByCreatedAtDesc(@Param("conversationId") Long conversationId, Pageable pageable);
+    boolean existsByAttachmentId(Long attachmentId);
+    
+    // History as DTOs in display order (oldest first): the messages ranked newestOffset to
+    // oldestOffset from the newest. The two bounds walk the (conversation_id, seq) index, so a
+    // page is one statement with no entities, count query or re-sorting. Messages of users
+    // pending purge are left out of the ranking too, so every page but the last one is full
+    @Query("SELECT new com.messenger.app.dto.MessageDTO(m.id, m.content, s.id, s.username, s.profilePicture, " +
+           "m.createdAt, m.isRead, m.seq, a.id, a.fileName, a.contentType, a.size) " +
+           "FROM Message m JOIN m.sender s LEFT JOIN m.attachment a " +
+           "WHERE m.conversation.id = :conversationId AND s.deletedAt IS NULL " +
+           "AND m.seq <= (SELECT n.seq FROM Message n WHERE n.conversation.id = :conversationId " +
+           "AND n.sender.deletedAt IS NULL ORDER BY n.seq DESC LIMIT 1 OFFSET :newestOffset) " +
+           "AND m.seq >= COALESCE((SELECT n.seq FROM Message n WHERE n.conversation.id = :conversationId " +
+           "AND n.sender.deletedAt IS NULL ORDER BY n.seq DESC LIMIT 1 OFFSET :oldestOffset), 0) " +
+           "ORDER BY m.seq ASC")
+    List<MessageDTO> findHistoryWindow(@Param("conversationId") Long conversationId,
+                                       @Param("newestOffset") int newestOffset,
+                                       @Param("oldestOffset") int oldestOffset);
+    
+    // The whole conversation as DTOs in stream order
+    @Query("SELECT new com.messenger.app.dto.MessageDTO(m.id, m.content, s.id, s.username, s.profilePicture, " +
+           "m.createdAt, m.isRead, m.seq, a.id, a.fileName, a.contentType, a.size) " +
+           "FROM Message m JOIN m.sender s LEFT JOIN m.attachment a " +
+           "WHERE m.conversation.id = :conversationId AND s.deletedAt IS NULL " +
+           "ORDER BY m.seq ASC")
+    List<MessageDTO> findAllDTOs(@Param("conversationId") Long conversationId);
+    
+    // Messages after a stream position, sender and attachment fetched in the same query
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender s LEFT JOIN FETCH m.attachment " +
+           "WHERE m.conversation.id = :conversationId AND m.seq > :afterSeq AND s.deletedAt IS NULL " +
+           "ORDER BY m.seq ASC")
+    List<Message> findAfterSeq(@Param("conversationId") Long conversationId,
+                               @Param("afterSeq") Long afterSeq,
+                               Pageable pageable);
     
     @Query("SELECT COUNT(m) FROM Message m WHERE m.conversation.id = :conversationId")
     Long countByConversationId(@Param("conversationId") Long conversationId);
@@ -30,4 +61,32 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
            "AND m.sender.id != :userId " +
            "AND m.isRead = false")
     Long countUnreadMessages(@Param("conversationId") Long conversationId, @Param("userId") Long userId);
+    
+    // Unread messages grouped by sender; a participant's unread count is the total minus their own row
+    @Query("SELECT m.sender.id, COUNT(m) FROM Message m " +
+           "WHERE m.conversation.id = :conversationId " +
+           "AND m.isRead = false " +
+           "GROUP BY m.sender.id")
+    List<Object[]> countUnreadMessagesBySender(@Param("conversationId") Long conversationId);
+    
+    // Flags what others sent up to a reader's new watermark, without loading the messages
+    @Modifying
+    @Query("UPDATE Message m SET m.isRead = true " +
+           "WHERE m.conversation.id = :conversationId " +
+           "AND m.sender.id <> :userId " +
+           "AND m.isRead = false " +
+           "AND m.seq <= :seq")
+    int markReadUpTo(@Param("conversationId") Long conversationId, @Param("userId") Long userId,
+                     @Param("seq") long seq);
+    
+    // (seq, senderId) of the messages in (afterSeq, uptoSeq], newest first
+    @Query("SELECT m.seq, m.sender.id FROM Message m " +
+           "WHERE m.conversation.id = :conversationId " +
+           "AND m.seq > :afterSeq AND m.seq <= :uptoSeq " +
+           "ORDER BY m.seq DESC")
+    List<Object[]> findSendersInRange(@Param("conversationId") Long conversationId, @Param("afterSeq") long afterSeq,
+                                      @Param("uptoSeq") long uptoSeq, Pageable pageable);
+    
+    @Query("SELECT m.sender.id FROM Message m WHERE m.conversation.id = :conversationId AND m.seq = :seq")
+    Optional<Long> findSenderIdBySeq(@Param("conversationId") Long conversationId, @Param("seq") long seq);
 }
@@ -0,0 +1,12 @@
+package com.messenger.app.repository;
+
+import java.util.Map;
+
+public interface MessageRepositoryCustom {
+    
+    // Raw stored content of plain-text rows at least minBytes long, in id order after afterId
+    Map<Long, String> findPlainContentAfter(long afterId, int minBytes, int limit);
+    
+    // Writes already-encoded content back as a JDBC batch
+    void updateStoredContent(Map<Long, String> storedContent);
+}
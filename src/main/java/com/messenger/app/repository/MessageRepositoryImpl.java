@@ -0,0 +1,48 @@
+package com.messenger.app.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MessageRepositoryImpl implements MessageRepositoryCustom {
+    
+    private static final int BATCH_SIZE = 500;
+    
+    // chr(1) is the codec marker; rows starting with it are already encoded
+    private static final String SELECT_PLAIN_CONTENT_SQL =
+        "SELECT id, content FROM messages " +
+        "WHERE id > ? AND octet_length(content) >= ? AND left(content, 1) <> chr(1) " +
+        "ORDER BY id LIMIT ?";
+    
+    private static final String UPDATE_CONTENT_SQL =
+        "UPDATE messages SET content = ? WHERE id = ?";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Override
+    public Map<Long, String> findPlainContentAfter(long afterId, int minBytes, int limit) {
+        Map<Long, String> rows = new LinkedHashMap<>();
+        jdbcTemplate.query(SELECT_PLAIN_CONTENT_SQL,
+            rs -> { rows.put(rs.getLong("id"), rs.getString("content")); },
+            afterId, minBytes, limit);
+        return rows;
+    }
+    
+    @Override
+    public void updateStoredContent(Map<Long, String> storedContent) {
+        if (storedContent.isEmpty()) {
+            return;
+        }
+        
+        List<Map.Entry<Long, String>> entries = new ArrayList<>(storedContent.entrySet());
+        jdbcTemplate.batchUpdate(UPDATE_CONTENT_SQL, entries, BATCH_SIZE, (ps, entry) -> {
+            ps.setString(1, entry.getValue());
+            ps.setLong(2, entry.getKey());
+        });
+    }
+}
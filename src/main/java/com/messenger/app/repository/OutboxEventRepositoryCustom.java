@@ -0,0 +1,16 @@
+package com.messenger.app.repository;
+
+import com.messenger.app.model.OutboxEvent;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxEventRepositoryCustom {
+    
+    // Claims up to `limit` due events by pushing their next attempt to `leaseUntil`, skipping rows
+    // another node is claiming at the same moment; returned in id order
+    List<OutboxEvent> claimDue(LocalDateTime now, LocalDateTime leaseUntil, int limit);
+    
+    // Records a failed dispatch and returns the new attempt count
+    int recordFailure(Long id, String error, LocalDateTime nextAttemptAt);
+}
@@ -0,0 +1,53 @@
+package com.messenger.app.repository;
+
+import com.messenger.app.model.OutboxEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+
+public class OutboxEventRepositoryImpl implements OutboxEventRepositoryCustom {
+    
+    // One statement claims the batch, so no transaction is held while the events are dispatched
+    private static final String CLAIM_SQL =
+        "UPDATE outbox_events SET next_attempt_at = ? WHERE id IN " +
+        "(SELECT id FROM outbox_events WHERE next_attempt_at <= ? ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED) " +
+        "RETURNING id, event_type, conversation_id, payload, attempts, created_at, next_attempt_at, last_error";
+    
+    private static final String RECORD_FAILURE_SQL =
+        "UPDATE outbox_events SET attempts = attempts + 1, next_attempt_at = ?, last_error = ? " +
+        "WHERE id = ? RETURNING attempts";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Override
+    public List<OutboxEvent> claimDue(LocalDateTime now, LocalDateTime leaseUntil, int limit) {
+        List<OutboxEvent> events = jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> {
+            OutboxEvent event = new OutboxEvent(
+                OutboxEvent.Type.valueOf(rs.getString("event_type")),
+                rs.getObject("conversation_id", Long.class),
+                rs.getString("payload"),
+                rs.getTimestamp("created_at").toLocalDateTime(),
+                rs.getTimestamp("next_attempt_at").toLocalDateTime()
+            );
+            event.setId(rs.getLong("id"));
+            event.setAttempts(rs.getInt("attempts"));
+            event.setLastError(rs.getString("last_error"));
+            return event;
+        }, Timestamp.valueOf(leaseUntil), Timestamp.valueOf(now), limit);
+        // RETURNING does not preserve the subquery's order
+        events.sort(Comparator.comparing(OutboxEvent::getId));
+        return events;
+    }
+    
+    @Override
+    public int recordFailure(Long id, String error, LocalDateTime nextAttemptAt) {
+        List<Integer> attempts = jdbcTemplate.queryForList(RECORD_FAILURE_SQL, Integer.class,
+            Timestamp.valueOf(nextAttemptAt), error, id);
+        return attempts.isEmpty() ? 0 : attempts.get(0);
+    }
+}
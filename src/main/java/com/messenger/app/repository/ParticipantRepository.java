@@ -1,15 +1,18 @@
 package com.messenger.app.repository;
 
+import com.messenger.app.dto.UserSummary;
 import com.messenger.app.model.Participant;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ParticipantRepository extends JpaRepository<Participant, Long> {
+public interface ParticipantRepository extends JpaRepository<Participant, Long>, ParticipantRepositoryCustom {
     
     List<Participant> findByUserId(Long userId);
     
@@ -21,4 +24,28 @@ public interface ParticipantRepository extends JpaRepository<Participant, Long>
            "WHERE p.conversation.id = :conversationId " +
            "AND p.user.id != :userId")
     List<Participant> findOtherParticipants(@Param("conversationId") Long conversationId, @Param("userId") Long userId);
+    
+    @Query("SELECT u.id AS id, u.username AS username, u.profilePicture AS profilePicture " +
+           "FROM Participant p JOIN p.user u " +
+           "WHERE p.conversation.id = :conversationId " +
+           "AND u.id != :userId AND u.deletedAt IS NULL")
+    List<UserSummary> findOtherParticipantSummaries(@Param("conversationId") Long conversationId,
+                                                    @Param("userId") Long userId);
+    
+    // Members not pending purge, with the names inbox events are labelled by
+    @Query("SELECT u.id AS id, u.username AS username, u.profilePicture AS profilePicture " +
+           "FROM Participant p JOIN p.user u " +
+           "WHERE p.conversation.id = :conversationId AND u.deletedAt IS NULL")
+    List<UserSummary> findMemberSummaries(@Param("conversationId") Long conversationId);
+    
+    // (userId, lastReadSeq) for every member
+    @Query("SELECT p.user.id, p.lastReadSeq FROM Participant p WHERE p.conversation.id = :conversationId")
+    List<Object[]> findReadWatermarks(@Param("conversationId") Long conversationId);
+    
+    @Modifying
+    @Query("DELETE FROM Participant p " +
+           "WHERE p.conversation.id = :conversationId " +
+           "AND p.user.id IN :userIds")
+    int deleteByConversationIdAndUserIds(@Param("conversationId") Long conversationId,
+                                         @Param("userIds") Collection<Long> userIds);
 }
@@ -0,0 +1,13 @@
+package com.messenger.app.repository;
+
+import java.util.Collection;
+
+public interface ParticipantRepositoryCustom {
+    
+    // Inserts participant rows by id as a JDBC batch; existing memberships are skipped
+    int insertParticipants(Long conversationId, Collection<Long> userIds);
+    
+    // Moves the member's read watermark up to seq and returns where it was, or null when it was
+    // already there (or the user is not a member); the row stays locked until the transaction ends
+    Long advanceReadWatermark(Long conversationId, Long userId, long seq);
+}
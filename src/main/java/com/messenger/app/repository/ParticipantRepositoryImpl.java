@@ -0,0 +1,65 @@
+package com.messenger.app.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class ParticipantRepositoryImpl implements ParticipantRepositoryCustom {
+    
+    private static final int BATCH_SIZE = 500;
+    
+    private static final String INSERT_SQL =
+        "INSERT INTO participants (user_id, conversation_id, joined_at, last_read_at) " +
+        "VALUES (?, ?, ?, ?) " +
+        "ON CONFLICT (user_id, conversation_id) DO NOTHING";
+    
+    private static final String LOCK_WATERMARK_SQL =
+        "SELECT last_read_seq FROM participants WHERE conversation_id = ? AND user_id = ? FOR UPDATE";
+    
+    private static final String ADVANCE_WATERMARK_SQL =
+        "UPDATE participants SET last_read_seq = ?, last_read_at = ? WHERE conversation_id = ? AND user_id = ?";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Override
+    public int insertParticipants(Long conversationId, Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Long> ids = new ArrayList<>(userIds);
+        int[][] results = jdbcTemplate.batchUpdate(INSERT_SQL, ids, BATCH_SIZE, (ps, userId) -> {
+            ps.setLong(1, userId);
+            ps.setLong(2, conversationId);
+            ps.setTimestamp(3, now);
+            ps.setTimestamp(4, now);
+        });
+        
+        int inserted = 0;
+        for (int[] batch : results) {
+            for (int count : batch) {
+                // SUCCESS_NO_INFO counts as an insert; the driver reports it for some batch modes
+                inserted += count > 0 || count == Statement.SUCCESS_NO_INFO ? 1 : 0;
+            }
+        }
+        return inserted;
+    }
+    
+    @Override
+    public Long advanceReadWatermark(Long conversationId, Long userId, long seq) {
+        List<Long> current = jdbcTemplate.queryForList(LOCK_WATERMARK_SQL, Long.class, conversationId, userId);
+        if (current.isEmpty() || current.get(0) >= seq) {
+            return null;
+        }
+        jdbcTemplate.update(ADVANCE_WATERMARK_SQL, seq, Timestamp.valueOf(LocalDateTime.now()), conversationId, userId);
+        return current.get(0);
+    }
+}
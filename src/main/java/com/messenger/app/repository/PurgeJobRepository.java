@@ -0,0 +1,29 @@
+package com.messenger.app.repository;
+
+import com.messenger.app.model.PurgeJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PurgeJobRepository extends JpaRepository<PurgeJob, Long>, PurgeJobRepositoryCustom {
+    
+    List<PurgeJob> findTop50ByOrderByIdDesc();
+    
+    @Transactional
+    @Modifying
+    @Query("UPDATE PurgeJob j SET j.rowsDeleted = j.rowsDeleted + :rows, j.claimedUntil = :leaseUntil WHERE j.id = :id")
+    int addRowsDeleted(@Param("id") Long id, @Param("rows") long rows, @Param("leaseUntil") LocalDateTime leaseUntil);
+    
+    // Written in place rather than saved from a re-read entity, so the row counter is never overwritten
+    @Transactional
+    @Modifying
+    @Query("UPDATE PurgeJob j SET j.status = :status, j.lastError = :error, j.finishedAt = :finishedAt, j.claimedUntil = NULL WHERE j.id = :id")
+    int finish(@Param("id") Long id, @Param("status") PurgeJob.Status status,
+               @Param("error") String error, @Param("finishedAt") LocalDateTime finishedAt);
+}
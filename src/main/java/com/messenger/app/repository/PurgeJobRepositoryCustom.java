@@ -0,0 +1,20 @@
+package com.messenger.app.repository;
+
+import com.messenger.app.model.PurgeJob;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface PurgeJobRepositoryCustom {
+    
+    // Marks the oldest open job whose lease has expired as RUNNING, leased until leaseUntil, and returns it
+    Optional<PurgeJob> claimNext(LocalDateTime now, LocalDateTime leaseUntil);
+    
+    // Each call deletes at most `limit` child rows in its own statement and returns how many went
+    int deleteConversationChildren(Long conversationId, int limit);
+    
+    int deleteUserChildren(Long userId, int limit);
+    
+    int deleteConversationRow(Long conversationId);
+    
+    int deleteUserRow(Long userId);
+}
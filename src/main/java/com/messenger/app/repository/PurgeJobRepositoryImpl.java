@@ -0,0 +1,94 @@
+package com.messenger.app.repository;
+
+import com.messenger.app.model.PurgeJob;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public class PurgeJobRepositoryImpl implements PurgeJobRepositoryCustom {
+    
+    // RUNNING jobs are open too, so work interrupted by a restart resumes once its lease runs out
+    private static final String CLAIM_SQL =
+        "UPDATE purge_jobs SET status = 'RUNNING', claimed_until = ? WHERE id = " +
+        "(SELECT id FROM purge_jobs WHERE status IN ('PENDING', 'RUNNING') " +
+        "AND (claimed_until IS NULL OR claimed_until < ?) ORDER BY id LIMIT 1 FOR UPDATE SKIP LOCKED) " +
+        "RETURNING id, target_type, target_id, target_name, status, rows_deleted, created_at, claimed_until";
+    
+    // Set-based, bounded deletes: each statement touches at most `limit` rows
+    private static final String DELETE_MESSAGES_BY_CONVERSATION =
+        "DELETE FROM messages WHERE id IN " +
+        "(SELECT id FROM messages WHERE conversation_id = ? LIMIT ?)";
+    
+    private static final String DELETE_PARTICIPANTS_BY_CONVERSATION =
+        "DELETE FROM participants WHERE id IN " +
+        "(SELECT id FROM participants WHERE conversation_id = ? LIMIT ?)";
+    
+    private static final String DELETE_OUTBOX_EVENTS_BY_CONVERSATION =
+        "DELETE FROM outbox_events WHERE id IN " +
+        "(SELECT id FROM outbox_events WHERE conversation_id = ? LIMIT ?)";
+    
+    private static final String DELETE_MESSAGES_BY_SENDER =
+        "DELETE FROM messages WHERE id IN " +
+        "(SELECT id FROM messages WHERE sender_id = ? LIMIT ?)";
+    
+    private static final String DELETE_PARTICIPANTS_BY_USER =
+        "DELETE FROM participants WHERE id IN " +
+        "(SELECT id FROM participants WHERE user_id = ? LIMIT ?)";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Override
+    public Optional<PurgeJob> claimNext(LocalDateTime now, LocalDateTime leaseUntil) {
+        List<PurgeJob> jobs = jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> {
+            PurgeJob job = new PurgeJob(
+                PurgeJob.TargetType.valueOf(rs.getString("target_type")),
+                rs.getLong("target_id"),
+                rs.getString("target_name")
+            );
+            job.setId(rs.getLong("id"));
+            job.setStatus(PurgeJob.Status.valueOf(rs.getString("status")));
+            job.setRowsDeleted(rs.getLong("rows_deleted"));
+            Timestamp createdAt = rs.getTimestamp("created_at");
+            job.setCreatedAt(createdAt != null ? createdAt.toLocalDateTime() : null);
+            job.setClaimedUntil(rs.getTimestamp("claimed_until").toLocalDateTime());
+            return job;
+        }, Timestamp.valueOf(leaseUntil), Timestamp.valueOf(now));
+        return jobs.stream().findFirst();
+    }
+    
+    @Override
+    public int deleteConversationChildren(Long conversationId, int limit) {
+        int deleted = jdbcTemplate.update(DELETE_MESSAGES_BY_CONVERSATION, conversationId, limit);
+        if (deleted == 0) {
+            deleted = jdbcTemplate.update(DELETE_PARTICIPANTS_BY_CONVERSATION, conversationId, limit);
+        }
+        if (deleted == 0) {
+            deleted = jdbcTemplate.update(DELETE_OUTBOX_EVENTS_BY_CONVERSATION, conversationId, limit);
+        }
+        return deleted;
+    }
+    
+    @Override
+    public int deleteUserChildren(Long userId, int limit) {
+        int deleted = jdbcTemplate.update(DELETE_MESSAGES_BY_SENDER, userId, limit);
+        if (deleted == 0) {
+            deleted = jdbcTemplate.update(DELETE_PARTICIPANTS_BY_USER, userId, limit);
+        }
+        return deleted;
+    }
+    
+    @Override
+    public int deleteConversationRow(Long conversationId) {
+        return jdbcTemplate.update("DELETE FROM conversations WHERE id = ?", conversationId);
+    }
+    
+    @Override
+    public int deleteUserRow(Long userId) {
+        return jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+    }
+}
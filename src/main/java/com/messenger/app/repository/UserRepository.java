@@ -1,14 +1,65 @@
 package com.messenger.app.repository;
 
+import com.messenger.app.dto.UserSummary;
+import com.messenger.app.dto.UserView;
 import com.messenger.app.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
-    Optional<User> findByUsername(String username);
-    Optional<User> findByEmail(String email);
-    boolean existsByUsername(String username);
-    boolean existsByEmail(String email);
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
+    // Usernames and emails are unique among users not pending purge only (V11), so a deleted
+    // user's row does not block registering the same name again
+    Optional<User> findByUsernameAndDeletedAtIsNull(String username);
+    Optional<User> findByEmailAndDeletedAtIsNull(String email);
+    boolean existsByUsernameAndDeletedAtIsNull(String username);
+    boolean existsByEmailAndDeletedAtIsNull(String email);
+    
+    long countByDeletedAtIsNull();
+    
+    long countByDeletedAtIsNullAndIsOnlineTrue();
+    
+    @Query("SELECT u.id AS id, u.username AS username, u.email AS email, u.fullName AS fullName, " +
+           "u.profilePicture AS profilePicture, COALESCE(u.isOnline, false) AS isOnline, " +
+           "COALESCE(u.isAdmin, false) AS isAdmin, u.createdAt AS createdAt " +
+           "FROM User u WHERE u.id = :id AND u.deletedAt IS NULL")
+    Optional<UserView> findViewById(@Param("id") Long id);
+    
+    @Query("SELECT u.id AS id, u.username AS username, u.email AS email, u.fullName AS fullName, " +
+           "u.profilePicture AS profilePicture, COALESCE(u.isOnline, false) AS isOnline, " +
+           "COALESCE(u.isAdmin, false) AS isAdmin, u.createdAt AS createdAt " +
+           "FROM User u WHERE u.deletedAt IS NULL ORDER BY u.id")
+    List<UserView> findAllViews();
+    
+    // Case-insensitive match on username or full name, filtered in the database
+    @Query("SELECT u.id AS id, u.username AS username, u.email AS email, u.fullName AS fullName, " +
+           "u.profilePicture AS profilePicture, COALESCE(u.isOnline, false) AS isOnline, " +
+           "COALESCE(u.isAdmin, false) AS isAdmin, u.createdAt AS createdAt " +
+           "FROM User u WHERE u.deletedAt IS NULL " +
+           "AND (LOWER(u.username) LIKE LOWER(CONCAT('%', :query, '%')) " +
+           "OR LOWER(u.fullName) LIKE LOWER(CONCAT('%', :query, '%'))) " +
+           "ORDER BY u.id")
+    List<UserView> searchViews(@Param("query") String query);
+    
+    @Query("SELECT u.id AS id, u.username AS username, u.profilePicture AS profilePicture " +
+           "FROM User u WHERE u.id = :id AND u.deletedAt IS NULL")
+    Optional<UserSummary> findSummaryById(@Param("id") Long id);
+    
+    @Query("SELECT u.id AS id, u.username AS username, u.profilePicture AS profilePicture " +
+           "FROM User u WHERE u.id IN :ids AND u.deletedAt IS NULL ORDER BY u.username")
+    List<UserSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT u.id FROM User u WHERE u.id IN :ids AND u.deletedAt IS NULL")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+    
+    @Modifying
+    @Query("UPDATE User u SET u.deletedAt = :now, u.isOnline = false WHERE u.id = :id AND u.deletedAt IS NULL")
+    int markDeleted(@Param("id") Long id, @Param("now") LocalDateTime now);
 }
@@ -0,0 +1,35 @@
+package com.messenger.app.repository;
+
+import com.messenger.app.dto.AdminUserView;
+import com.messenger.app.dto.KeysetPage;
+import com.messenger.app.dto.KeysetRequest;
+
+public interface UserRepositoryCustom {
+    
+    enum AdminUserSort implements KeysetSort {
+        ID("u.id", "bigint"),
+        USERNAME("u.username", "varchar");
+        
+        private final String expression;
+        private final String sqlType;
+        
+        AdminUserSort(String expression, String sqlType) {
+            this.expression = expression;
+            this.sqlType = sqlType;
+        }
+        
+        @Override
+        public String getExpression() {
+            return expression;
+        }
+        
+        @Override
+        public String getSqlType() {
+            return sqlType;
+        }
+    }
+    
+    // One keyset page of live users; null filters are not applied
+    KeysetPage<AdminUserView> findAdminPage(String search, Boolean online, Boolean admin,
+                                            AdminUserSort sort, KeysetRequest request);
+}
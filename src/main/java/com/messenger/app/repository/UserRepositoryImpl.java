@@ -0,0 +1,57 @@
+package com.messenger.app.repository;
+
+import com.messenger.app.dto.AdminUserView;
+import com.messenger.app.dto.KeysetPage;
+import com.messenger.app.dto.KeysetRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+public class UserRepositoryImpl implements UserRepositoryCustom {
+    
+    private static final String ADMIN_COLUMNS =
+        "u.id, u.username, u.email, u.full_name, " +
+        "COALESCE(u.is_online, false) AS is_online, COALESCE(u.is_admin, false) AS is_admin, u.created_at";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Override
+    public KeysetPage<AdminUserView> findAdminPage(String search, Boolean online, Boolean admin,
+                                                   AdminUserSort sort, KeysetRequest request) {
+        List<String> conditions = new ArrayList<>(List.of("u.deleted_at IS NULL"));
+        List<Object> args = new ArrayList<>();
+        if (search != null && !search.isBlank()) {
+            String pattern = KeysetQuery.containsPattern(search.trim());
+            conditions.add("(u.username ILIKE ? OR u.email ILIKE ? OR u.full_name ILIKE ?)");
+            args.add(pattern);
+            args.add(pattern);
+            args.add(pattern);
+        }
+        if (online != null) {
+            conditions.add("COALESCE(u.is_online, false) = ?");
+            args.add(online);
+        }
+        if (admin != null) {
+            conditions.add("COALESCE(u.is_admin, false) = ?");
+            args.add(admin);
+        }
+        
+        return KeysetQuery.fetch(jdbcTemplate, ADMIN_COLUMNS, "users u", "u.id", conditions, args, "",
+            sort, request, (rs, rowNum) -> {
+                Timestamp createdAt = rs.getTimestamp("created_at");
+                return new AdminUserView(
+                    rs.getLong("id"),
+                    rs.getString("username"),
+                    rs.getString("email"),
+                    rs.getString("full_name"),
+                    rs.getBoolean("is_online"),
+                    rs.getBoolean("is_admin"),
+                    createdAt != null ? createdAt.toLocalDateTime() : null
+                );
+            });
+    }
+}
@@ -0,0 +1,281 @@
+package com.messenger.app.service;
+
+import com.messenger.app.model.Attachment;
+import com.messenger.app.repository.AttachmentRepository;
+import com.messenger.app.repository.ParticipantRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Chunked, resumable attachment uploads written straight to disk.
+ *
+ * A client starts an upload with the file's size, then sends it in chunks of at most
+ * messenger.attachments.max-chunk-size bytes, each at the offset the server has reached.
+ * Chunks are copied from the request stream into a FileChannel through one
+ * messenger.attachments.buffer-size buffer, so memory per upload does not depend on file size.
+ * A chunk that arrives short or fails its SHA-256 is cut off again and the offset stays put;
+ * after a dropped connection the client asks for the offset and carries on from there.
+ * Uploads never sent with a message are removed after messenger.attachments.abandon-after-ms.
+ */
+@Service
+public class AttachmentService {
+    
+    private static final Logger log = LoggerFactory.getLogger(AttachmentService.class);
+    
+    private static final int MAX_FILE_NAME_LENGTH = 255;
+    private static final int MAX_CONTENT_TYPE_LENGTH = 127;
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+    
+    private final AttachmentRepository attachmentRepository;
+    private final ParticipantRepository participantRepository;
+    private final Path directory;
+    private final long maxSize;
+    private final int maxChunkSize;
+    private final int bufferSize;
+    private final long abandonAfterMillis;
+    private final Counter bytesReceived;
+    private final Counter chunksStored;
+    private final Counter chunksRejected;
+    
+    public AttachmentService(AttachmentRepository attachmentRepository,
+                             ParticipantRepository participantRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${messenger.attachments.dir:data/attachments}") String directory,
+                             @Value("${messenger.attachments.max-size:104857600}") long maxSize,
+                             @Value("${messenger.attachments.max-chunk-size:4194304}") int maxChunkSize,
+                             @Value("${messenger.attachments.buffer-size:65536}") int bufferSize,
+                             @Value("${messenger.attachments.abandon-after-ms:86400000}") long abandonAfterMillis) {
+        this.attachmentRepository = attachmentRepository;
+        this.participantRepository = participantRepository;
+        this.directory = Paths.get(directory);
+        this.maxSize = maxSize;
+        this.maxChunkSize = maxChunkSize;
+        this.bufferSize = bufferSize;
+        this.abandonAfterMillis = abandonAfterMillis;
+        this.bytesReceived = Counter.builder("messenger.attachments.bytes.received").register(meterRegistry);
+        this.chunksStored = Counter.builder("messenger.attachments.chunks").tag("result", "stored").register(meterRegistry);
+        this.chunksRejected = Counter.builder("messenger.attachments.chunks").tag("result", "rejected").register(meterRegistry);
+        try {
+            Files.createDirectories(this.directory);
+        } catch (IOException e) {
+            log.warn("Could not create attachment directory {}", this.directory, e);
+        }
+    }
+    
+    public int getMaxChunkSize() {
+        return maxChunkSize;
+    }
+    
+    public Attachment start(Long uploaderId, Long conversationId, String fileName, String contentType, long size)
+            throws IOException {
+        if (participantRepository.findByUserIdAndConversationId(uploaderId, conversationId).isEmpty()) {
+            throw new IllegalArgumentException("Not a participant of this conversation");
+        }
+        if (size < 0 || size > maxSize) {
+            throw new IllegalArgumentException("File size must be between 0 and " + maxSize + " bytes");
+        }
+        String name = cleanFileName(fileName);
+        String type = contentType == null || contentType.isBlank() || contentType.length() > MAX_CONTENT_TYPE_LENGTH
+            ? DEFAULT_CONTENT_TYPE : contentType.trim();
+        
+        Attachment attachment = new Attachment(conversationId, uploaderId, name, type, size, UUID.randomUUID().toString());
+        Files.createFile(resolve(attachment));
+        if (size == 0) {
+            attachment.setStatus(Attachment.Status.COMPLETE);
+            attachment.setCompletedAt(LocalDateTime.now());
+        }
+        return attachmentRepository.save(attachment);
+    }
+    
+    // An upload as seen by the user who started it, for resuming
+    public Optional<Attachment> findUpload(Long attachmentId, Long uploaderId) {
+        return attachmentRepository.findById(attachmentId)
+            .filter(attachment -> attachment.getUploaderId().equals(uploaderId));
+    }
+    
+    /**
+     * Appends one chunk at {@code offset}, which must be where the upload currently stands.
+     * Only {@code length} bytes are read from the body. Throws IllegalStateException when the
+     * offset is stale or another chunk of the same upload is being written, and
+     * IllegalArgumentException when the chunk is invalid; either way nothing is recorded.
+     */
+    public Attachment writeChunk(Long attachmentId, Long uploaderId, long offset, long length,
+                                 String sha256, InputStream body) throws IOException {
+        Attachment attachment = findUpload(attachmentId, uploaderId)
+            .orElseThrow(() -> new IllegalArgumentException("Upload not found"));
+        if (attachment.getStatus() != Attachment.Status.UPLOADING || offset != attachment.getReceivedBytes()) {
+            throw new IllegalStateException("Upload is at offset " + attachment.getReceivedBytes());
+        }
+        if (length <= 0 || length > maxChunkSize || offset + length > attachment.getSize()) {
+            chunksRejected.increment();
+            throw new IllegalArgumentException("Chunk must be 1 to " + maxChunkSize + " bytes and end within the file");
+        }
+        byte[] expected = sha256 != null && !sha256.isBlank() ? HexFormat.of().parseHex(sha256.trim()) : null;
+        MessageDigest digest = expected != null ? newSha256() : null;
+        
+        try (FileChannel channel = FileChannel.open(resolve(attachment), StandardOpenOption.WRITE);
+             FileLock lock = tryLock(channel)) {
+            if (lock == null) {
+                throw new IllegalStateException("Upload is at offset " + attachment.getReceivedBytes());
+            }
+            // Another request may have stored this chunk between the check above and the lock;
+            // writing it again would overwrite bytes that are already acknowledged
+            Optional<Long> current = attachmentRepository.findUploadingOffset(attachmentId);
+            if (current.isEmpty()) {
+                throw new IllegalStateException("Upload is no longer in progress");
+            }
+            if (current.get() != offset) {
+                throw new IllegalStateException("Upload is at offset " + current.get());
+            }
+            
+            ReadableByteChannel source = Channels.newChannel(body);
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(bufferSize, length));
+            long position = offset;
+            long remaining = length;
+            while (remaining > 0) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+                int read = source.read(buffer);
+                if (read < 0) {
+                    break;
+                }
+                buffer.flip();
+                if (digest != null) {
+                    digest.update(buffer);
+                    buffer.rewind();
+                }
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                remaining -= read;
+            }
+            
+            if (remaining > 0 || (expected != null && !MessageDigest.isEqual(expected, digest.digest()))) {
+                channel.truncate(offset);
+                chunksRejected.increment();
+                throw new IllegalArgumentException(remaining > 0
+                    ? "Chunk ended after " + (length - remaining) + " of " + length + " bytes"
+                    : "Chunk checksum does not match");
+            }
+            // On disk before the offset moves, so an acknowledged chunk survives a crash
+            channel.force(false);
+            
+            long received = offset + length;
+            boolean complete = received == attachment.getSize();
+            Attachment.Status status = complete ? Attachment.Status.COMPLETE : Attachment.Status.UPLOADING;
+            LocalDateTime completedAt = complete ? LocalDateTime.now() : null;
+            if (attachmentRepository.advance(attachmentId, offset, received, status, completedAt) == 0) {
+                throw new IllegalStateException("Upload moved on while the chunk was written");
+            }
+            bytesReceived.increment(length);
+            chunksStored.increment();
+            attachment.setReceivedBytes(received);
+            attachment.setStatus(status);
+            attachment.setCompletedAt(completedAt);
+            return attachment;
+        }
+    }
+    
+    // A finished upload, if the user may read the conversation it was sent to
+    public Optional<Attachment> findDownloadable(Long attachmentId, Long userId) {
+        return attachmentRepository.findById(attachmentId)
+            .filter(attachment -> attachment.getStatus() == Attachment.Status.COMPLETE)
+            .filter(attachment -> participantRepository.findByUserIdAndConversationId(userId, attachment.getConversationId()).isPresent());
+    }
+    
+    public Path resolve(Attachment attachment) {
+        return directory.resolve(attachment.getStorageKey());
+    }
+    
+    // Purge steps: the conversation's or uploader's messages are already gone, so these rows are unreferenced
+    public int deleteConversationAttachments(Long conversationId, int limit) {
+        return delete(attachmentRepository.findByConversationIdOrderByIdAsc(conversationId, PageRequest.of(0, limit)));
+    }
+    
+    public int deleteUploaderAttachments(Long uploaderId, int limit) {
+        return delete(attachmentRepository.findByUploaderIdOrderByIdAsc(uploaderId, PageRequest.of(0, limit)));
+    }
+    
+    @Scheduled(fixedDelayString = "${messenger.attachments.sweep-interval-ms:3600000}")
+    public void deleteAbandoned() {
+        LocalDateTime cutoff = LocalDateTime.now().minusNanos(abandonAfterMillis * 1_000_000);
+        for (Attachment attachment : attachmentRepository.findUnsentBefore(cutoff, PageRequest.of(0, 500))) {
+            try {
+                if (attachmentRepository.deleteUnsent(attachment.getId()) > 0) {
+                    deleteFile(attachment);
+                }
+            } catch (DataIntegrityViolationException e) {
+                // Sent with a message while the sweep was running
+            }
+        }
+    }
+    
+    private int delete(List<Attachment> attachments) {
+        if (attachments.isEmpty()) {
+            return 0;
+        }
+        attachmentRepository.deleteAllByIdInBatch(attachments.stream().map(Attachment::getId).toList());
+        attachments.forEach(this::deleteFile);
+        return attachments.size();
+    }
+    
+    private void deleteFile(Attachment attachment) {
+        try {
+            Files.deleteIfExists(resolve(attachment));
+        } catch (IOException e) {
+            log.warn("Could not delete attachment file {}", attachment.getStorageKey(), e);
+        }
+    }
+    
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+    
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    // Keeps only the last path segment and drops control characters
+    private static String cleanFileName(String fileName) {
+        String name = fileName == null ? "" : fileName.replace('\\', '/');
+        name = name.substring(name.lastIndexOf('/') + 1).replaceAll("\\p{Cntrl}", "").trim();
+        if (name.isEmpty()) {
+            name = "file";
+        }
+        return name.length() > MAX_FILE_NAME_LENGTH ? name.substring(name.length() - MAX_FILE_NAME_LENGTH) : name;
+    }
+}
@@ -0,0 +1,61 @@
+package com.messenger.app.service;
+
+import com.messenger.app.repository.ConversationRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces conversation "last activity" bumps in memory and writes them to
+ * conversations.updated_at in periodic batches, so senders in a busy group
+ * don't serialize on that conversation's row lock.
+ */
+@Service
+public class ConversationActivityTracker {
+    
+    private static final Logger log = LoggerFactory.getLogger(ConversationActivityTracker.class);
+    
+    private final Map<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+    
+    @Autowired
+    private ConversationRepository conversationRepository;
+    
+    public void touch(Long conversationId, LocalDateTime at) {
+        pending.merge(conversationId, at, (current, next) -> next.isAfter(current) ? next : current);
+    }
+    
+    @Scheduled(fixedDelayString = "${messenger.activity.flush-interval-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        
+        Map<Long, LocalDateTime> batch = new HashMap<>();
+        for (Map.Entry<Long, LocalDateTime> entry : pending.entrySet()) {
+            // Only drop the entry if no newer touch raced in; otherwise it stays for the next flush
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                batch.put(entry.getKey(), entry.getValue());
+            }
+        }
+        
+        try {
+            conversationRepository.updateActivity(batch);
+        } catch (RuntimeException e) {
+            log.warn("Failed to flush activity for {} conversations, will retry", batch.size(), e);
+            batch.forEach(this::touch);
+        }
+    }
+    
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,132 @@
+package com.messenger.app.service;
+
+import com.messenger.app.dto.ChatMessage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro-batches broadcasts to /topic/conversation/{id}. Messages for a conversation are
+ * collected for up to messenger.broadcast.batch-window-ms or messenger.broadcast.max-batch-size
+ * items, then sent as one frame: a single ChatMessage when alone, otherwise an array.
+ * All sends run on one scheduler thread, which keeps batches of a conversation in order.
+ * Every published message is also kept in the ConversationStreamBuffer for resume.
+ */
+@Service
+public class ConversationBroadcaster {
+    
+    public static final String TOPIC_PREFIX = "/topic/conversation/";
+    
+    private final Map<Long, PendingBatch> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "conversation-broadcaster");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ConversationStreamBuffer streamBuffer;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final DistributionSummary batchSize;
+    private final Timer itemLatency;
+    
+    public ConversationBroadcaster(SimpMessagingTemplate messagingTemplate,
+                                   ConversationStreamBuffer streamBuffer,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${messenger.broadcast.batch-window-ms:10}") long windowMillis,
+                                   @Value("${messenger.broadcast.max-batch-size:50}") int maxBatchSize) {
+        this.messagingTemplate = messagingTemplate;
+        this.streamBuffer = streamBuffer;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.batchSize = DistributionSummary.builder("messenger.broadcast.batch.size")
+            .description("Messages per outbound conversation frame")
+            .register(meterRegistry);
+        this.itemLatency = Timer.builder("messenger.broadcast.batch.delay")
+            .description("Time a message waited in the batch before being sent")
+            .register(meterRegistry);
+    }
+    
+    public void publish(ChatMessage message) {
+        Long conversationId = message.getConversationId();
+        streamBuffer.record(message);
+        if (windowMillis <= 0) {
+            send(conversationId, List.of(new PendingItem(message, System.nanoTime())));
+            return;
+        }
+        
+        int[] size = new int[1];
+        pending.compute(conversationId, (id, batch) -> {
+            if (batch == null) {
+                batch = new PendingBatch();
+            }
+            batch.items.add(new PendingItem(message, System.nanoTime()));
+            size[0] = batch.items.size();
+            return batch;
+        });
+        
+        if (size[0] >= maxBatchSize) {
+            scheduler.execute(() -> flush(conversationId));
+        } else if (size[0] == 1) {
+            scheduler.schedule(() -> flush(conversationId), windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    private void flush(Long conversationId) {
+        PendingBatch batch = pending.remove(conversationId);
+        if (batch != null && !batch.items.isEmpty()) {
+            send(conversationId, batch.items);
+        }
+    }
+    
+    private void send(Long conversationId, List<PendingItem> items) {
+        long now = System.nanoTime();
+        for (PendingItem item : items) {
+            itemLatency.record(now - item.enqueuedAt, TimeUnit.NANOSECONDS);
+        }
+        batchSize.record(items.size());
+        
+        String destination = TOPIC_PREFIX + conversationId;
+        if (items.size() == 1) {
+            messagingTemplate.convertAndSend(destination, items.get(0).message);
+        } else {
+            List<ChatMessage> messages = new ArrayList<>(items.size());
+            items.forEach(item -> messages.add(item.message));
+            messagingTemplate.convertAndSend(destination, messages);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        // Send whatever is still pending before the broker goes away
+        new ArrayList<>(pending.keySet()).forEach(this::flush);
+        scheduler.shutdown();
+    }
+    
+    private static class PendingBatch {
+        private final List<PendingItem> items = new ArrayList<>();
+    }
+    
+    private static class PendingItem {
+        private final ChatMessage message;
+        private final long enqueuedAt;
+        
+        private PendingItem(ChatMessage message, long enqueuedAt) {
+            this.message = message;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.messenger.app.service;
+
+import com.messenger.app.dto.MessageDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The latest messenger.message-cache.messages-per-conversation messages of hot conversations,
+ * as immutable MessageDTO lists, so opening a popular chat does not re-query the same rows.
+ *
+ * MessageService keeps entries current after each commit: new messages are appended and read
+ * marks are applied by replacing the list. An append whose seq does not follow the cached tail
+ * drops the entry instead. A page loaded while a send commits may miss that one message until
+ * the next append; clients fill such a gap through the seq catch-up.
+ * Entries are evicted after messenger.message-cache.idle-ms without a read, and the least recently
+ * read entry makes way once messenger.message-cache.max-conversations is reached.
+ */
+@Service
+public class ConversationMessageCache {
+    
+    // Rough per-message overhead (DTO, boxed fields, strings) used for the footprint gauge
+    private static final int MESSAGE_OVERHEAD_BYTES = 200;
+    
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    
+    private final boolean enabled;
+    private final int capacity;
+    private final int maxConversations;
+    private final long idleMillis;
+    private final Counter hits;
+    private final Counter misses;
+    
+    public ConversationMessageCache(MeterRegistry meterRegistry,
+                                    @Value("${messenger.message-cache.enabled:true}") boolean enabled,
+                                    @Value("${messenger.message-cache.messages-per-conversation:50}") int capacity,
+                                    @Value("${messenger.message-cache.max-conversations:1000}") int maxConversations,
+                                    @Value("${messenger.message-cache.idle-ms:300000}") long idleMillis) {
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.maxConversations = maxConversations;
+        this.idleMillis = idleMillis;
+        this.hits = Counter.builder("messenger.message.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("messenger.message.cache.requests").tag("result", "miss").register(meterRegistry);
+        meterRegistry.gauge("messenger.message.cache.conversations", entries, Map::size);
+        meterRegistry.gauge("messenger.message.cache.bytes", entries,
+            map -> map.values().stream().mapToLong(entry -> entry.bytes).sum());
+    }
+    
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /** The latest {@code limit} messages, oldest first, if the cache can answer for them. */
+    public Optional<List<MessageDTO>> get(Long conversationId, int limit) {
+        Entry entry = enabled && limit <= capacity ? entries.get(conversationId) : null;
+        if (entry == null || (entry.messages.size() < limit && !entry.complete)) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        entry.lastAccess = System.currentTimeMillis();
+        List<MessageDTO> messages = entry.messages;
+        return Optional.of(messages.subList(Math.max(0, messages.size() - limit), messages.size()));
+    }
+    
+    /** Stores a freshly loaded page of up to {@link #getCapacity()} latest messages, oldest first. */
+    public void populate(Long conversationId, List<MessageDTO> latest) {
+        if (!enabled) {
+            return;
+        }
+        if (!entries.containsKey(conversationId) && entries.size() >= maxConversations) {
+            evictLeastRecentlyRead();
+        }
+        // A shorter page than requested is the whole conversation
+        entries.putIfAbsent(conversationId, new Entry(latest, latest.size() < capacity));
+    }
+    
+    public void append(Long conversationId, MessageDTO message) {
+        entries.computeIfPresent(conversationId, (id, entry) -> {
+            List<MessageDTO> messages = entry.messages;
+            MessageDTO tail = messages.isEmpty() ? null : messages.get(messages.size() - 1);
+            boolean follows = tail == null
+                ? message.getSeq() != null && message.getSeq() == 1
+                : tail.getSeq() != null && message.getSeq() != null && message.getSeq() == tail.getSeq() + 1;
+            if (!follows) {
+                return null;
+            }
+            List<MessageDTO> updated = new ArrayList<>(messages);
+            updated.add(message);
+            boolean complete = entry.complete;
+            if (updated.size() > capacity) {
+                updated.remove(0);
+                complete = false;
+            }
+            return entry.replace(updated, complete);
+        });
+    }
+    
+    /** Applies a "read everything from others" mark to the cached copies. */
+    public void markRead(Long conversationId, Long readerId) {
+        entries.computeIfPresent(conversationId, (id, entry) -> {
+            List<MessageDTO> updated = new ArrayList<>(entry.messages.size());
+            for (MessageDTO message : entry.messages) {
+                if (!Boolean.TRUE.equals(message.getIsRead()) && !message.getSenderId().equals(readerId)) {
+                    MessageDTO read = new MessageDTO(message.getId(), message.getContent(), message.getSenderId(),
+                        message.getSenderUsername(), message.getSenderProfilePicture(), message.getCreatedAt(), true);
+                    read.setSeq(message.getSeq());
+                    read.setAttachment(message.getAttachment());
+                    updated.add(read);
+                } else {
+                    updated.add(message);
+                }
+            }
+            return entry.replace(updated, entry.complete);
+        });
+    }
+    
+    public void invalidate(Long conversationId) {
+        entries.remove(conversationId);
+    }
+    
+    public void clear() {
+        entries.clear();
+    }
+    
+    @Scheduled(fixedDelayString = "${messenger.message-cache.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        entries.values().removeIf(entry -> entry.lastAccess < cutoff);
+    }
+    
+    private void evictLeastRecentlyRead() {
+        entries.entrySet().stream()
+            .min(Comparator.comparingLong(e -> e.getValue().lastAccess))
+            .ifPresent(e -> entries.remove(e.getKey(), e.getValue()));
+    }
+    
+    private static class Entry {
+        private final List<MessageDTO> messages;
+        private final boolean complete;
+        private final long bytes;
+        private volatile long lastAccess;
+        
+        private Entry(List<MessageDTO> messages, boolean complete) {
+            this(messages, complete, System.currentTimeMillis());
+        }
+        
+        private Entry(List<MessageDTO> messages, boolean complete, long lastAccess) {
+            this.messages = List.copyOf(messages);
+            this.complete = complete;
+            this.lastAccess = lastAccess;
+            long size = 0;
+            for (MessageDTO message : messages) {
+                size += MESSAGE_OVERHEAD_BYTES + 2L * (message.getContent() != null ? message.getContent().length() : 0);
+            }
+            this.bytes = size;
+        }
+        
+        private Entry replace(List<MessageDTO> messages, boolean complete) {
+            return new Entry(messages, complete, lastAccess);
+        }
+    }
+}
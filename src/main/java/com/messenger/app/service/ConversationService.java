@@ -1,17 +1,29 @@
 package com.messenger.app.service;
 
+import com.messenger.app.dto.AdminConversationView;
+import com.messenger.app.dto.ConversationSummary;
+import com.messenger.app.dto.InboxConversationView;
+import com.messenger.app.dto.KeysetPage;
+import com.messenger.app.dto.KeysetRequest;
+import com.messenger.app.dto.UserSummary;
 import com.messenger.app.model.Conversation;
-import com.messenger.app.model.Participant;
+import com.messenger.app.model.PurgeJob;
 import com.messenger.app.model.User;
 import com.messenger.app.repository.ConversationRepository;
+import com.messenger.app.repository.ConversationRepositoryCustom.AdminConversationSort;
 import com.messenger.app.repository.ParticipantRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @Service
 @Transactional
@@ -26,68 +38,119 @@ public class ConversationService {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private PurgeService purgeService;
+    
+    @Autowired
+    private ConversationMessageCache messageCache;
+    
+    @Autowired
+    private ReadWatermarkService readWatermarkService;
+    
     public Conversation createDirectConversation(Long userId1, Long userId2) {
-        // Check if conversation already exists
-        Conversation existing = conversationRepository.findDirectConversation(userId1, userId2);
-        if (existing != null) {
-            return existing;
+        Long low = Math.min(userId1, userId2);
+        Long high = Math.max(userId1, userId2);
+        
+        // Check if conversation already exists (single unique-index lookup)
+        Optional<Conversation> existing = conversationRepository.findByDirectUserLowAndDirectUserHigh(low, high);
+        if (existing.isPresent()) {
+            return existing.get();
         }
         
         // Create new conversation
         User user1 = userService.findById(userId1).orElseThrow();
         User user2 = userService.findById(userId2).orElseThrow();
         
+        // Insert-on-conflict: of two concurrent creators, only one inserts the row
         String conversationName = user1.getUsername() + " & " + user2.getUsername();
-        Conversation conversation = new Conversation(conversationName, false);
-        conversation = conversationRepository.save(conversation);
+        int inserted = conversationRepository.insertDirectConversationIfAbsent(
+            conversationName, low, high, LocalDateTime.now());
+        Conversation conversation = conversationRepository.findByDirectUserLowAndDirectUserHigh(low, high)
+            .orElseThrow();
         
-        // Add participants
-        Participant p1 = new Participant(user1, conversation);
-        Participant p2 = new Participant(user2, conversation);
-        participantRepository.save(p1);
-        participantRepository.save(p2);
+        // Add participants (only the transaction that created the row does this)
+        if (inserted > 0) {
+            participantRepository.insertParticipants(conversation.getId(), new LinkedHashSet<>(List.of(low, high)));
+        }
         
         return conversation;
     }
     
     public Conversation createGroupConversation(String name, List<Long> userIds) {
+        Set<Long> memberIds = new LinkedHashSet<>(userIds);
+        userService.requireExistingUsers(memberIds);
+        
         Conversation conversation = new Conversation(name, true);
-        conversation = conversationRepository.save(conversation);
+        conversation = conversationRepository.saveAndFlush(conversation);
         
-        for (Long userId : userIds) {
-            User user = userService.findById(userId).orElseThrow();
-            Participant participant = new Participant(user, conversation);
-            participantRepository.save(participant);
-        }
+        participantRepository.insertParticipants(conversation.getId(), memberIds);
         
         return conversation;
     }
     
-    public List<Conversation> getUserConversations(Long userId) {
-        return conversationRepository.findByUserId(userId);
+    public int addMembers(Long conversationId, Collection<Long> userIds) {
+        requireGroup(conversationId);
+        Set<Long> memberIds = new LinkedHashSet<>(userIds);
+        userService.requireExistingUsers(memberIds);
+        int added = participantRepository.insertParticipants(conversationId, memberIds);
+        // Seen-by counts are rebuilt from the new member list on next use; dropped only after
+        // commit, or a rebuild in between would reload the old list and keep it
+        afterCommit(() -> readWatermarkService.invalidate(conversationId));
+        return added;
+    }
+    
+    public int removeMembers(Long conversationId, Collection<Long> userIds) {
+        requireGroup(conversationId);
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        int removed = participantRepository.deleteByConversationIdAndUserIds(conversationId, userIds);
+        afterCommit(() -> readWatermarkService.invalidate(conversationId));
+        return removed;
+    }
+    
+    // A direct conversation is keyed by its two users, so its membership never changes
+    private void requireGroup(Long conversationId) {
+        boolean group = conversationRepository.findSummaryById(conversationId)
+            .map(conversation -> Boolean.TRUE.equals(conversation.getIsGroup()))
+            .orElseThrow(() -> new IllegalArgumentException("Conversation not found"));
+        if (!group) {
+            throw new IllegalStateException("Members can only be changed in group conversations");
+        }
     }
     
+    @Transactional(readOnly = true)
+    public boolean isParticipant(Long userId, Long conversationId) {
+        return participantRepository.findByUserIdAndConversationId(userId, conversationId).isPresent();
+    }
+    
+    @Transactional(readOnly = true)
+    public List<InboxConversationView> getInboxViews(Long userId) {
+        return conversationRepository.findInboxViewsByUserId(userId);
+    }
+    
+    @Transactional(readOnly = true)
     public Optional<Conversation> findById(Long id) {
         return conversationRepository.findById(id);
     }
     
-    public List<User> getConversationParticipants(Long conversationId, Long currentUserId) {
-        return participantRepository.findOtherParticipants(conversationId, currentUserId)
-            .stream()
-            .map(Participant::getUser)
-            .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public Optional<ConversationSummary> findSummaryById(Long id) {
+        return conversationRepository.findSummaryById(id);
     }
     
-    public String getConversationDisplayName(Conversation conversation, Long currentUserId) {
-        if (conversation.getIsGroup()) {
-            return conversation.getConversationName();
-        } else {
-            List<User> otherUsers = getConversationParticipants(conversation.getId(), currentUserId);
-            if (!otherUsers.isEmpty()) {
-                return otherUsers.get(0).getUsername();
-            }
+    @Transactional(readOnly = true)
+    public List<UserSummary> getOtherParticipants(Long conversationId, Long currentUserId) {
+        return participantRepository.findOtherParticipantSummaries(conversationId, currentUserId);
+    }
+    
+    // Pure function of already-loaded views; no transaction needed
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public String getConversationDisplayName(ConversationSummary conversation, List<UserSummary> otherParticipants) {
+        if (Boolean.TRUE.equals(conversation.getIsGroup()) || otherParticipants.isEmpty()) {
             return conversation.getConversationName();
         }
+        return otherParticipants.get(0).getUsername();
     }
     
     public void updateLastRead(Long userId, Long conversationId) {
@@ -98,11 +161,41 @@ public class ConversationService {
             });
     }
     
-    public List<Conversation> findAllConversations() {
-        return conversationRepository.findAll();
+    @Transactional(readOnly = true)
+    public KeysetPage<AdminConversationView> getAdminPage(String search, Boolean group,
+                                                          AdminConversationSort sort, KeysetRequest request) {
+        return conversationRepository.findAdminPage(search, group, sort, request);
     }
     
+    @Transactional(readOnly = true)
+    public long countConversations() {
+        return conversationRepository.count();
+    }
+    
+    // Hides the conversation immediately; messages and participants are purged in the background
     public void deleteConversation(Long conversationId) {
-        conversationRepository.deleteById(conversationId);
+        conversationRepository.findById(conversationId).ifPresent(conversation -> {
+            if (conversationRepository.markDeleted(conversationId, LocalDateTime.now()) > 0) {
+                purgeService.enqueue(PurgeJob.TargetType.CONVERSATION, conversationId,
+                    conversation.getConversationName());
+                afterCommit(() -> {
+                    messageCache.invalidate(conversationId);
+                    readWatermarkService.invalidate(conversationId);
+                });
+            }
+        });
+    }
+    
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
     }
 }
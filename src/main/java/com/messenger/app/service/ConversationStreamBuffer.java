@@ -0,0 +1,126 @@
+package com.messenger.app.service;
+
+import com.messenger.app.dto.ChatMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The last messenger.stream.buffer-size broadcast messages of each active conversation,
+ * indexed by sequence number, so a reconnecting client can ask for "everything after seq N"
+ * without a query. When the buffer no longer reaches back to N + 1 the caller falls back to
+ * the database. Idle conversations are dropped, and at most messenger.stream.max-conversations
+ * are buffered at once.
+ */
+@Service
+public class ConversationStreamBuffer {
+    
+    private final Map<Long, Ring> rings = new ConcurrentHashMap<>();
+    
+    private final int capacity;
+    private final int maxConversations;
+    private final long idleMillis;
+    private final Counter memoryResumes;
+    private final Counter databaseResumes;
+    
+    public ConversationStreamBuffer(MeterRegistry meterRegistry,
+                                    @Value("${messenger.stream.buffer-size:200}") int capacity,
+                                    @Value("${messenger.stream.max-conversations:5000}") int maxConversations,
+                                    @Value("${messenger.stream.idle-ms:600000}") long idleMillis) {
+        this.capacity = capacity;
+        this.maxConversations = maxConversations;
+        this.idleMillis = idleMillis;
+        this.memoryResumes = Counter.builder("messenger.stream.resume").tag("source", "memory").register(meterRegistry);
+        this.databaseResumes = Counter.builder("messenger.stream.resume").tag("source", "database").register(meterRegistry);
+        meterRegistry.gauge("messenger.stream.buffered.conversations", rings, Map::size);
+    }
+    
+    public void record(ChatMessage message) {
+        if (message.getSeq() == null) {
+            return;
+        }
+        Ring ring = rings.get(message.getConversationId());
+        if (ring == null) {
+            if (rings.size() >= maxConversations) {
+                return;
+            }
+            ring = rings.computeIfAbsent(message.getConversationId(), id -> new Ring(capacity));
+        }
+        ring.add(message);
+    }
+    
+    /**
+     * Messages after the given sequence number, oldest first, or empty if the buffer cannot
+     * prove it holds all of them. The result stops before the first sequence number that has
+     * not been broadcast yet; that message is still on its way to subscribers.
+     */
+    public Optional<List<ChatMessage>> after(Long conversationId, long afterSeq) {
+        Ring ring = rings.get(conversationId);
+        Optional<List<ChatMessage>> messages = ring != null ? ring.after(afterSeq) : Optional.empty();
+        (messages.isPresent() ? memoryResumes : databaseResumes).increment();
+        return messages;
+    }
+    
+    public void clear() {
+        rings.clear();
+    }
+    
+    @Scheduled(fixedDelayString = "${messenger.stream.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        rings.values().removeIf(ring -> ring.lastAccess < cutoff);
+    }
+    
+    // Package-private so ConversationStreamBufferTest can exercise it directly
+    static class Ring {
+        private final ChatMessage[] slots;
+        private long highest;
+        private volatile long lastAccess = System.currentTimeMillis();
+        
+        Ring(int capacity) {
+            this.slots = new ChatMessage[capacity];
+        }
+        
+        synchronized void add(ChatMessage message) {
+            long seq = message.getSeq();
+            if (seq <= highest - slots.length) {
+                return;
+            }
+            slots[slot(seq)] = message;
+            highest = Math.max(highest, seq);
+            lastAccess = System.currentTimeMillis();
+        }
+        
+        synchronized Optional<List<ChatMessage>> after(long afterSeq) {
+            lastAccess = System.currentTimeMillis();
+            List<ChatMessage> messages = new ArrayList<>();
+            if (afterSeq >= highest) {
+                return Optional.of(messages);
+            }
+            if (highest - afterSeq > slots.length || !holds(afterSeq + 1)) {
+                return Optional.empty();
+            }
+            for (long seq = afterSeq + 1; seq <= highest && holds(seq); seq++) {
+                messages.add(slots[slot(seq)]);
+            }
+            return Optional.of(messages);
+        }
+        
+        private boolean holds(long seq) {
+            ChatMessage message = slots[slot(seq)];
+            return message != null && message.getSeq() == seq;
+        }
+        
+        private int slot(long seq) {
+            return (int) (seq % slots.length);
+        }
+    }
+}
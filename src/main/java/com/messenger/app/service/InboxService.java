@@ -0,0 +1,101 @@
+package com.messenger.app.service;
+
+import com.messenger.app.dto.ChatMessage;
+import com.messenger.app.dto.ConversationSummary;
+import com.messenger.app.dto.InboxUpdate;
+import com.messenger.app.dto.UserSummary;
+import com.messenger.app.repository.ConversationRepository;
+import com.messenger.app.repository.MessageRepository;
+import com.messenger.app.repository.ParticipantRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@Transactional
+public class InboxService {
+    
+    public static final String INBOX_DESTINATION = "/queue/inbox";
+    
+    private static final int PREVIEW_LENGTH = 100;
+    
+    @Autowired
+    private ParticipantRepository participantRepository;
+    
+    @Autowired
+    private MessageRepository messageRepository;
+    
+    @Autowired
+    private ConversationRepository conversationRepository;
+    
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+    
+    /**
+     * Pushes a compact "conversation updated" event to the inbox of every participant
+     * of the message's conversation, named as that participant's inbox names it. Costs
+     * three queries regardless of group size.
+     */
+    public void publishNewMessage(ChatMessage message) {
+        Long conversationId = message.getConversationId();
+        ConversationSummary conversation = conversationRepository.findSummaryById(conversationId).orElse(null);
+        if (conversation == null) {
+            return;
+        }
+        
+        List<UserSummary> members = participantRepository.findMemberSummaries(conversationId);
+        if (members.isEmpty()) {
+            return;
+        }
+        
+        Map<Long, Long> unreadBySender = new HashMap<>();
+        long totalUnread = 0;
+        for (Object[] row : messageRepository.countUnreadMessagesBySender(conversationId)) {
+            Long count = (Long) row[1];
+            unreadBySender.put((Long) row[0], count);
+            totalUnread += count;
+        }
+        
+        String preview = preview(message.getContent());
+        for (UserSummary member : members) {
+            Long participantId = member.getId();
+            long unread = totalUnread - unreadBySender.getOrDefault(participantId, 0L);
+            InboxUpdate update = new InboxUpdate(
+                conversationId,
+                displayName(conversation, members, participantId),
+                conversation.getIsGroup(),
+                message.getSenderId(),
+                message.getSenderUsername(),
+                preview,
+                unread,
+                message.getCreatedAt()
+            );
+            messagingTemplate.convertAndSendToUser(participantId.toString(), INBOX_DESTINATION, update);
+        }
+    }
+    
+    // Same rule as the inbox listing: a direct chat is named after the other member while
+    // that user is not pending purge, otherwise by its stored name
+    private static String displayName(ConversationSummary conversation, List<UserSummary> members, Long recipientId) {
+        if (Boolean.TRUE.equals(conversation.getIsGroup())) {
+            return conversation.getConversationName();
+        }
+        return members.stream()
+            .filter(member -> !member.getId().equals(recipientId))
+            .map(UserSummary::getUsername)
+            .min(Comparator.naturalOrder())
+            .orElse(conversation.getConversationName());
+    }
+    
+    private String preview(String content) {
+        if (content == null || content.length() <= PREVIEW_LENGTH) {
+            return content;
+        }
+        return content.substring(0, PREVIEW_LENGTH) + "…";
+    }
+}
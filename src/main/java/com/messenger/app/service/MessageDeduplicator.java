@@ -0,0 +1,115 @@
+package com.messenger.app.service;
+
+import com.messenger.app.dto.ChatMessage;
+import com.messenger.app.dto.SendResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Makes sends with a client message id idempotent. Recent ids are remembered in a
+ * bounded, time-windowed map so a retry is answered from memory without touching the
+ * database or re-broadcasting; the (sender_id, client_message_id) unique constraint
+ * covers retries that land on another node or after the window. A retry only matches a
+ * send to the same conversation; reusing the id for another conversation is rejected.
+ */
+@Service
+public class MessageDeduplicator {
+    
+    private static final int MAX_CLIENT_MESSAGE_ID_LENGTH = 64;
+    
+    private final Map<String, Entry> recent = new ConcurrentHashMap<>();
+    
+    private final MessageService messageService;
+    private final long windowMillis;
+    private final int maxEntries;
+    private final Counter memoryHits;
+    private final Counter databaseHits;
+    
+    public MessageDeduplicator(MessageService messageService,
+                               MeterRegistry meterRegistry,
+                               @Value("${messenger.dedupe.window-ms:300000}") long windowMillis,
+                               @Value("${messenger.dedupe.max-entries:100000}") int maxEntries) {
+        this.messageService = messageService;
+        this.windowMillis = windowMillis;
+        this.maxEntries = maxEntries;
+        this.memoryHits = Counter.builder("messenger.send.duplicates").tag("source", "memory").register(meterRegistry);
+        this.databaseHits = Counter.builder("messenger.send.duplicates").tag("source", "database").register(meterRegistry);
+        meterRegistry.gauge("messenger.send.dedupe.entries", recent, Map::size);
+    }
+    
+    public SendResult send(Long senderId, Long conversationId, String content, String clientMessageId,
+                           Long attachmentId) {
+        if (clientMessageId == null || clientMessageId.isBlank()) {
+            return new SendResult(messageService.sendMessage(senderId, conversationId, content, null, attachmentId), false);
+        }
+        if (clientMessageId.length() > MAX_CLIENT_MESSAGE_ID_LENGTH) {
+            throw new IllegalArgumentException("clientMessageId is too long");
+        }
+        
+        String key = senderId + ":" + conversationId + ":" + clientMessageId;
+        Entry mine = new Entry();
+        Entry existing = recent.size() < maxEntries ? recent.putIfAbsent(key, mine) : null;
+        if (existing != null) {
+            memoryHits.increment();
+            return new SendResult(await(existing), true);
+        }
+        
+        try {
+            ChatMessage message = messageService.sendMessage(senderId, conversationId, content, clientMessageId, attachmentId);
+            mine.result.complete(message);
+            return new SendResult(message, false);
+        } catch (DataIntegrityViolationException e) {
+            // Already stored by another node, or by this node before the window expired
+            ChatMessage stored = messageService.findByClientMessageId(senderId, clientMessageId).orElseThrow(() -> e);
+            if (!conversationId.equals(stored.getConversationId())) {
+                // The id is unique per sender, so it already belongs to a message elsewhere
+                IllegalArgumentException rejected =
+                    new IllegalArgumentException("clientMessageId was already used in another conversation");
+                recent.remove(key, mine);
+                mine.result.completeExceptionally(rejected);
+                throw rejected;
+            }
+            databaseHits.increment();
+            mine.result.complete(stored);
+            return new SendResult(stored, true);
+        } catch (RuntimeException e) {
+            // Let the client retry the failed send
+            recent.remove(key, mine);
+            mine.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${messenger.dedupe.sweep-interval-ms:30000}")
+    public void evictExpired() {
+        long cutoff = System.currentTimeMillis() - windowMillis;
+        recent.values().removeIf(entry -> entry.createdAt < cutoff);
+    }
+    
+    private ChatMessage await(Entry entry) {
+        try {
+            return entry.result.get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for original send", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Original send did not complete", e);
+        }
+    }
+    
+    private static class Entry {
+        private final long createdAt = System.currentTimeMillis();
+        private final CompletableFuture<ChatMessage> result = new CompletableFuture<>();
+    }
+}
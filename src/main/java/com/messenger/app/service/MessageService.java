@@ -1,17 +1,30 @@
 package com.messenger.app.service;
 
+import com.messenger.app.config.ReadYourWritesTracker;
+import com.messenger.app.dto.AttachmentInfo;
+import com.messenger.app.dto.ChatMessage;
+import com.messenger.app.dto.MessageDTO;
+import com.messenger.app.dto.ReadProgress;
+import com.messenger.app.dto.ReadReceipt;
+import com.messenger.app.dto.UserSummary;
+import com.messenger.app.model.Attachment;
 import com.messenger.app.model.Message;
-import com.messenger.app.model.Conversation;
-import com.messenger.app.model.User;
+import com.messenger.app.model.OutboxEvent;
+import com.messenger.app.repository.AttachmentRepository;
 import com.messenger.app.repository.MessageRepository;
 import com.messenger.app.repository.ConversationRepository;
+import com.messenger.app.repository.ParticipantRepository;
+import com.messenger.app.repository.UserRepository;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -20,6 +33,9 @@ import java.util.stream.Collectors;
 @Transactional
 public class MessageService {
     
+    // V8: an upload is sent with at most one message
+    private static final String ATTACHMENT_INDEX = "uk_messages_attachment";
+    
     @Autowired
     private MessageRepository messageRepository;
     
@@ -27,40 +43,193 @@ public class MessageService {
     private ConversationRepository conversationRepository;
     
     @Autowired
-    private UserService userService;
+    private UserRepository userRepository;
+    
+    @Autowired
+    private ConversationActivityTracker activityTracker;
+    
+    @Autowired
+    private ReadYourWritesTracker readYourWritesTracker;
+    
+    @Autowired
+    private ConversationMessageCache messageCache;
+    
+    @Autowired
+    private OutboxService outboxService;
     
-    public Message sendMessage(Long senderId, Long conversationId, String content) {
-        User sender = userService.findById(senderId).orElseThrow();
-        Conversation conversation = conversationRepository.findById(conversationId).orElseThrow();
+    @Autowired
+    private AttachmentRepository attachmentRepository;
+    
+    @Autowired
+    private ParticipantRepository participantRepository;
+    
+    @Autowired
+    private ReadWatermarkService readWatermarkService;
+    
+    public ChatMessage sendMessage(Long senderId, Long conversationId, String content) {
+        return sendMessage(senderId, conversationId, content, null);
+    }
+    
+    public ChatMessage sendMessage(Long senderId, Long conversationId, String content, String clientMessageId) {
+        return sendMessage(senderId, conversationId, content, clientMessageId, null);
+    }
+    
+    public ChatMessage sendMessage(Long senderId, Long conversationId, String content, String clientMessageId,
+                                   Long attachmentId) {
+        // Sender fields for the broadcast come from a narrow projection, not a managed entity
+        UserSummary sender = userRepository.findSummaryById(senderId).orElseThrow();
+        
+        // Id references only: the insert sets foreign keys without loading the user or conversation
+        Message message = new Message(content,
+            userRepository.getReferenceById(senderId),
+            conversationRepository.getReferenceById(conversationId));
+        message.setClientMessageId(clientMessageId);
+        if (attachmentId != null) {
+            Attachment attachment = claimAttachment(attachmentId, senderId, conversationId);
+            message.setAttachment(attachment);
+            // A file sent without a caption is shown by its name
+            if (content == null || content.isBlank()) {
+                message.setContent(attachment.getFileName());
+            }
+        }
+        // Numbered only now that every lookup and check is done: the counter row stays locked
+        // until commit, which keeps the conversation's seqs committing in order. It is not the
+        // conversation row, so activity flushes and deletes do not wait on sends
+        message.setSeq(conversationRepository.nextSequence(conversationId));
+        try {
+            message = messageRepository.save(message);
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent send claimed the same upload after the check in claimAttachment
+            if (attachmentId != null && violates(e, ATTACHMENT_INDEX)) {
+                throw new IllegalArgumentException("Attachment is not available");
+            }
+            throw e;
+        }
+        
+        // Conversation timestamp is coalesced in memory and flushed in batches
+        activityTracker.touch(conversationId, message.getCreatedAt());
+        
+        // The sender's next reads go to the primary so they always see their own message
+        readYourWritesTracker.recordWrite(senderId);
+        
+        ChatMessage chatMessage = toChatMessage(message, sender);
         
-        Message message = new Message(content, sender, conversation);
-        message = messageRepository.save(message);
+        // Write-through to the hot-conversation cache once the message is committed
+        MessageDTO cached = new MessageDTO(chatMessage.getId(), chatMessage.getContent(), chatMessage.getSenderId(),
+            chatMessage.getSenderUsername(), chatMessage.getSenderProfilePicture(), chatMessage.getCreatedAt(), false);
+        cached.setSeq(chatMessage.getSeq());
+        cached.setAttachment(chatMessage.getAttachment());
+        afterCommit(() -> messageCache.append(conversationId, cached));
         
-        // Update conversation timestamp
-        conversation.setUpdatedAt(java.time.LocalDateTime.now());
-        conversationRepository.save(conversation);
+        // Broadcast and inbox fan-out happen from the outbox, only once this insert has committed
+        outboxService.enqueue(OutboxEvent.Type.CHAT_MESSAGE, conversationId, chatMessage);
         
-        return message;
+        return chatMessage;
     }
     
-    public List<Message> getConversationMessages(Long conversationId) {
-        return messageRepository.findByConversationIdOrderByCreatedAtAsc(conversationId);
+    // The sender's own finished upload for this conversation, not yet sent with another message
+    private Attachment claimAttachment(Long attachmentId, Long senderId, Long conversationId) {
+        return attachmentRepository.findById(attachmentId)
+            .filter(attachment -> attachment.getUploaderId().equals(senderId))
+            .filter(attachment -> attachment.getConversationId().equals(conversationId))
+            .filter(attachment -> attachment.getStatus() == Attachment.Status.COMPLETE)
+            .filter(attachment -> !messageRepository.existsByAttachmentId(attachmentId))
+            .orElseThrow(() -> new IllegalArgumentException("Attachment is not available"));
     }
     
-    public Page<Message> getConversationMessagesPaginated(Long conversationId, int page, int size) {
-        Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
-        return messageRepository.findByConversationIdOrderByCreatedAtDesc(conversationId, pageable);
+    private static boolean violates(DataIntegrityViolationException e, String constraint) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return constraint.equalsIgnoreCase(violation.getConstraintName());
+            }
+        }
+        return false;
     }
     
-    public List<Message> getLatestMessages(Long conversationId, int limit) {
-        Pageable pageable = PageRequest.of(0, limit, Sort.by("createdAt").descending());
-        Page<Message> page = messageRepository.findByConversationIdOrderByCreatedAtDesc(conversationId, pageable);
-        // Reverse to get chronological order (oldest first)
-        return page.getContent().stream()
-            .sorted((m1, m2) -> m1.getCreatedAt().compareTo(m2.getCreatedAt()))
+    // Looks up an already persisted send by its client id (used when a retry loses the insert race).
+    // Read-write so it runs on the primary: the row was committed moments ago, maybe by another node
+    @Transactional
+    public Optional<ChatMessage> findByClientMessageId(Long senderId, String clientMessageId) {
+        return messageRepository.findBySenderIdAndClientMessageId(senderId, clientMessageId)
+            .flatMap(message -> userRepository.findSummaryById(senderId)
+                .map(sender -> toChatMessage(message, sender)));
+    }
+    
+    private ChatMessage toChatMessage(Message message, UserSummary sender) {
+        ChatMessage chatMessage = new ChatMessage(
+            message.getId(),
+            message.getContent(),
+            sender.getId(),
+            sender.getUsername(),
+            sender.getProfilePicture(),
+            message.getConversation().getId(),
+            message.getCreatedAt()
+        );
+        chatMessage.setClientMessageId(message.getClientMessageId());
+        chatMessage.setSeq(message.getSeq());
+        chatMessage.setAttachment(AttachmentInfo.of(message.getAttachment()));
+        return chatMessage;
+    }
+    
+    // Stream catch-up from the database, used when the in-memory buffer cannot cover the gap
+    @Transactional(readOnly = true)
+    public List<ChatMessage> getMessagesAfter(Long conversationId, long afterSeq, int limit) {
+        return messageRepository.findAfterSeq(conversationId, afterSeq, PageRequest.of(0, limit)).stream()
+            .map(message -> {
+                ChatMessage chatMessage = new ChatMessage(
+                    message.getId(),
+                    message.getContent(),
+                    message.getSender().getId(),
+                    message.getSender().getUsername(),
+                    message.getSender().getProfilePicture(),
+                    conversationId,
+                    message.getCreatedAt()
+                );
+                chatMessage.setSeq(message.getSeq());
+                chatMessage.setAttachment(AttachmentInfo.of(message.getAttachment()));
+                return chatMessage;
+            })
             .collect(Collectors.toList());
     }
     
+    @Transactional(readOnly = true)
+    public List<MessageDTO> getConversationMessageDTOs(Long conversationId) {
+        return messageRepository.findAllDTOs(conversationId);
+    }
+    
+    // One page of history counted back from the newest message, oldest first, in a single query
+    @Transactional(readOnly = true)
+    public List<MessageDTO> getMessageDTOPage(Long conversationId, int page, int size) {
+        // A page whose offsets do not fit in an int is past the end of any conversation;
+        // computed in long so a large page number cannot wrap round to a negative OFFSET
+        long oldestOffset = (long) page * size + size - 1;
+        if (page < 0 || size <= 0 || oldestOffset > Integer.MAX_VALUE) {
+            return List.of();
+        }
+        return messageRepository.findHistoryWindow(conversationId, page * size, (int) oldestOffset);
+    }
+    
+    /**
+     * Latest messages as DTOs, oldest first. Served from the hot-conversation cache when possible;
+     * runs outside a transaction so a cache hit never takes a database connection.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<MessageDTO> getLatestMessageDTOs(Long conversationId, int limit) {
+        Optional<List<MessageDTO>> cached = messageCache.get(conversationId, limit);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        
+        int pageSize = Math.max(limit, messageCache.getCapacity());
+        List<MessageDTO> latest = messageRepository.findHistoryWindow(conversationId, 0, pageSize - 1);
+        
+        if (pageSize == messageCache.getCapacity()) {
+            messageCache.populate(conversationId, latest);
+        }
+        return latest.subList(Math.max(0, latest.size() - limit), latest.size());
+    }
+    
+    @Transactional(readOnly = true)
     public Optional<Message> findById(Long id) {
         return messageRepository.findById(id);
     }
@@ -69,36 +238,76 @@ public class MessageService {
         messageRepository.findById(messageId).ifPresent(message -> {
             message.setIsRead(true);
             messageRepository.save(message);
+            Long conversationId = message.getConversation().getId();
+            afterCommit(() -> messageCache.invalidate(conversationId));
         });
     }
     
-    public void markConversationAsRead(Long conversationId, Long userId) {
+    /**
+     * Marks everything other participants sent as read and returns how many messages changed.
+     * The reader's watermark moves to the latest message. In a group one read-progress event goes
+     * out through the outbox after commit; direct conversations get read receipts for all of the
+     * other participant's read messages.
+     */
+    public int markConversationAsRead(Long conversationId, Long userId) {
+        long latestSeq = conversationRepository.findLastSeqById(conversationId).orElse(0L);
+        Long previousSeq = participantRepository.advanceReadWatermark(conversationId, userId, latestSeq);
+        if (readWatermarkService.isGroup(conversationId)) {
+            if (previousSeq == null) {
+                return 0;
+            }
+            // Proportional to what this read covered, not to members times messages
+            int marked = messageRepository.markReadUpTo(conversationId, userId, latestSeq);
+            outboxService.enqueue(OutboxEvent.Type.READ_PROGRESS, conversationId,
+                new ReadProgress(conversationId, userId, previousSeq, latestSeq));
+            if (marked > 0) {
+                afterCommit(() -> messageCache.markRead(conversationId, userId));
+            }
+            return marked;
+        }
+        
         List<Message> messages = messageRepository.findByConversationIdOrderByCreatedAtAsc(conversationId);
-        messages.stream()
-            .filter(m -> !m.getSender().getId().equals(userId) && !m.getIsRead())
-            .forEach(m -> {
-                m.setIsRead(true);
-                messageRepository.save(m);
-            });
-    }
-    
-    public List<Message> getUnreadMessages(Long conversationId, Long userId) {
-        return messageRepository.findByConversationIdOrderByCreatedAtAsc(conversationId).stream()
-            .filter(m -> !m.getSender().getId().equals(userId) && !m.getIsRead())
-            .collect(Collectors.toList());
-    }
-    
-    public List<Message> getReadMessagesFromOthers(Long conversationId, Long userId) {
-        return messageRepository.findByConversationIdOrderByCreatedAtAsc(conversationId).stream()
-            .filter(m -> !m.getSender().getId().equals(userId) && m.getIsRead())
-            .collect(Collectors.toList());
+        List<ReadReceipt> receipts = new ArrayList<>();
+        int marked = 0;
+        for (Message message : messages) {
+            Long senderId = message.getSender().getId();
+            if (senderId.equals(userId)) {
+                continue;
+            }
+            if (!message.getIsRead()) {
+                message.setIsRead(true);
+                messageRepository.save(message);
+                marked++;
+            }
+            receipts.add(new ReadReceipt(message.getId(), conversationId, senderId, userId, true));
+        }
+        if (!receipts.isEmpty()) {
+            outboxService.enqueue(OutboxEvent.Type.READ_RECEIPTS, conversationId, receipts);
+        }
+        afterCommit(() -> messageCache.markRead(conversationId, userId));
+        return marked;
     }
     
+    @Transactional(readOnly = true)
     public Long getUnreadCount(Long conversationId, Long userId) {
         return messageRepository.countUnreadMessages(conversationId, userId);
     }
     
+    @Transactional(readOnly = true)
     public long getTotalMessageCount() {
         return messageRepository.count();
     }
+    
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
 }
@@ -0,0 +1,229 @@
+package com.messenger.app.service;
+
+import com.messenger.app.dto.ChatMessage;
+import com.messenger.app.dto.ReadProgress;
+import com.messenger.app.dto.ReadReceipt;
+import com.messenger.app.model.OutboxEvent;
+import com.messenger.app.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends committed outbox events to STOMP subscribers on dedicated threads, then deletes them.
+ *
+ * Events are striped across messenger.outbox.dispatcher-threads queues by conversation id, so
+ * one conversation's events keep their commit order. Each thread takes up to
+ * messenger.outbox.batch-size events at a time and deletes the delivered ones in one statement.
+ * A failed event is retried by the poller with exponential backoff and dropped after
+ * messenger.outbox.max-attempts; clients recover anything missed through the seq catch-up.
+ * Delivery is at least once: an event still queued when its lease runs out may be sent twice,
+ * and clients already ignore a message id they have rendered.
+ */
+@Service
+public class OutboxDispatcher {
+    
+    public static final String READ_RECEIPT_TOPIC_PREFIX = "/topic/read-receipt/";
+    public static final String READ_PROGRESS_TOPIC_PREFIX = "/topic/read-progress/";
+    
+    private static final Logger log = LoggerFactory.getLogger(OutboxDispatcher.class);
+    
+    private final OutboxEventRepository outboxEventRepository;
+    private final ConversationBroadcaster conversationBroadcaster;
+    private final InboxService inboxService;
+    private final ReadWatermarkService readWatermarkService;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final JsonMapper jsonMapper;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long leaseMillis;
+    private final long retryBackoffMillis;
+    
+    private final List<BlockingQueue<Pending>> queues = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running = true;
+    
+    private final Timer commitLag;
+    private final Timer pollLag;
+    private final Counter retries;
+    private final Counter dropped;
+    private final Counter deferred;
+    
+    public OutboxDispatcher(OutboxEventRepository outboxEventRepository,
+                            ConversationBroadcaster conversationBroadcaster,
+                            InboxService inboxService,
+                            ReadWatermarkService readWatermarkService,
+                            SimpMessagingTemplate messagingTemplate,
+                            JsonMapper jsonMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${messenger.outbox.dispatcher-threads:2}") int threadCount,
+                            @Value("${messenger.outbox.queue-capacity:10000}") int queueCapacity,
+                            @Value("${messenger.outbox.batch-size:100}") int batchSize,
+                            @Value("${messenger.outbox.max-attempts:5}") int maxAttempts,
+                            @Value("${messenger.outbox.lease-ms:10000}") long leaseMillis,
+                            @Value("${messenger.outbox.retry-backoff-ms:1000}") long retryBackoffMillis) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.conversationBroadcaster = conversationBroadcaster;
+        this.inboxService = inboxService;
+        this.readWatermarkService = readWatermarkService;
+        this.messagingTemplate = messagingTemplate;
+        this.jsonMapper = jsonMapper;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.leaseMillis = leaseMillis;
+        this.retryBackoffMillis = retryBackoffMillis;
+        
+        this.commitLag = Timer.builder("messenger.outbox.dispatch.lag")
+            .description("Time from the outbox write to the broadcast")
+            .tag("source", "commit")
+            .register(meterRegistry);
+        this.pollLag = Timer.builder("messenger.outbox.dispatch.lag")
+            .description("Time from the outbox write to the broadcast")
+            .tag("source", "poll")
+            .register(meterRegistry);
+        this.retries = Counter.builder("messenger.outbox.retries").register(meterRegistry);
+        this.dropped = Counter.builder("messenger.outbox.dropped").register(meterRegistry);
+        this.deferred = Counter.builder("messenger.outbox.deferred")
+            .description("Events left to the poller because a dispatch queue was full")
+            .register(meterRegistry);
+        meterRegistry.gauge("messenger.outbox.queued", queues,
+            list -> list.stream().mapToInt(BlockingQueue::size).sum());
+        
+        for (int i = 0; i < Math.max(1, threadCount); i++) {
+            BlockingQueue<Pending> queue = new LinkedBlockingQueue<>(queueCapacity);
+            queues.add(queue);
+            Thread thread = new Thread(() -> drain(queue), "outbox-dispatcher-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+    
+    /** Hands a committed event to its conversation's dispatch thread. */
+    public void submit(OutboxEvent event, boolean polled) {
+        long stripe = event.getConversationId() != null ? event.getConversationId() : event.getId();
+        BlockingQueue<Pending> queue = queues.get((int) Math.floorMod(stripe, (long) queues.size()));
+        if (!queue.offer(new Pending(event, polled))) {
+            // Still in the table; the poller claims it once the lease runs out
+            deferred.increment();
+        }
+    }
+    
+    // Events whose lease ran out: the committing node crashed, its queue was full, or a dispatch failed
+    @Scheduled(fixedDelayString = "${messenger.outbox.poll-interval-ms:1000}")
+    public void pollDue() {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> due = outboxEventRepository.claimDue(now, now.plusNanos(leaseMillis * 1_000_000), batchSize);
+        for (OutboxEvent event : due) {
+            if (event.getAttempts() >= maxAttempts) {
+                log.warn("Dropping outbox event {} ({}) after {} attempts: {}",
+                    event.getId(), event.getType(), event.getAttempts(), event.getLastError());
+                outboxEventRepository.deleteById(event.getId());
+                dropped.increment();
+            } else {
+                submit(event, true);
+            }
+        }
+    }
+    
+    private void drain(BlockingQueue<Pending> queue) {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Pending first = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                dispatchBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Outbox dispatch batch failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+    
+    private void dispatchBatch(List<Pending> batch) {
+        List<Long> delivered = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            OutboxEvent event = pending.event;
+            try {
+                dispatch(event);
+                delivered.add(event.getId());
+                Duration lag = Duration.between(event.getCreatedAt(), LocalDateTime.now());
+                (pending.polled ? pollLag : commitLag).record(lag);
+            } catch (RuntimeException e) {
+                retries.increment();
+                long backoff = retryBackoffMillis << Math.min(event.getAttempts(), 16);
+                outboxEventRepository.recordFailure(event.getId(), String.valueOf(e.getMessage()),
+                    LocalDateTime.now().plusNanos(backoff * 1_000_000));
+                log.debug("Outbox event {} failed, retrying in {} ms", event.getId(), backoff, e);
+            }
+        }
+        if (!delivered.isEmpty()) {
+            outboxEventRepository.deleteAllByIdInBatch(delivered);
+        }
+    }
+    
+    private void dispatch(OutboxEvent event) {
+        switch (event.getType()) {
+            case CHAT_MESSAGE -> {
+                ChatMessage message = jsonMapper.readValue(event.getPayload(), ChatMessage.class);
+                // Micro-batched per conversation, and kept in the stream buffer for resume
+                conversationBroadcaster.publish(message);
+                // Every participant's inbox, so conversation lists update without reloading
+                inboxService.publishNewMessage(message);
+            }
+            case READ_RECEIPTS -> {
+                String destination = READ_RECEIPT_TOPIC_PREFIX + event.getConversationId();
+                Arrays.stream(jsonMapper.readValue(event.getPayload(), ReadReceipt[].class))
+                    .forEach(receipt -> messagingTemplate.convertAndSend(destination, receipt));
+            }
+            case READ_PROGRESS -> {
+                // One frame per read in a group, with counts for just the messages it covered
+                ReadProgress progress = readWatermarkService.withSeenCounts(
+                    jsonMapper.readValue(event.getPayload(), ReadProgress.class));
+                messagingTemplate.convertAndSend(READ_PROGRESS_TOPIC_PREFIX + event.getConversationId(), progress);
+            }
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        // Undelivered events stay in the table and are dispatched after the restart
+        running = false;
+        threads.forEach(Thread::interrupt);
+    }
+    
+    private static class Pending {
+        private final OutboxEvent event;
+        private final boolean polled;
+        
+        private Pending(OutboxEvent event, boolean polled) {
+            this.event = event;
+            this.polled = polled;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.messenger.app.service;
+
+import com.messenger.app.model.OutboxEvent;
+import com.messenger.app.repository.OutboxEventRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.LocalDateTime;
+
+/**
+ * Writes broadcast events to the outbox in the caller's transaction. Nothing is sent before
+ * the data change commits, and nothing is sent for a change that rolls back. After commit the
+ * events go straight to the OutboxDispatcher; rows it never gets to are picked up by its poller
+ * once messenger.outbox.lease-ms has passed.
+ */
+@Service
+public class OutboxService {
+    
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxDispatcher dispatcher;
+    private final JsonMapper jsonMapper;
+    private final long leaseMillis;
+    
+    public OutboxService(OutboxEventRepository outboxEventRepository,
+                         OutboxDispatcher dispatcher,
+                         JsonMapper jsonMapper,
+                         @Value("${messenger.outbox.lease-ms:10000}") long leaseMillis) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.dispatcher = dispatcher;
+        this.jsonMapper = jsonMapper;
+        this.leaseMillis = leaseMillis;
+    }
+    
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(OutboxEvent.Type type, Long conversationId, Object payload) {
+        LocalDateTime now = LocalDateTime.now();
+        OutboxEvent event = outboxEventRepository.save(new OutboxEvent(type, conversationId,
+            jsonMapper.writeValueAsString(payload), now, now.plusNanos(leaseMillis * 1_000_000)));
+        
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                dispatcher.submit(event, false);
+            }
+        });
+    }
+}
@@ -0,0 +1,95 @@
+package com.messenger.app.service;
+
+import com.messenger.app.model.PurgeJob;
+import com.messenger.app.repository.PurgeJobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Background purge of soft-deleted conversations and users. Children are removed in
+ * bounded chunks, each committed on its own, so no single transaction holds locks on
+ * a large conversation's rows.
+ */
+@Service
+public class PurgeService {
+    
+    private static final Logger log = LoggerFactory.getLogger(PurgeService.class);
+    
+    @Autowired
+    private PurgeJobRepository purgeJobRepository;
+    
+    @Autowired
+    private ConversationMessageCache messageCache;
+    
+    @Autowired
+    private AttachmentService attachmentService;
+    
+    @Value("${messenger.purge.chunk-size:1000}")
+    private int chunkSize;
+    
+    @Value("${messenger.purge.lease-ms:60000}")
+    private long leaseMillis;
+    
+    public PurgeJob enqueue(PurgeJob.TargetType targetType, Long targetId, String targetName) {
+        return purgeJobRepository.save(new PurgeJob(targetType, targetId, targetName));
+    }
+    
+    public List<PurgeJob> getRecentJobs() {
+        return purgeJobRepository.findTop50ByOrderByIdDesc();
+    }
+    
+    @Scheduled(fixedDelayString = "${messenger.purge.interval-ms:5000}")
+    public void runPendingJobs() {
+        // Jobs are claimed one at a time, so several instances share the queue without running a job twice
+        Optional<PurgeJob> job;
+        while ((job = purgeJobRepository.claimNext(LocalDateTime.now(), leaseUntil())).isPresent()) {
+            run(job.get());
+        }
+    }
+    
+    private LocalDateTime leaseUntil() {
+        return LocalDateTime.now().plus(Duration.ofMillis(leaseMillis));
+    }
+    
+    private void run(PurgeJob job) {
+        try {
+            int deleted;
+            do {
+                deleted = job.getTargetType() == PurgeJob.TargetType.CONVERSATION
+                    ? purgeJobRepository.deleteConversationChildren(job.getTargetId(), chunkSize)
+                    : purgeJobRepository.deleteUserChildren(job.getTargetId(), chunkSize);
+                // Attachments go once no message refers to them, together with their files
+                if (deleted == 0) {
+                    deleted = job.getTargetType() == PurgeJob.TargetType.CONVERSATION
+                        ? attachmentService.deleteConversationAttachments(job.getTargetId(), chunkSize)
+                        : attachmentService.deleteUploaderAttachments(job.getTargetId(), chunkSize);
+                }
+                if (deleted > 0) {
+                    purgeJobRepository.addRowsDeleted(job.getId(), deleted, leaseUntil());
+                }
+            } while (deleted > 0);
+            
+            if (job.getTargetType() == PurgeJob.TargetType.CONVERSATION) {
+                purgeJobRepository.deleteConversationRow(job.getTargetId());
+            } else {
+                purgeJobRepository.deleteUserRow(job.getTargetId());
+                // The user's messages may sit in any conversation's cached page
+                messageCache.clear();
+            }
+            
+            purgeJobRepository.finish(job.getId(), PurgeJob.Status.DONE, null, LocalDateTime.now());
+        } catch (RuntimeException e) {
+            log.warn("Purge job {} for {} {} failed", job.getId(), job.getTargetType(), job.getTargetId(), e);
+            purgeJobRepository.finish(job.getId(), PurgeJob.Status.FAILED, e.getMessage(), LocalDateTime.now());
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.messenger.app.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets for sends and read receipts, per user and per conversation.
+ *
+ * Each bucket is a single AtomicLong holding its "theoretical arrival time" (GCRA), so
+ * acquiring is one CAS with no locks. A bucket whose arrival time has passed is full and
+ * indistinguishable from a missing one, which lets the sweep drop it; the map is also
+ * capped, and keys beyond the cap are not limited rather than growing memory.
+ */
+@Service
+public class RateLimiter {
+    
+    public enum Limit {
+        USER_SEND("user-send"),
+        CONVERSATION_SEND("conversation-send"),
+        USER_READ("user-read"),
+        USER_TYPING("user-typing");
+        
+        private final String tag;
+        
+        Limit(String tag) {
+            this.tag = tag;
+        }
+        
+        public String getTag() {
+            return tag;
+        }
+    }
+    
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final Map<Limit, Long> intervalNanos = new EnumMap<>(Limit.class);
+    private final Map<Limit, Long> burstNanos = new EnumMap<>(Limit.class);
+    
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int maxEntries;
+    
+    public RateLimiter(MeterRegistry meterRegistry,
+                       @Value("${messenger.ratelimit.enabled:true}") boolean enabled,
+                       @Value("${messenger.ratelimit.max-entries:100000}") int maxEntries,
+                       @Value("${messenger.ratelimit.user-send.per-second:5}") double userSendRate,
+                       @Value("${messenger.ratelimit.user-send.burst:20}") int userSendBurst,
+                       @Value("${messenger.ratelimit.conversation-send.per-second:50}") double conversationSendRate,
+                       @Value("${messenger.ratelimit.conversation-send.burst:100}") int conversationSendBurst,
+                       @Value("${messenger.ratelimit.user-read.per-second:2}") double userReadRate,
+                       @Value("${messenger.ratelimit.user-read.burst:10}") int userReadBurst,
+                       @Value("${messenger.ratelimit.user-typing.per-second:2}") double userTypingRate,
+                       @Value("${messenger.ratelimit.user-typing.burst:10}") int userTypingBurst) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        configure(Limit.USER_SEND, userSendRate, userSendBurst);
+        configure(Limit.CONVERSATION_SEND, conversationSendRate, conversationSendBurst);
+        configure(Limit.USER_READ, userReadRate, userReadBurst);
+        configure(Limit.USER_TYPING, userTypingRate, userTypingBurst);
+        meterRegistry.gauge("messenger.ratelimit.buckets", buckets, Map::size);
+    }
+    
+    /**
+     * Takes a send token from both the sender's and the conversation's bucket.
+     * Returns the limit that was exceeded, or null if the send may proceed. A send refused
+     * by the conversation's bucket gives the sender's token back.
+     */
+    public Limit tryAcquireSend(Long userId, Long conversationId, String transport) {
+        if (userId != null && !tryAcquire(Limit.USER_SEND, userId, transport)) {
+            return Limit.USER_SEND;
+        }
+        if (conversationId != null && !tryAcquire(Limit.CONVERSATION_SEND, conversationId, transport)) {
+            if (userId != null) {
+                refund(Limit.USER_SEND, userId);
+            }
+            return Limit.CONVERSATION_SEND;
+        }
+        return null;
+    }
+    
+    public Limit tryAcquireRead(Long userId, String transport) {
+        if (userId != null && !tryAcquire(Limit.USER_READ, userId, transport)) {
+            return Limit.USER_READ;
+        }
+        return null;
+    }
+    
+    public boolean tryAcquire(Limit limit, Long key, String transport) {
+        if (!enabled) {
+            return true;
+        }
+        long interval = intervalNanos.get(limit);
+        long now = System.nanoTime();
+        
+        AtomicLong bucket = buckets.get(limit.getTag() + ":" + key);
+        if (bucket == null) {
+            if (buckets.size() >= maxEntries) {
+                return true;
+            }
+            bucket = buckets.computeIfAbsent(limit.getTag() + ":" + key, k -> new AtomicLong(now));
+        }
+        
+        while (true) {
+            long arrival = bucket.get();
+            long next = Math.max(arrival, now) + interval;
+            if (next - now > burstNanos.get(limit)) {
+                meterRegistry.counter("messenger.ratelimit.throttled",
+                    "limit", limit.getTag(), "transport", transport).increment();
+                return false;
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                return true;
+            }
+        }
+    }
+    
+    // Undoes one successful tryAcquire; the arrival time never moves back past where it started
+    private void refund(Limit limit, Long key) {
+        AtomicLong bucket = buckets.get(limit.getTag() + ":" + key);
+        if (bucket != null) {
+            bucket.addAndGet(-intervalNanos.get(limit));
+        }
+    }
+    
+    /** Seconds until one more token is available, for Retry-After. */
+    public long retryAfterSeconds(Limit limit) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(intervalNanos.get(limit) + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+    
+    @Scheduled(fixedDelayString = "${messenger.ratelimit.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+    
+    private void configure(Limit limit, double perSecond, int burst) {
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+        intervalNanos.put(limit, interval);
+        burstNanos.put(limit, interval * Math.max(1, burst));
+    }
+}
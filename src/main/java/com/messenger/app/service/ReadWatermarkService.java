@@ -0,0 +1,228 @@
+package com.messenger.app.service;
+
+import com.messenger.app.dto.ConversationSummary;
+import com.messenger.app.dto.ReadProgress;
+import com.messenger.app.dto.UserSummary;
+import com.messenger.app.repository.ConversationRepository;
+import com.messenger.app.repository.MessageRepository;
+import com.messenger.app.repository.ParticipantRepository;
+import com.messenger.app.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * "Seen by N" for group conversations, derived from each member's read watermark
+ * (participants.last_read_seq) instead of per-message receipts.
+ *
+ * For each active group the watermarks are held as one sorted long array, so the number of
+ * members who have read a message is a binary search, whatever the group size. A member reading
+ * moves one value in the array, and the broadcast carries counts only for the messages that
+ * watermark passed (at most messenger.read-state.broadcast-limit of the newest). Who exactly
+ * has read a message is looked up on request.
+ * Entries are loaded on first use and evicted after messenger.read-state.idle-ms without one;
+ * membership changes drop the entry so it is reloaded. Their transactions are read-write so they
+ * run on the primary: an entry is kept for as long as it is used, so stale watermarks loaded from
+ * a lagging replica would stay, and the outbox threads calling in have no user to pin reads.
+ */
+@Service
+public class ReadWatermarkService {
+    
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    
+    private final ParticipantRepository participantRepository;
+    private final ConversationRepository conversationRepository;
+    private final MessageRepository messageRepository;
+    private final UserRepository userRepository;
+    private final int broadcastLimit;
+    private final long idleMillis;
+    
+    public ReadWatermarkService(ParticipantRepository participantRepository,
+                                ConversationRepository conversationRepository,
+                                MessageRepository messageRepository,
+                                UserRepository userRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${messenger.read-state.broadcast-limit:100}") int broadcastLimit,
+                                @Value("${messenger.read-state.idle-ms:600000}") long idleMillis) {
+        this.participantRepository = participantRepository;
+        this.conversationRepository = conversationRepository;
+        this.messageRepository = messageRepository;
+        this.userRepository = userRepository;
+        this.broadcastLimit = broadcastLimit;
+        this.idleMillis = idleMillis;
+        meterRegistry.gauge("messenger.read.watermarks.conversations", entries, Map::size);
+        meterRegistry.gauge("messenger.read.watermarks.members", entries,
+            map -> map.values().stream().mapToInt(Entry::size).sum());
+    }
+    
+    @Transactional
+    public boolean isGroup(Long conversationId) {
+        return entry(conversationId).group;
+    }
+    
+    /**
+     * "Seen by" counts by seq for a page of messages, not counting each message's sender.
+     * Empty for direct conversations, which keep their per-message read flag.
+     */
+    @Transactional
+    public <T> Map<Long, Integer> seenBy(Long conversationId, List<T> messages,
+                                         Function<T, Long> seq, Function<T, Long> senderId) {
+        Entry entry = entry(conversationId);
+        if (!entry.group || messages.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, Integer> counts = new LinkedHashMap<>();
+        for (T message : messages) {
+            Long messageSeq = seq.apply(message);
+            if (messageSeq != null) {
+                counts.put(messageSeq, entry.seenBy(messageSeq, senderId.apply(message)));
+            }
+        }
+        return counts;
+    }
+    
+    /**
+     * Applies a committed watermark move and fills in the new counts of the messages it passed,
+     * for broadcasting. Idempotent, so a redelivered event gives the same counts.
+     */
+    @Transactional
+    public ReadProgress withSeenCounts(ReadProgress progress) {
+        Entry entry = entry(progress.getConversationId());
+        entry.advance(progress.getReaderId(), progress.getToSeq());
+        
+        Map<Long, Integer> counts = new LinkedHashMap<>();
+        List<Object[]> senders = messageRepository.findSendersInRange(progress.getConversationId(),
+            progress.getFromSeq(), progress.getToSeq(), PageRequest.of(0, broadcastLimit));
+        for (Object[] row : senders) {
+            Long seq = (Long) row[0];
+            counts.put(seq, entry.seenBy(seq, (Long) row[1]));
+        }
+        progress.setSeenBy(counts);
+        return progress;
+    }
+    
+    // Members other than the sender who have read up to seq, by username; loaded on demand
+    @Transactional
+    public List<UserSummary> findReaders(Long conversationId, long seq, int limit) {
+        Optional<Long> senderId = messageRepository.findSenderIdBySeq(conversationId, seq);
+        if (senderId.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> readerIds = entry(conversationId).readers(seq, senderId.get(), limit);
+        return readerIds.isEmpty() ? Collections.emptyList() : userRepository.findSummariesByIdIn(readerIds);
+    }
+    
+    @Transactional
+    public int seenBy(Long conversationId, long seq) {
+        return messageRepository.findSenderIdBySeq(conversationId, seq)
+            .map(senderId -> entry(conversationId).seenBy(seq, senderId))
+            .orElse(0);
+    }
+    
+    public void invalidate(Long conversationId) {
+        entries.remove(conversationId);
+    }
+    
+    @Scheduled(fixedDelayString = "${messenger.read-state.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        entries.values().removeIf(entry -> entry.lastAccess < cutoff);
+    }
+    
+    private Entry entry(Long conversationId) {
+        Entry entry = entries.get(conversationId);
+        if (entry == null) {
+            boolean group = conversationRepository.findSummaryById(conversationId)
+                .map(ConversationSummary::getIsGroup)
+                .orElse(false);
+            Map<Long, Long> watermarks = new HashMap<>();
+            if (group) {
+                for (Object[] row : participantRepository.findReadWatermarks(conversationId)) {
+                    watermarks.put((Long) row[0], (Long) row[1]);
+                }
+            }
+            // Of two concurrent loads the first one stored wins; advances are applied to that one
+            Entry loaded = new Entry(group, watermarks);
+            entry = Optional.ofNullable(entries.putIfAbsent(conversationId, loaded)).orElse(loaded);
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return entry;
+    }
+    
+    // Package-private so ReadWatermarkServiceTest can exercise it directly
+    static class Entry {
+        private final boolean group;
+        private final Map<Long, Long> watermarks;
+        // Every member's watermark, ascending
+        private final long[] sorted;
+        private volatile long lastAccess;
+        
+        Entry(boolean group, Map<Long, Long> watermarks) {
+            this.group = group;
+            this.watermarks = watermarks;
+            this.sorted = watermarks.values().stream().mapToLong(Long::longValue).sorted().toArray();
+        }
+        
+        synchronized int size() {
+            return sorted.length;
+        }
+        
+        synchronized int seenBy(long seq, Long senderId) {
+            int count = sorted.length - firstAtLeast(seq);
+            Long senderWatermark = watermarks.get(senderId);
+            return senderWatermark != null && senderWatermark >= seq ? count - 1 : count;
+        }
+        
+        // Moves one value up within the array; members not loaded and stale moves are ignored
+        synchronized void advance(Long userId, long seq) {
+            Long current = watermarks.get(userId);
+            if (current == null || current >= seq) {
+                return;
+            }
+            watermarks.put(userId, seq);
+            int from = firstAtLeast(current);
+            int to = firstAtLeast(seq);
+            System.arraycopy(sorted, from + 1, sorted, from, to - from - 1);
+            sorted[to - 1] = seq;
+        }
+        
+        synchronized List<Long> readers(long seq, Long senderId, int limit) {
+            List<Long> readers = new ArrayList<>();
+            for (Map.Entry<Long, Long> member : watermarks.entrySet()) {
+                if (member.getValue() >= seq && !member.getKey().equals(senderId)) {
+                    readers.add(member.getKey());
+                }
+            }
+            Collections.sort(readers);
+            return readers.subList(0, Math.min(limit, readers.size()));
+        }
+        
+        // Index of the first watermark >= seq
+        private int firstAtLeast(long seq) {
+            int low = 0;
+            int high = sorted.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sorted[mid] < seq) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
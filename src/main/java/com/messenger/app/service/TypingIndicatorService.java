@@ -0,0 +1,197 @@
+package com.messenger.app.service;
+
+import com.messenger.app.dto.TypingUpdate;
+import com.messenger.app.repository.ParticipantRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Typing state, kept entirely in memory. Repeated "typing" events from the same user are
+ * throttled, entries expire on their own when a client goes quiet, and each conversation's
+ * state is published at most once per flush interval as a single frame on
+ * /topic/typing/{id}, however many members are typing.
+ *
+ * Only members of a conversation may show as typing in it. Membership is looked up once per
+ * STOMP session and conversation and trusted for messenger.typing.membership-ttl-ms, so a
+ * stream of typing events does not become a stream of queries. Each session remembers its most
+ * recently used conversations, members or not, so probing many ids only evicts its own entries.
+ */
+@Service
+public class TypingIndicatorService {
+    
+    public static final String TOPIC_PREFIX = "/topic/typing/";
+    
+    // Bounds the membership cache of a session that probes many conversation ids
+    private static final int MAX_MEMBERSHIPS_PER_SESSION = 256;
+    
+    private final Map<Long, ConversationTyping> conversations = new ConcurrentHashMap<>();
+    private final Map<String, Map<Long, Membership>> sessionMemberships = new ConcurrentHashMap<>();
+    
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ParticipantRepository participantRepository;
+    private final long throttleMillis;
+    private final long ttlMillis;
+    private final int maxNames;
+    private final long membershipTtlMillis;
+    private final Counter throttled;
+    private final Counter rejected;
+    private final Counter frames;
+    
+    public TypingIndicatorService(SimpMessagingTemplate messagingTemplate,
+                                  ParticipantRepository participantRepository,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${messenger.typing.throttle-ms:2000}") long throttleMillis,
+                                  @Value("${messenger.typing.ttl-ms:6000}") long ttlMillis,
+                                  @Value("${messenger.typing.max-names:3}") int maxNames,
+                                  @Value("${messenger.typing.membership-ttl-ms:60000}") long membershipTtlMillis) {
+        this.messagingTemplate = messagingTemplate;
+        this.participantRepository = participantRepository;
+        this.throttleMillis = throttleMillis;
+        this.ttlMillis = ttlMillis;
+        this.maxNames = maxNames;
+        this.membershipTtlMillis = membershipTtlMillis;
+        this.throttled = Counter.builder("messenger.typing.throttled")
+            .description("Typing events dropped because the user was already marked as typing")
+            .register(meterRegistry);
+        this.rejected = Counter.builder("messenger.typing.rejected")
+            .description("Typing events dropped because the user is not a member of the conversation")
+            .register(meterRegistry);
+        this.frames = Counter.builder("messenger.typing.frames")
+            .description("Coalesced typing frames sent to the broker")
+            .register(meterRegistry);
+        meterRegistry.gauge("messenger.typing.active", conversations,
+            map -> map.values().stream().mapToInt(typing -> typing.typists.size()).sum());
+    }
+    
+    public void update(String sessionId, Long conversationId, Long userId, String username, boolean typing) {
+        if (!typing) {
+            clear(conversationId, userId);
+            return;
+        }
+        
+        long now = System.currentTimeMillis();
+        // Throttled first: a repeat from a user already shown as typing needs no membership check
+        ConversationTyping current = conversations.get(conversationId);
+        Typist existing = current != null ? current.typists.get(userId) : null;
+        if (existing != null && now - existing.refreshedAt < throttleMillis) {
+            throttled.increment();
+            return;
+        }
+        if (!isMember(sessionId, conversationId, userId, now)) {
+            rejected.increment();
+            return;
+        }
+        ConversationTyping state = conversations.computeIfAbsent(conversationId, id -> new ConversationTyping());
+        if (state.typists.put(userId, new Typist(username, now)) == null) {
+            state.dirty = true;
+        }
+    }
+    
+    /** Clears a user's typing state, e.g. once their message has been sent. */
+    public void clear(Long conversationId, Long userId) {
+        ConversationTyping state = conversations.get(conversationId);
+        if (state != null && state.typists.remove(userId) != null) {
+            state.dirty = true;
+        }
+    }
+    
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessionMemberships.remove(event.getSessionId());
+    }
+    
+    private boolean isMember(String sessionId, Long conversationId, Long userId, long now) {
+        Map<Long, Membership> memberships = sessionMemberships.computeIfAbsent(sessionId,
+            id -> Collections.synchronizedMap(new MembershipCache()));
+        Membership membership = memberships.get(conversationId);
+        if (membership == null || now - membership.checkedAt >= membershipTtlMillis) {
+            membership = new Membership(
+                participantRepository.findByUserIdAndConversationId(userId, conversationId).isPresent(), now);
+            memberships.put(conversationId, membership);
+        }
+        return membership.member;
+    }
+    
+    @Scheduled(fixedDelayString = "${messenger.typing.flush-interval-ms:500}")
+    public void flush() {
+        long cutoff = System.currentTimeMillis() - ttlMillis;
+        for (Map.Entry<Long, ConversationTyping> entry : conversations.entrySet()) {
+            ConversationTyping state = entry.getValue();
+            if (state.typists.values().removeIf(typist -> typist.refreshedAt < cutoff)) {
+                state.dirty = true;
+            }
+            if (state.dirty) {
+                state.dirty = false;
+                publish(entry.getKey(), state);
+            }
+            conversations.computeIfPresent(entry.getKey(),
+                (id, current) -> current.typists.isEmpty() && !current.dirty ? null : current);
+        }
+    }
+    
+    private void publish(Long conversationId, ConversationTyping state) {
+        List<Long> userIds = new ArrayList<>();
+        List<String> usernames = new ArrayList<>();
+        state.typists.forEach((userId, typist) -> {
+            userIds.add(userId);
+            if (usernames.size() < maxNames) {
+                usernames.add(typist.username);
+            }
+        });
+        // Large groups get a few names plus the total; userIds lets clients hide themselves
+        messagingTemplate.convertAndSend(TOPIC_PREFIX + conversationId,
+            new TypingUpdate(conversationId, userIds, usernames, userIds.size()));
+        frames.increment();
+    }
+    
+    private static class ConversationTyping {
+        private final Map<Long, Typist> typists = new ConcurrentHashMap<>();
+        private volatile boolean dirty;
+    }
+    
+    private static class Typist {
+        private final String username;
+        private final long refreshedAt;
+        
+        private Typist(String username, long refreshedAt) {
+            this.username = username;
+            this.refreshedAt = refreshedAt;
+        }
+    }
+    
+    // Access-ordered, so the least recently used conversation is evicted once the session is full
+    private static class MembershipCache extends LinkedHashMap<Long, Membership> {
+        
+        private MembershipCache() {
+            super(16, 0.75f, true);
+        }
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Membership> eldest) {
+            return size() > MAX_MEMBERSHIPS_PER_SESSION;
+        }
+    }
+    
+    private static class Membership {
+        private final boolean member;
+        private final long checkedAt;
+        
+        private Membership(boolean member, long checkedAt) {
+            this.member = member;
+            this.checkedAt = checkedAt;
+        }
+    }
+}
@@ -1,13 +1,24 @@
 package com.messenger.app.service;
 
+import com.messenger.app.dto.AdminUserView;
+import com.messenger.app.dto.KeysetPage;
+import com.messenger.app.dto.KeysetRequest;
+import com.messenger.app.dto.UserView;
+import com.messenger.app.model.PurgeJob;
 import com.messenger.app.model.User;
 import com.messenger.app.repository.UserRepository;
+import com.messenger.app.repository.UserRepositoryCustom.AdminUserSort;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @Transactional
@@ -16,18 +27,27 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private PurgeService purgeService;
+    
+    @Autowired
+    private ConversationMessageCache messageCache;
+    
+    @Autowired
+    private ConversationStreamBuffer streamBuffer;
+    
     public User registerUser(User user) {
-        if (userRepository.existsByUsername(user.getUsername())) {
+        if (userRepository.existsByUsernameAndDeletedAtIsNull(user.getUsername())) {
             throw new RuntimeException("Username already exists");
         }
-        if (userRepository.existsByEmail(user.getEmail())) {
+        if (userRepository.existsByEmailAndDeletedAtIsNull(user.getEmail())) {
             throw new RuntimeException("Email already exists");
         }
         return userRepository.save(user);
     }
     
     public Optional<User> login(String username, String password) {
-        Optional<User> user = userRepository.findByUsername(username);
+        Optional<User> user = findByUsername(username);
         if (user.isPresent() && user.get().getPassword().equals(password)) {
             User u = user.get();
             u.setIsOnline(true);
@@ -45,34 +65,94 @@ public class UserService {
         });
     }
     
+    // Users pending purge are hidden from every lookup
+    @Transactional(readOnly = true)
     public Optional<User> findById(Long id) {
-        return userRepository.findById(id);
+        return userRepository.findById(id).filter(user -> user.getDeletedAt() == null);
     }
     
+    @Transactional(readOnly = true)
     public Optional<User> findByUsername(String username) {
-        return userRepository.findByUsername(username);
+        return userRepository.findByUsernameAndDeletedAtIsNull(username);
     }
     
+    @Transactional(readOnly = true)
     public Optional<User> findByEmail(String email) {
-        return userRepository.findByEmail(email);
+        return userRepository.findByEmailAndDeletedAtIsNull(email);
+    }
+    
+    // Validates a set of user ids in one query; throws if any id does not exist
+    @Transactional(readOnly = true)
+    public void requireExistingUsers(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        Set<Long> missing = new LinkedHashSet<>(userIds);
+        userRepository.findExistingIds(userIds).forEach(missing::remove);
+        if (!missing.isEmpty()) {
+            throw new RuntimeException("Users not found: " + missing);
+        }
+    }
+    
+    @Transactional(readOnly = true)
+    public Optional<UserView> findViewById(Long id) {
+        return userRepository.findViewById(id);
+    }
+    
+    @Transactional(readOnly = true)
+    public List<UserView> findAllUserViews() {
+        return userRepository.findAllViews();
     }
     
-    public List<User> findAllUsers() {
-        return userRepository.findAll();
+    @Transactional(readOnly = true)
+    public List<UserView> searchUserViews(String query) {
+        return userRepository.searchViews(query);
     }
     
-    public List<User> searchUsers(String query) {
-        return userRepository.findAll().stream()
-            .filter(user -> user.getUsername().toLowerCase().contains(query.toLowerCase()) ||
-                           (user.getFullName() != null && user.getFullName().toLowerCase().contains(query.toLowerCase())))
-            .toList();
+    @Transactional(readOnly = true)
+    public KeysetPage<AdminUserView> getAdminPage(String search, Boolean online, Boolean admin,
+                                                  AdminUserSort sort, KeysetRequest request) {
+        return userRepository.findAdminPage(search, online, admin, sort, request);
+    }
+    
+    @Transactional(readOnly = true)
+    public long countUsers() {
+        return userRepository.countByDeletedAtIsNull();
+    }
+    
+    @Transactional(readOnly = true)
+    public long countOnlineUsers() {
+        return userRepository.countByDeletedAtIsNullAndIsOnlineTrue();
     }
     
     public User updateUser(User user) {
         return userRepository.save(user);
     }
     
+    // Hides the user immediately; their messages and memberships are purged in the background
     public void deleteUser(Long userId) {
-        userRepository.deleteById(userId);
+        findById(userId).ifPresent(user -> {
+            if (userRepository.markDeleted(userId, LocalDateTime.now()) > 0) {
+                purgeService.enqueue(PurgeJob.TargetType.USER, userId, user.getUsername());
+                // Cached history pages and catch-up buffers may hold the user's messages
+                afterCommit(() -> {
+                    messageCache.clear();
+                    streamBuffer.clear();
+                });
+            }
+        });
+    }
+    
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
     }
 }
@@ -0,0 +1,102 @@
+package com.messenger.app.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encodes message content for storage. Stored values that start with the marker
+ * character carry a one-character format code after it; anything else is plain
+ * text written before compression existed.
+ *
+ *   \u0001D<base64 deflate>  deflate-compressed UTF-8
+ *   \u0001P<text>            plain text that itself starts with the marker
+ */
+public final class MessageContentCodec {
+    
+    public static final char MARKER = '\u0001';
+    public static final char FORMAT_DEFLATE = 'D';
+    public static final char FORMAT_PLAIN = 'P';
+    
+    private MessageContentCodec() {}
+    
+    public static String encode(String content, int thresholdBytes) {
+        if (content == null) {
+            return null;
+        }
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        if (raw.length >= thresholdBytes) {
+            byte[] compressed = deflate(raw);
+            String encoded = Base64.getEncoder().encodeToString(compressed);
+            // Only keep the compressed form when it actually saves space after base64
+            if (encoded.length() + 2 < raw.length) {
+                return "" + MARKER + FORMAT_DEFLATE + encoded;
+            }
+        }
+        if (!content.isEmpty() && content.charAt(0) == MARKER) {
+            return "" + MARKER + FORMAT_PLAIN + content;
+        }
+        return content;
+    }
+    
+    public static String decode(String stored) {
+        if (!isEncoded(stored)) {
+            return stored;
+        }
+        char format = stored.charAt(1);
+        String payload = stored.substring(2);
+        switch (format) {
+            case FORMAT_DEFLATE:
+                return new String(inflate(Base64.getDecoder().decode(payload)), StandardCharsets.UTF_8);
+            case FORMAT_PLAIN:
+                return payload;
+            default:
+                throw new IllegalStateException("Unknown message content format: " + format);
+        }
+    }
+    
+    public static boolean isEncoded(String stored) {
+        return stored != null && stored.length() >= 2 && stored.charAt(0) == MARKER;
+    }
+    
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.length / 2));
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    private static byte[] inflate(byte[] input) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed message content");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed message content", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,3 @@
+-- A purge job is worked by the instance holding its lease; an expired lease (the worker
+-- stopped) lets another instance resume the job
+ALTER TABLE purge_jobs ADD COLUMN claimed_until TIMESTAMP(6);
@@ -0,0 +1,10 @@
+-- Usernames and emails only need to be unique among users not pending purge, so a deleted
+-- account does not block signing up again under the same name.
+-- Built without blocking sign-ups; the old unique constraints are dropped in V12.
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS uk_users_live_username
+    ON users (username)
+    WHERE deleted_at IS NULL;
+
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS uk_users_live_email
+    ON users (email)
+    WHERE deleted_at IS NULL;
@@ -0,0 +1,18 @@
+-- Replaced by the partial indexes of V11. The constraint names differ between databases
+-- created by Hibernate and by V1, so they are looked up by column.
+DO $$
+DECLARE
+    constraint_name TEXT;
+BEGIN
+    FOR constraint_name IN
+        SELECT c.conname
+        FROM pg_constraint c
+        JOIN pg_attribute a ON a.attrelid = c.conrelid AND a.attnum = c.conkey[1]
+        WHERE c.conrelid = 'users'::regclass
+        AND c.contype = 'u'
+        AND array_length(c.conkey, 1) = 1
+        AND a.attname IN ('username', 'email')
+    LOOP
+        EXECUTE format('ALTER TABLE users DROP CONSTRAINT %I', constraint_name);
+    END LOOP;
+END $$;
@@ -0,0 +1,14 @@
+-- Message numbering moves off the conversations row. Numbering a message locks its counter
+-- until the send commits; on conversations that lock also blocked the activity flush and
+-- soft deletes, which update the same row. The message inserts only take a key-share lock
+-- on conversations, which does not conflict with those updates.
+CREATE TABLE conversation_sequences (
+    conversation_id BIGINT PRIMARY KEY REFERENCES conversations (id) ON DELETE CASCADE,
+    last_seq        BIGINT NOT NULL
+);
+
+-- Conversations without messages get their counter row on the first send
+INSERT INTO conversation_sequences (conversation_id, last_seq)
+SELECT id, last_seq FROM conversations WHERE last_seq > 0;
+
+ALTER TABLE conversations DROP COLUMN last_seq;
@@ -0,0 +1,36 @@
+-- Columns and tables added to the entities after the baseline. A database baselined at V1 has
+-- none of them; one that ddl-auto kept updating meanwhile may already have some, hence IF NOT EXISTS.
+-- Their backfills are in V3 and the messages indexes in V2.
+
+-- Soft deletes; purged later by purge_jobs
+ALTER TABLE users ADD COLUMN IF NOT EXISTS deleted_at TIMESTAMP(6);
+
+ALTER TABLE conversations ADD COLUMN IF NOT EXISTS deleted_at TIMESTAMP(6);
+
+-- Canonical user pair of a direct conversation, so there is at most one per pair
+ALTER TABLE conversations ADD COLUMN IF NOT EXISTS direct_user_low BIGINT;
+
+ALTER TABLE conversations ADD COLUMN IF NOT EXISTS direct_user_high BIGINT;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_conversations_direct_pair
+    ON conversations (direct_user_low, direct_user_high);
+
+-- Per-conversation message numbering
+ALTER TABLE conversations ADD COLUMN IF NOT EXISTS last_seq BIGINT;
+
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS seq BIGINT;
+
+-- Client-generated id for idempotent resends
+ALTER TABLE messages ADD COLUMN IF NOT EXISTS client_message_id VARCHAR(64);
+
+CREATE TABLE IF NOT EXISTS purge_jobs (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    target_type  VARCHAR(255) NOT NULL CHECK (target_type IN ('CONVERSATION', 'USER')),
+    target_id    BIGINT NOT NULL,
+    target_name  VARCHAR(255),
+    status       VARCHAR(255) NOT NULL CHECK (status IN ('PENDING', 'RUNNING', 'DONE', 'FAILED')),
+    rows_deleted BIGINT,
+    last_error   TEXT,
+    created_at   TIMESTAMP(6),
+    finished_at  TIMESTAMP(6)
+);
@@ -0,0 +1,44 @@
+-- Schema as generated by spring.jpa.hibernate.ddl-auto=update before migrations were introduced.
+-- Databases created that way are baselined at this version (spring.flyway.baseline-on-migrate)
+-- and only receive the migrations after it, so nothing added since belongs in this file.
+
+CREATE TABLE users (
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    username        VARCHAR(255) NOT NULL,
+    email           VARCHAR(255) NOT NULL,
+    password        VARCHAR(255) NOT NULL,
+    full_name       VARCHAR(255),
+    profile_picture VARCHAR(255),
+    is_online       BOOLEAN,
+    last_seen       TIMESTAMP(6),
+    created_at      TIMESTAMP(6),
+    is_admin        BOOLEAN,
+    CONSTRAINT uk_users_username UNIQUE (username),
+    CONSTRAINT uk_users_email UNIQUE (email)
+);
+
+CREATE TABLE conversations (
+    id                BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    conversation_name VARCHAR(255),
+    is_group          BOOLEAN,
+    created_at        TIMESTAMP(6),
+    updated_at        TIMESTAMP(6)
+);
+
+CREATE TABLE participants (
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id         BIGINT NOT NULL REFERENCES users (id),
+    conversation_id BIGINT NOT NULL REFERENCES conversations (id),
+    joined_at       TIMESTAMP(6),
+    last_read_at    TIMESTAMP(6),
+    CONSTRAINT uk_participants_user_conversation UNIQUE (user_id, conversation_id)
+);
+
+CREATE TABLE messages (
+    id                BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    content           TEXT NOT NULL,
+    sender_id         BIGINT NOT NULL REFERENCES users (id),
+    conversation_id   BIGINT NOT NULL REFERENCES conversations (id),
+    is_read           BOOLEAN,
+    created_at        TIMESTAMP(6)
+);
@@ -0,0 +1,34 @@
+-- Indexes for the hot repository queries. Built CONCURRENTLY so existing tables stay writable;
+-- Flyway runs these statements outside a transaction. CONCURRENTLY waits for every open
+-- transaction, so Flyway's lock must be session-level (spring.flyway.postgresql.transactional-lock=false).
+
+-- Chat history and pagination: WHERE conversation_id = ? ORDER BY created_at
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_messages_conversation_created
+    ON messages (conversation_id, created_at);
+
+-- Unread counts (countUnreadMessages, countUnreadMessagesBySender, getUnreadMessages):
+-- only unread rows are indexed, so the index stays small as history grows
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_messages_unread
+    ON messages (conversation_id, sender_id)
+    WHERE is_read = false;
+
+-- Participant lookups by conversation (membership, fan-out, purge); includes user_id so
+-- member ids are read from the index
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_participants_conversation_user
+    ON participants (conversation_id, user_id);
+
+-- The purge scheduler polls for open jobs only
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_purge_jobs_open
+    ON purge_jobs (id)
+    WHERE status IN ('PENDING', 'RUNNING');
+
+-- Already covered by unique indexes and not duplicated here:
+--   messages (sender_id)           -> uk_messages_sender_client_id (sender_id, client_message_id)
+--   messages (conversation_id, seq) -> uk_messages_conversation_seq (latest page, resume after seq)
+--   participants (user_id)         -> uk_participants_user_conversation (user_id, conversation_id)
+-- Those two unique indexes are created here rather than in V1_1, as messages may already be large.
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS uk_messages_sender_client_id
+    ON messages (sender_id, client_message_id);
+
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS uk_messages_conversation_seq
+    ON messages (conversation_id, seq);
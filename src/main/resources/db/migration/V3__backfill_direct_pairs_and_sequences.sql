@@ -0,0 +1,27 @@
+-- One-off backfills that used to run as ApplicationRunners on every startup.
+
+-- Canonical (low, high) user pair for direct conversations created before pair keys existed.
+-- Where duplicates exist for a pair, only the oldest conversation gets the key.
+UPDATE conversations c
+SET direct_user_low = k.low_id, direct_user_high = k.high_id
+FROM (SELECT DISTINCT ON (pairs.low_id, pairs.high_id) pairs.conversation_id, pairs.low_id, pairs.high_id
+      FROM (SELECT p.conversation_id, MIN(p.user_id) AS low_id, MAX(p.user_id) AS high_id
+            FROM participants p JOIN conversations d ON d.id = p.conversation_id
+            WHERE d.is_group = false AND d.direct_user_low IS NULL
+            GROUP BY p.conversation_id) pairs
+      ORDER BY pairs.low_id, pairs.high_id, pairs.conversation_id) k
+WHERE c.id = k.conversation_id
+  AND NOT EXISTS (SELECT 1 FROM conversations e
+                  WHERE e.direct_user_low = k.low_id AND e.direct_user_high = k.high_id);
+
+-- Sequence counters first, then number the messages stored before sequencing existed
+UPDATE conversations c
+SET last_seq = (SELECT COUNT(*) FROM messages m WHERE m.conversation_id = c.id)
+WHERE c.last_seq IS NULL;
+
+UPDATE messages m
+SET seq = s.rn
+FROM (SELECT id, ROW_NUMBER() OVER (PARTITION BY conversation_id ORDER BY created_at, id) AS rn
+      FROM messages
+      WHERE seq IS NULL) s
+WHERE m.id = s.id;
@@ -0,0 +1,5 @@
+-- The admin conversation listing pages by keyset on (updated_at, id); a NULL there would drop
+-- the row from every page after the first. All insert paths set updated_at, so backfill and enforce.
+UPDATE conversations SET updated_at = COALESCE(created_at, now()) WHERE updated_at IS NULL;
+
+ALTER TABLE conversations ALTER COLUMN updated_at SET NOT NULL;
@@ -0,0 +1,9 @@
+-- Keyset index for the admin conversation listing sorted by last activity. Built CONCURRENTLY,
+-- so it lives in its own migration, apart from the transactional V4.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_conversations_live_updated
+    ON conversations (updated_at, id)
+    WHERE deleted_at IS NULL;
+
+-- The other admin sort orders seek on existing unique indexes:
+--   conversations (id), users (id) -> primary keys
+--   users (username)               -> uk_users_username
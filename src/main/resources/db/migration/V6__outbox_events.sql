@@ -0,0 +1,20 @@
+-- Broadcasts written in the same transaction as the messages and read marks they announce.
+-- OutboxDispatcher delivers them after commit and deletes them; rows still here were not
+-- delivered yet (or are being retried). No foreign key on conversation_id: an event may
+-- outlive a purged conversation by one poll, and the purge job removes the rest.
+CREATE TABLE outbox_events (
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    event_type      VARCHAR(32)  NOT NULL CHECK (event_type IN ('CHAT_MESSAGE', 'READ_RECEIPTS')),
+    conversation_id BIGINT,
+    payload         TEXT         NOT NULL,
+    attempts        INTEGER      NOT NULL DEFAULT 0,
+    created_at      TIMESTAMP(6) NOT NULL,
+    next_attempt_at TIMESTAMP(6) NOT NULL,
+    last_error      TEXT
+);
+
+-- The dispatcher poll: WHERE next_attempt_at <= ? ORDER BY id
+CREATE INDEX idx_outbox_events_due ON outbox_events (next_attempt_at, id);
+
+-- Purge of a deleted conversation's pending events
+CREATE INDEX idx_outbox_events_conversation ON outbox_events (conversation_id);
@@ -0,0 +1,23 @@
+-- Chunked file uploads. The bytes are stored on disk under messenger.attachments.dir by
+-- storage_key; received_bytes is how far a resumable upload has got.
+CREATE TABLE attachments (
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    conversation_id BIGINT       NOT NULL REFERENCES conversations (id),
+    uploader_id     BIGINT       NOT NULL REFERENCES users (id),
+    file_name       VARCHAR(255) NOT NULL,
+    content_type    VARCHAR(127) NOT NULL,
+    size_bytes      BIGINT       NOT NULL CHECK (size_bytes >= 0),
+    received_bytes  BIGINT       NOT NULL DEFAULT 0 CHECK (received_bytes >= 0 AND received_bytes <= size_bytes),
+    storage_key     VARCHAR(64)  NOT NULL CONSTRAINT uk_attachments_storage_key UNIQUE,
+    status          VARCHAR(16)  NOT NULL CHECK (status IN ('UPLOADING', 'COMPLETE')),
+    created_at      TIMESTAMP(6) NOT NULL,
+    completed_at    TIMESTAMP(6)
+);
+
+-- Purge by conversation or uploader, and the sweep of abandoned uploads
+CREATE INDEX idx_attachments_conversation ON attachments (conversation_id);
+CREATE INDEX idx_attachments_uploader ON attachments (uploader_id);
+CREATE INDEX idx_attachments_created ON attachments (created_at);
+
+-- Nullable and without a default, so adding it does not rewrite the messages table
+ALTER TABLE messages ADD COLUMN attachment_id BIGINT REFERENCES attachments (id);
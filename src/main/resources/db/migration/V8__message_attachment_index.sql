@@ -0,0 +1,4 @@
+-- Each upload is sent with at most one message; also serves the "is it referenced" checks of
+-- the abandoned-upload sweep. Built CONCURRENTLY, so it lives apart from the transactional V7.
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS uk_messages_attachment
+    ON messages (attachment_id);
@@ -0,0 +1,16 @@
+-- Per-member read position: the highest message seq the member has read. Group "seen by"
+-- counts are derived from these watermarks instead of per-message receipts.
+-- A constant default does not rewrite the table.
+ALTER TABLE participants ADD COLUMN last_read_seq BIGINT NOT NULL DEFAULT 0;
+
+-- Until now last_read_at was only ever the join time; count what existed then as read
+UPDATE participants p
+SET last_read_seq = COALESCE((SELECT MAX(m.seq) FROM messages m
+                              WHERE m.conversation_id = p.conversation_id
+                              AND m.created_at <= p.last_read_at), 0)
+WHERE p.last_read_at IS NOT NULL;
+
+-- Group read progress travels through the outbox as one event per read
+ALTER TABLE outbox_events DROP CONSTRAINT IF EXISTS outbox_events_event_type_check;
+ALTER TABLE outbox_events ADD CONSTRAINT outbox_events_event_type_check
+    CHECK (event_type IN ('CHAT_MESSAGE', 'READ_RECEIPTS', 'READ_PROGRESS'));
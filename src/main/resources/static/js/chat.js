@@ -7,6 +7,18 @@ let isSending = false;
 let wsConnected = false;
 let wsSubscription = null;
 let reconnectAttempts = 0;
+// Client-generated id for the message being sent; reused when the same content is retried
+let pendingClientMessage = null;
+// Last time this client told the server it is typing; the server expires the state on its own
+let lastTypingSentAt = 0;
+const TYPING_RESEND_INTERVAL = 2000;
+// Highest sequence number up to which this page has every message; used to resume after reconnects
+let lastSeq = 0;
+let isCatchingUp = false;
+// Attachment uploads resume from the server's offset; the upload id is remembered per file
+const UPLOAD_KEY_PREFIX = 'attachment-upload:';
+const MAX_CHUNK_RETRIES = 3;
+let isUploading = false;
 const MAX_RECONNECT_ATTEMPTS = 5;
 const RECONNECT_DELAY = 3000;
 
@@ -59,6 +71,27 @@ window.initializeChat = function() {
         document.getElementById('messageForm').addEventListener('submit', handleMessageSubmit);
     }
     
+    const messageInput = document.getElementById('messageInput');
+    if (messageInput) {
+        messageInput.addEventListener('input', handleTypingInput);
+        messageInput.addEventListener('blur', function() {
+            sendTypingState(false);
+        });
+    }
+    
+    const attachButton = document.getElementById('attachButton');
+    const attachmentInput = document.getElementById('attachmentInput');
+    if (attachButton && attachmentInput) {
+        attachButton.addEventListener('click', function() {
+            attachmentInput.click();
+        });
+        attachmentInput.addEventListener('change', handleAttachmentSelected);
+    }
+    
+    document.querySelectorAll('#chatMessages .message[data-seq]').forEach(function(element) {
+        lastSeq = Math.max(lastSeq, parseInt(element.getAttribute('data-seq')) || 0);
+    });
+    
     scrollToBottom();
     loadInitialMessages();
     setupInfiniteScroll();
@@ -169,10 +202,12 @@ function connectWebSocket() {
             try {
                 wsSubscription = stompClient.subscribe(topic, function(message) {
                     try {
-                        const chatMessage = JSON.parse(message.body);
-                        displayMessage(chatMessage);
-                        
-                        if (chatMessage.senderId !== currentUserId) {
+                        // Bursts arrive as one array frame; single messages as an object
+                        const body = JSON.parse(message.body);
+                        const chatMessages = Array.isArray(body) ? body : [body];
+                        chatMessages.forEach(displayMessage);
+
+                        if (chatMessages.some(m => m.senderId !== currentUserId)) {
                             setTimeout(function() {
                                 markMessagesAsRead();
                                 setTimeout(updateAllSentMessagesStatus, 300);
@@ -197,6 +232,39 @@ function connectWebSocket() {
                     }
                 });
                 
+                // Group reads: one frame per read, with new "seen by" counts for the messages it covered
+                const readProgressTopic = '/topic/read-progress/' + conversationId;
+                stompClient.subscribe(readProgressTopic, function(frame) {
+                    try {
+                        applySeenBy(JSON.parse(frame.body).seenBy);
+                    } catch (e) {
+                        console.error('Error parsing read progress:', e);
+                    }
+                });
+                
+                const typingTopic = '/topic/typing/' + conversationId;
+                stompClient.subscribe(typingTopic, function(frame) {
+                    try {
+                        renderTypingIndicator(JSON.parse(frame.body));
+                    } catch (e) {
+                        console.error('Error parsing typing update:', e);
+                    }
+                });
+                
+                // Frames the server dropped, e.g. sends over the rate limit
+                stompClient.subscribe('/user/queue/errors', function(frame) {
+                    try {
+                        const error = JSON.parse(frame.body);
+                        console.warn('Message not sent:', error);
+                        alert('Error sending message: ' + error.error);
+                    } catch (e) {
+                        console.error('Error parsing error notice:', e);
+                    }
+                });
+                
+                // Fetch anything broadcast while this page was disconnected
+                catchUpMessages();
+                
                 // Update all sent messages status when connection is established
                 setTimeout(updateAllSentMessagesStatus, 1000);
                 
@@ -329,9 +397,14 @@ function handleMessageSubmit(e) {
         submitButton.textContent = 'Sending...';
     }
     
+    if (!pendingClientMessage || pendingClientMessage.content !== content) {
+        pendingClientMessage = { id: generateClientMessageId(), content: content };
+    }
+    
     const formData = new FormData();
     formData.append('conversationId', conversationId);
     formData.append('content', content);
+    formData.append('clientMessageId', pendingClientMessage.id);
     
     fetch('/message/send', {
         method: 'POST',
@@ -358,9 +431,12 @@ function handleMessageSubmit(e) {
                 senderUsername: data.senderUsername,
                 senderProfilePicture: data.senderProfilePicture,
                 isRead: false,
-                createdAt: data.createdAt
+                createdAt: data.createdAt,
+                seq: data.seq
             });
             messageInput.value = '';
+            pendingClientMessage = null;
+            lastTypingSentAt = 0;
         }
     })
     .catch(error => {
@@ -381,6 +457,185 @@ function handleMessageSubmit(e) {
     return false;
 }
 
+function handleAttachmentSelected(e) {
+    const file = e.target.files && e.target.files[0];
+    e.target.value = '';
+    if (!file || isUploading) {
+        return;
+    }
+    
+    isUploading = true;
+    uploadAttachment(file)
+        .then(sendAttachmentMessage)
+        .catch(error => {
+            alert('Error uploading file: ' + (error.message || error));
+        })
+        .finally(() => {
+            isUploading = false;
+            setUploadStatus('');
+        });
+}
+
+async function uploadAttachment(file) {
+    const key = UPLOAD_KEY_PREFIX + [conversationId, file.name, file.size, file.lastModified].join(':');
+    let upload = await fetchUploadStatus(localStorage.getItem(key));
+    if (!upload) {
+        const formData = new FormData();
+        formData.append('conversationId', conversationId);
+        formData.append('fileName', file.name);
+        formData.append('contentType', file.type || '');
+        formData.append('size', file.size);
+        const response = await fetch('/attachments', { method: 'POST', body: formData });
+        upload = await response.json();
+        if (!response.ok) {
+            throw new Error(upload.error || 'Upload failed: ' + response.status);
+        }
+        localStorage.setItem(key, upload.id);
+    }
+    
+    let failures = 0;
+    while (!upload.complete) {
+        const offset = upload.receivedBytes;
+        setUploadStatus(`Uploading ${file.name}: ${Math.floor(offset * 100 / file.size)}%`);
+        try {
+            const body = await file.slice(offset, Math.min(file.size, offset + upload.chunkSize)).arrayBuffer();
+            const headers = { 'Content-Type': 'application/octet-stream' };
+            const checksum = await sha256Hex(body);
+            if (checksum) {
+                headers['X-Chunk-Sha256'] = checksum;
+            }
+            const response = await fetch(`/attachments/${upload.id}/chunks?offset=${offset}`, {
+                method: 'PUT',
+                headers: headers,
+                body: body
+            });
+            const data = await response.json();
+            if (response.ok) {
+                upload = data;
+                failures = 0;
+                continue;
+            }
+            if (response.status === 409 && data.id) {
+                // The server is somewhere else (an earlier chunk did land); continue from there
+                upload = data;
+            }
+            throw new Error(data.error || 'Upload failed: ' + response.status);
+        } catch (error) {
+            if (++failures > MAX_CHUNK_RETRIES) {
+                throw error;
+            }
+            await new Promise(resolve => setTimeout(resolve, 1000 * failures));
+            upload = (await fetchUploadStatus(upload.id)) || upload;
+        }
+    }
+    
+    localStorage.removeItem(key);
+    return upload;
+}
+
+function fetchUploadStatus(uploadId) {
+    if (!uploadId) {
+        return Promise.resolve(null);
+    }
+    return fetch(`/attachments/${uploadId}/status`)
+        .then(response => response.ok ? response.json() : null)
+        .catch(() => null);
+}
+
+async function sha256Hex(buffer) {
+    // crypto.subtle is only available on secure origins; the checksum is optional
+    if (!window.crypto || !window.crypto.subtle) {
+        return null;
+    }
+    const digest = await window.crypto.subtle.digest('SHA-256', buffer);
+    return Array.from(new Uint8Array(digest)).map(b => b.toString(16).padStart(2, '0')).join('');
+}
+
+function sendAttachmentMessage(upload) {
+    const messageInput = document.getElementById('messageInput');
+    const formData = new FormData();
+    formData.append('conversationId', conversationId);
+    formData.append('content', messageInput ? messageInput.value.trim() : '');
+    formData.append('attachmentId', upload.id);
+    formData.append('clientMessageId', generateClientMessageId());
+    
+    return fetch('/message/send', { method: 'POST', body: formData })
+        .then(response => response.json().then(data => {
+            if (!response.ok || data.error) {
+                throw new Error(data.error || 'Network response was not ok: ' + response.status);
+            }
+            return data;
+        }))
+        .then(data => {
+            displayMessage({
+                id: data.id,
+                content: data.content,
+                senderId: data.senderId,
+                senderUsername: data.senderUsername,
+                senderProfilePicture: data.senderProfilePicture,
+                isRead: false,
+                createdAt: data.createdAt,
+                seq: data.seq,
+                attachment: data.attachment
+            });
+            if (messageInput) {
+                messageInput.value = '';
+            }
+        });
+}
+
+function setUploadStatus(text) {
+    const status = document.getElementById('uploadStatus');
+    if (status) {
+        status.textContent = text;
+    }
+}
+
+function handleTypingInput(e) {
+    if (!e.target.value.trim()) {
+        sendTypingState(false);
+    } else if (Date.now() - lastTypingSentAt >= TYPING_RESEND_INTERVAL) {
+        sendTypingState(true);
+    }
+}
+
+function sendTypingState(typing) {
+    if (!stompClient || !wsConnected || (!typing && lastTypingSentAt === 0)) {
+        return;
+    }
+    lastTypingSentAt = typing ? Date.now() : 0;
+    try {
+        stompClient.send('/app/typing/' + conversationId, {}, JSON.stringify({ typing: typing }));
+    } catch (e) {
+        console.error('Error sending typing state:', e);
+    }
+}
+
+function renderTypingIndicator(update) {
+    const indicator = document.getElementById('typingIndicator');
+    if (!indicator) {
+        return;
+    }
+    const others = (update.userIds || []).filter(id => id !== currentUserId).length;
+    const names = (update.usernames || []).filter((name, i) => update.userIds[i] !== currentUserId);
+    if (others === 0) {
+        indicator.textContent = '';
+    } else if (others === 1 && names.length === 1) {
+        indicator.textContent = names[0] + ' is typing...';
+    } else if (names.length === others) {
+        indicator.textContent = names.join(', ') + ' are typing...';
+    } else {
+        indicator.textContent = others + ' people are typing...';
+    }
+}
+
+function generateClientMessageId() {
+    if (window.crypto && typeof window.crypto.randomUUID === 'function') {
+        return window.crypto.randomUUID();
+    }
+    return Date.now().toString(36) + '-' + Math.random().toString(36).substring(2, 12);
+}
+
 function displayMessage(message) {
     const messagesContainer = document.getElementById('chatMessages');
     if (!messagesContainer) {
@@ -404,8 +659,56 @@ function displayMessage(message) {
     }
     
     const messageDiv = createMessageElement(message);
-    messagesContainer.appendChild(messageDiv);
+    
+    // Keep the stream in sequence order even if frames arrive out of order
+    const next = message.seq ? Array.from(messagesContainer.querySelectorAll('.message[data-seq]'))
+        .find(element => parseInt(element.getAttribute('data-seq')) > message.seq) : null;
+    if (next) {
+        messagesContainer.insertBefore(messageDiv, next);
+    } else {
+        messagesContainer.appendChild(messageDiv);
+    }
     scrollToBottom();
+    
+    trackSequence(message.seq);
+}
+
+function trackSequence(seq) {
+    if (!seq) {
+        return;
+    }
+    if (lastSeq === 0 || seq === lastSeq + 1) {
+        lastSeq = seq;
+    } else if (seq > lastSeq + 1) {
+        // A message is missing between lastSeq and this one
+        catchUpMessages();
+    }
+}
+
+function catchUpMessages() {
+    if (!conversationId || lastSeq === 0 || isCatchingUp) {
+        return;
+    }
+    isCatchingUp = true;
+    
+    fetch(`/message/conversation/${conversationId}/since?afterSeq=${lastSeq}`)
+        .then(response => response.json())
+        .then(data => {
+            (data.messages || []).forEach(message => {
+                displayMessage(message);
+                if (message.seq > lastSeq) {
+                    lastSeq = message.seq;
+                }
+            });
+            isCatchingUp = false;
+            if (data.hasMore) {
+                catchUpMessages();
+            }
+        })
+        .catch(error => {
+            isCatchingUp = false;
+            console.error('Error catching up messages:', error);
+        });
 }
 
 function loadInitialMessages() {
@@ -431,10 +734,13 @@ function loadInitialMessages() {
                     senderUsername: message.senderUsername,
                     senderProfilePicture: message.senderProfilePicture,
                     isRead: message.isRead,
-                    createdAt: message.createdAt
+                    createdAt: message.createdAt,
+                    seq: message.seq,
+                    attachment: message.attachment
                 });
             });
             
+            applySeenBy(data.seenBy);
             setTimeout(scrollToBottom, 100);
             setTimeout(markMessagesAsRead, 300);
             setTimeout(updateAllSentMessagesStatus, 500);
@@ -478,7 +784,9 @@ function loadOlderMessages() {
                         senderUsername: message.senderUsername,
                         senderProfilePicture: message.senderProfilePicture,
                         isRead: message.isRead,
-                        createdAt: message.createdAt
+                        createdAt: message.createdAt,
+                        seq: message.seq,
+                        attachment: message.attachment
                     });
                     
                     if (firstMessage) {
@@ -518,6 +826,9 @@ function createMessageElement(message) {
     if (message.id) {
         messageDiv.setAttribute('data-message-id', message.id);
     }
+    if (message.seq) {
+        messageDiv.setAttribute('data-seq', message.seq);
+    }
     
     let time;
     try {
@@ -579,6 +890,11 @@ function createMessageElement(message) {
         }
     }
     
+    let attachmentHtml = '';
+    if (message.attachment) {
+        attachmentHtml = `<a class="message-attachment" href="/attachments/${encodeURIComponent(message.attachment.id)}">${escapeHtml(message.attachment.fileName || 'Attachment')}</a>`;
+    }
+    
     messageDiv.innerHTML = `
         ${avatarHtml}
         <div class="message-body">
@@ -587,6 +903,7 @@ function createMessageElement(message) {
                 <span class="message-time">${time}</span>
             </div>
             <div class="message-content">${escapeHtml(message.content || '')}</div>
+            ${attachmentHtml}
             ${statusHtml}
         </div>
     `;
@@ -637,6 +954,53 @@ function updateMessageReadStatus(messageId, isRead) {
     }
 }
 
+// Group conversations: "Seen by N" on own messages, keyed by seq
+function applySeenBy(seenBy) {
+    if (!seenBy) return;
+    
+    const messagesContainer = document.getElementById('chatMessages');
+    if (!messagesContainer) return;
+    
+    Object.keys(seenBy).forEach(function(seq) {
+        const messageElement = messagesContainer.querySelector(`.message-sent[data-seq="${seq}"]`);
+        const statusElement = messageElement ? messageElement.querySelector('.message-status') : null;
+        if (!statusElement) return;
+        
+        const count = seenBy[seq];
+        if (count > 0) {
+            statusElement.innerHTML = `<span class="seen-indicator seen-by" data-seq="${seq}">Seen by ${count}</span>`;
+            statusElement.querySelector('.seen-by').addEventListener('click', function() {
+                showSeenBy(statusElement, seq);
+            });
+        } else {
+            statusElement.innerHTML = '<span class="sent-indicator">Sent</span>';
+        }
+    });
+}
+
+// The reader list is only fetched when asked for
+function showSeenBy(statusElement, seq) {
+    const existing = statusElement.querySelector('.seen-by-list');
+    if (existing) {
+        existing.remove();
+        return;
+    }
+    
+    fetch(`/message/conversation/${conversationId}/seen-by?seq=${encodeURIComponent(seq)}`)
+        .then(response => response.json())
+        .then(data => {
+            const list = document.createElement('div');
+            list.className = 'seen-by-list';
+            const names = (data.readers || []).map(reader => escapeHtml(reader.username || 'Unknown'));
+            const more = (data.seenBy || 0) - names.length;
+            list.innerHTML = names.join(', ') + (more > 0 ? ` and ${more} more` : '');
+            statusElement.appendChild(list);
+        })
+        .catch(error => {
+            console.error('Error loading readers:', error);
+        });
+}
+
 function updateAllSentMessagesStatus() {
     if (!conversationId) return;
     
@@ -664,6 +1028,7 @@ function updateAllSentMessagesStatus() {
                     updateMessageReadStatus(messageId, isRead);
                 }
             });
+            applySeenBy(data.seenBy);
         })
         .catch(error => {
             console.error('Error updating message statuses:', error);
@@ -673,6 +1038,13 @@ function updateAllSentMessagesStatus() {
 function pollMessages() {
     if (!conversationId) return;
     
+    // Once the stream position is known, only ask for what came after it
+    if (lastSeq > 0) {
+        catchUpMessages();
+        markMessagesAsRead();
+        return;
+    }
+    
     fetch(`/message/conversation/${conversationId}?page=0&size=${PAGE_SIZE}`)
         .then(response => response.json())
         .then(data => {
@@ -696,7 +1068,9 @@ function pollMessages() {
                         senderUsername: message.senderUsername,
                         senderProfilePicture: message.senderProfilePicture,
                         isRead: message.isRead,
-                        createdAt: message.createdAt
+                        createdAt: message.createdAt,
+                        seq: message.seq,
+                        attachment: message.attachment
                     });
                 }
             });
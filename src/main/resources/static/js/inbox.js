@@ -0,0 +1,143 @@
+// Inbox updates pushed over the per-user WebSocket destination (/user/queue/inbox)
+
+let inboxClient = null;
+let inboxConnected = false;
+let inboxReconnectAttempts = 0;
+const INBOX_MAX_RECONNECT_ATTEMPTS = 5;
+const INBOX_RECONNECT_DELAY = 3000;
+
+function loadInboxScript(src, onload) {
+    const script = document.createElement('script');
+    script.src = src;
+    script.onload = onload;
+    script.onerror = function() {
+        console.error('Failed to load ' + src);
+    };
+    document.head.appendChild(script);
+}
+
+function initializeInbox() {
+    if (!window.currentUserId) {
+        return;
+    }
+    
+    if (typeof SockJS === 'undefined') {
+        loadInboxScript('https://cdn.jsdelivr.net/npm/sockjs-client@1/dist/sockjs.min.js', initializeInbox);
+        return;
+    }
+    if (typeof Stomp === 'undefined') {
+        loadInboxScript('https://cdn.jsdelivr.net/npm/stompjs@2.3.3/lib/stomp.min.js', initializeInbox);
+        return;
+    }
+    
+    connectInbox();
+}
+
+function connectInbox() {
+    const socket = new SockJS('/ws');
+    inboxClient = Stomp.over(socket);
+    inboxClient.debug = function() {};
+    
+    inboxClient.connect({}, function() {
+        inboxConnected = true;
+        inboxReconnectAttempts = 0;
+        
+        inboxClient.subscribe('/user/queue/inbox', function(message) {
+            try {
+                applyInboxUpdate(JSON.parse(message.body));
+            } catch (e) {
+                console.error('Error parsing inbox update:', e);
+            }
+        });
+    }, function() {
+        inboxConnected = false;
+        reconnectInbox();
+    });
+    
+    socket.onclose = function() {
+        inboxConnected = false;
+        reconnectInbox();
+    };
+}
+
+function reconnectInbox() {
+    if (inboxReconnectAttempts >= INBOX_MAX_RECONNECT_ATTEMPTS) {
+        return;
+    }
+    inboxReconnectAttempts++;
+    setTimeout(function() {
+        if (!inboxConnected) {
+            connectInbox();
+        }
+    }, INBOX_RECONNECT_DELAY);
+}
+
+function applyInboxUpdate(update) {
+    const list = document.getElementById('conversationsList');
+    if (!list) return;
+    
+    let item = list.querySelector(`[data-conversation-id="${update.conversationId}"]`);
+    if (!item) {
+        item = createConversationItem(update);
+        const emptyState = list.querySelector('.empty-state');
+        if (emptyState) {
+            emptyState.remove();
+        }
+    }
+    
+    const meta = item.querySelector('.conversation-meta');
+    let badge = meta.querySelector('.unread-count');
+    if (update.unreadCount > 0) {
+        if (!badge) {
+            badge = document.createElement('span');
+            badge.className = 'unread-count';
+            meta.appendChild(badge);
+        }
+        badge.textContent = update.unreadCount;
+    } else if (badge) {
+        badge.remove();
+    }
+    
+    let preview = item.querySelector('.conversation-preview');
+    if (!preview) {
+        preview = document.createElement('div');
+        preview.className = 'conversation-preview';
+        item.querySelector('.conversation-name').after(preview);
+    }
+    preview.textContent = (update.isGroup ? update.senderUsername + ': ' : '') + (update.preview || '');
+    
+    // Most recently updated conversation goes to the top, matching the server-side ordering
+    const heading = list.querySelector('h3');
+    heading.after(item);
+}
+
+function createConversationItem(update) {
+    const item = document.createElement('div');
+    item.className = 'conversation-item';
+    item.setAttribute('data-conversation-id', update.conversationId);
+    
+    // Already the name this user sees: the group's, or the other member's for a direct chat
+    const name = update.conversationName;
+    
+    const link = document.createElement('a');
+    link.className = 'conversation-link';
+    link.href = '/conversation/' + update.conversationId;
+    
+    const nameDiv = document.createElement('div');
+    nameDiv.className = 'conversation-name';
+    nameDiv.textContent = name || '';
+    
+    const metaDiv = document.createElement('div');
+    metaDiv.className = 'conversation-meta';
+    
+    link.appendChild(nameDiv);
+    link.appendChild(metaDiv);
+    item.appendChild(link);
+    return item;
+}
+
+if (document.readyState === 'loading') {
+    document.addEventListener('DOMContentLoaded', initializeInbox);
+} else {
+    initializeInbox();
+}
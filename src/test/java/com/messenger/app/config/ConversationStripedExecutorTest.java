@@ -0,0 +1,113 @@
+package com.messenger.app.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConversationStripedExecutorTest {
+    
+    private static final int FRAMES = 200;
+    
+    @Test
+    void interleavedConversationsEachKeepTheirOrder() throws InterruptedException {
+        ConversationStripedExecutor executor = executor(new SimpleMeterRegistry(), 4, 1000, 1000);
+        List<Integer> first = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> second = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(2 * FRAMES);
+        try {
+            for (int i = 0; i < FRAMES; i++) {
+                int frame = i;
+                executor.execute(chatFrame(1L, () -> {
+                    first.add(frame);
+                    done.countDown();
+                }));
+                executor.execute(chatFrame(2L, () -> {
+                    second.add(frame);
+                    done.countDown();
+                }));
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+        
+        List<Integer> expected = IntStream.range(0, FRAMES).boxed().toList();
+        assertEquals(expected, first);
+        assertEquals(expected, second);
+    }
+    
+    @Test
+    void aFrameForAStripeThatStaysFullIsRejected() throws InterruptedException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ConversationStripedExecutor executor = executor(registry, 1, 1, 100);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // One frame holds the stripe's thread and one fills its queue
+            executor.execute(chatFrame(1L, () -> {
+                running.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            executor.execute(chatFrame(1L, () -> { }));
+            
+            long started = System.nanoTime();
+            assertThrows(RejectedExecutionException.class, () -> executor.execute(chatFrame(1L, () -> { })));
+            // The sender waited out the offer timeout before giving up
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) >= 100);
+            assertEquals(1.0, registry.counter("messenger.stomp.stripe.rejected").count());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+    
+    private static ConversationStripedExecutor executor(SimpleMeterRegistry registry, int stripes,
+                                                        int queueCapacity, long offerTimeoutMillis) {
+        return new ConversationStripedExecutor(registry, new MockEnvironment(), stripes, queueCapacity, offerTimeoutMillis);
+    }
+    
+    private static MessageHandlingRunnable chatFrame(Long conversationId, Runnable handler) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination("/app/chat/" + conversationId);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        return new MessageHandlingRunnable() {
+            @Override
+            public Message<?> getMessage() {
+                return message;
+            }
+            
+            @Override
+            public MessageHandler getMessageHandler() {
+                return frame -> handler.run();
+            }
+            
+            @Override
+            public void run() {
+                handler.run();
+            }
+        };
+    }
+}
@@ -0,0 +1,165 @@
+package com.messenger.app.config;
+
+import com.messenger.app.service.ConversationService;
+import com.messenger.app.service.MessageService;
+import com.messenger.app.service.ReadWatermarkService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Routing with messenger.datasource.replica.urls set. The replica is a second database on the
+ * same server that is migrated but never written, so it behaves like a replica that has not
+ * caught up with anything: whatever a read finds there, it found on the primary.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(properties = {
+    "spring.datasource.hikari.connection-timeout=4321",
+    "spring.datasource.hikari.maximum-pool-size=4",
+    "messenger.datasource.replica.hikari.maximum-pool-size=6"
+})
+class ReadReplicaRoutingTest {
+    
+    @Container
+    static final PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:16-alpine");
+    
+    private static final long WRITER_ID = 1001L;
+    private static final long READER_ID = 1002L;
+    private static final long CONVERSATION_ID = 2001L;
+    
+    private static String replicaUrl;
+    
+    @Autowired
+    private ConversationService conversationService;
+    
+    @Autowired
+    private MessageService messageService;
+    
+    @Autowired
+    private ReadWatermarkService readWatermarkService;
+    
+    @Autowired
+    private ReadYourWritesTracker readYourWritesTracker;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    @DynamicPropertySource
+    static void datasources(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("messenger.datasource.replica.urls", ReadReplicaRoutingTest::replicaUrl);
+    }
+    
+    private static synchronized String replicaUrl() {
+        if (replicaUrl == null) {
+            try (Connection connection = DriverManager.getConnection(
+                    postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+                 Statement statement = connection.createStatement()) {
+                statement.execute("CREATE DATABASE replica");
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            String url = "jdbc:postgresql://" + postgres.getHost() + ":" + postgres.getMappedPort(5432) + "/replica";
+            Flyway.configure()
+                .dataSource(url, postgres.getUsername(), postgres.getPassword())
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                .load()
+                .migrate();
+            replicaUrl = url;
+        }
+        return replicaUrl;
+    }
+    
+    // Written outside any transaction, so on the primary only
+    @BeforeAll
+    static void seed(@Autowired JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("INSERT INTO users (id, username, email, password, created_at) VALUES " +
+            "(?, 'writer', 'writer@example.com', 'x', now()), (?, 'reader', 'reader@example.com', 'x', now())",
+            WRITER_ID, READER_ID);
+        jdbcTemplate.update("INSERT INTO conversations (id, conversation_name, is_group, created_at, updated_at) " +
+            "VALUES (?, 'group', true, now(), now())", CONVERSATION_ID);
+        jdbcTemplate.update("INSERT INTO conversation_sequences (conversation_id, last_seq) VALUES (?, 1)", CONVERSATION_ID);
+        jdbcTemplate.update("INSERT INTO participants (user_id, conversation_id, joined_at, last_read_seq) " +
+            "VALUES (?, ?, now(), 1), (?, ?, now(), 1)", WRITER_ID, CONVERSATION_ID, READER_ID, CONVERSATION_ID);
+        jdbcTemplate.update("INSERT INTO messages (content, sender_id, conversation_id, is_read, seq, client_message_id, created_at) " +
+            "VALUES ('hello', ?, ?, false, 1, 'client-1', now())", WRITER_ID, CONVERSATION_ID);
+    }
+    
+    @Test
+    void readOnlyTransactionsWithoutAUserUseTheReplica() {
+        assertTrue(conversationService.findSummaryById(CONVERSATION_ID).isEmpty());
+    }
+    
+    @Test
+    void stompFramesOfARecentWriterReadFromThePrimary() {
+        readYourWritesTracker.recordWrite(WRITER_ID);
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setUser(() -> String.valueOf(WRITER_ID));
+        Message<byte[]> frame = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        ReadYourWritesChannelInterceptor interceptor = new ReadYourWritesChannelInterceptor(readYourWritesTracker);
+        
+        interceptor.beforeHandle(frame, null, null);
+        try {
+            assertTrue(conversationService.findSummaryById(CONVERSATION_ID).isPresent());
+        } finally {
+            interceptor.afterMessageHandled(frame, null, null, null);
+        }
+        assertTrue(conversationService.findSummaryById(CONVERSATION_ID).isEmpty());
+    }
+    
+    @Test
+    void duplicateSendFallbackReadsFromThePrimary() {
+        assertTrue(messageService.findByClientMessageId(WRITER_ID, "client-1").isPresent());
+    }
+    
+    @Test
+    void readWatermarksLoadFromThePrimary() {
+        assertTrue(readWatermarkService.isGroup(CONVERSATION_ID));
+        // The reader has read the writer's message; the writer is not counted for their own
+        assertEquals(1, readWatermarkService.seenBy(CONVERSATION_ID, 1L));
+        assertFalse(readWatermarkService.findReaders(CONVERSATION_ID, 1L, 10).isEmpty());
+    }
+    
+    @Test
+    void poolsTakeTheHikariSettings() {
+        ReplicaRoutingDataSource routing = (ReplicaRoutingDataSource)
+            ((LazyConnectionDataSourceProxy) dataSource).getTargetDataSource();
+        Map<Object, DataSource> pools = routing.getResolvedDataSources();
+        HikariDataSource primary = (HikariDataSource) pools.get(ReplicaRoutingDataSource.PRIMARY);
+        HikariDataSource replica = (HikariDataSource) pools.get(ReplicaRoutingDataSource.REPLICA_PREFIX + 0);
+        
+        assertEquals(4321, primary.getConnectionTimeout());
+        assertEquals(4, primary.getMaximumPoolSize());
+        // Replicas inherit spring.datasource.hikari.* and apply their own overrides on top
+        assertEquals(4321, replica.getConnectionTimeout());
+        assertEquals(6, replica.getMaximumPoolSize());
+        assertTrue(replica.isReadOnly());
+    }
+}
@@ -0,0 +1,172 @@
+package com.messenger.app.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Each policy once a session is over its buffer limit. The first frame of every test is larger
+ * than the limit and stays unwritten, which is what makes the session slow.
+ */
+class SlowConsumerGuardTest {
+    
+    private static final String SESSION_ID = "session-1";
+    private static final long BUFFER_SIZE = 16;
+    private static final byte[] LARGE = new byte[64];
+    
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MessageChannel outbound = mock(MessageChannel.class);
+    private final WebSocketSession transport = mock(WebSocketSession.class);
+    
+    @Test
+    void dropDiscardsFramesWhileTheSessionIsBehind() throws Exception {
+        SlowConsumerGuard guard = guard("drop");
+        WebSocketSession session = connect(guard);
+        
+        assertNotNull(guard.preSend(frame("/topic/conversation/1", LARGE), outbound));
+        assertNull(guard.preSend(frame("/topic/conversation/1", new byte[1]), outbound));
+        assertEquals(1.0, skipped("dropped"));
+        
+        // Once the large frame is written the session takes frames again
+        session.sendMessage(new TextMessage("MESSAGE\n\n\0"));
+        assertNotNull(guard.preSend(frame("/topic/conversation/1", new byte[1]), outbound));
+    }
+    
+    @Test
+    void coalesceHoldsTheNewestFrameAndSendsItOnceTheSessionCatchesUp() throws Exception {
+        SlowConsumerGuard guard = guard("coalesce");
+        WebSocketSession session = connect(guard);
+        assertNotNull(guard.preSend(frame("/topic/conversation/1", LARGE), outbound));
+        
+        Message<?> older = frame("/topic/typing/1", new byte[1]);
+        Message<?> newer = frame("/topic/typing/1", new byte[2]);
+        assertNull(guard.preSend(older, outbound));
+        assertNull(guard.preSend(newer, outbound));
+        // Frames that are not latest-state-wins are dropped
+        assertNull(guard.preSend(frame("/topic/conversation/1", new byte[1]), outbound));
+        assertEquals(1.0, skipped("coalesced"));
+        assertEquals(1.0, skipped("dropped"));
+        
+        guard.flushHeld();
+        verify(outbound, never()).send(any());
+        
+        session.sendMessage(new TextMessage("MESSAGE\n\n\0"));
+        guard.flushHeld();
+        ArgumentCaptor<Message<?>> sent = ArgumentCaptor.forClass(Message.class);
+        verify(outbound).send(sent.capture());
+        assertSame(newer, sent.getValue());
+    }
+    
+    @Test
+    void disconnectClosesTheSessionOnce() throws Exception {
+        SlowConsumerGuard guard = guard("disconnect");
+        connect(guard);
+        
+        assertNotNull(guard.preSend(frame("/topic/conversation/1", LARGE), outbound));
+        assertNull(guard.preSend(frame("/topic/conversation/1", new byte[1]), outbound));
+        assertNull(guard.preSend(frame("/topic/conversation/1", new byte[1]), outbound));
+        
+        verify(transport).close(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+    
+    @Test
+    void cborFramesAreCountedAtTheirEncodedSize() throws Exception {
+        SlowConsumerGuard guard = guard("drop");
+        connect(guard);
+        PayloadEncodingInterceptor encoding = new PayloadEncodingInterceptor(registry);
+        encoding.preSend(cborConnect(), outbound);
+        
+        // Same order as the outbound channel: encode, then guard
+        Message<?> message = jsonFrame("/topic/conversation/1", "{\"content\":\"" + "x".repeat(64) + "\"}");
+        Message<?> encoded = encoding.preSend(message, outbound);
+        assertEquals(MimeTypeUtils.APPLICATION_OCTET_STREAM,
+            SimpMessageHeaderAccessor.wrap(encoded).getContentType());
+        assertNotNull(guard.preSend(encoded, outbound));
+        
+        assertNull(guard.preSend(frame("/topic/conversation/1", new byte[1]), outbound));
+    }
+    
+    @Test
+    void stringPayloadsAreCounted() throws Exception {
+        SlowConsumerGuard guard = guard("drop");
+        connect(guard);
+        
+        assertNotNull(guard.preSend(MessageBuilder.createMessage("y".repeat(64), headers("/topic/conversation/1")), outbound));
+        assertNull(guard.preSend(frame("/topic/conversation/1", new byte[1]), outbound));
+    }
+    
+    private SlowConsumerGuard guard(String policy) {
+        return new SlowConsumerGuard(outbound, registry, policy, BUFFER_SIZE, 60_000, List.of("/topic/typing/"));
+    }
+    
+    // Returns the session the guard tracks writes on
+    private WebSocketSession connect(SlowConsumerGuard guard) throws Exception {
+        when(transport.getId()).thenReturn(SESSION_ID);
+        WebSocketHandler handler = mock(WebSocketHandler.class);
+        guard.decorateHandler(handler).afterConnectionEstablished(transport);
+        ArgumentCaptor<WebSocketSession> tracked = ArgumentCaptor.forClass(WebSocketSession.class);
+        verify(handler).afterConnectionEstablished(tracked.capture());
+        return tracked.getValue();
+    }
+    
+    private double skipped(String reason) {
+        return registry.counter("messenger.websocket.frames.skipped", "reason", reason).count();
+    }
+    
+    private static Message<byte[]> frame(String destination, byte[] payload) {
+        return MessageBuilder.createMessage(payload, headers(destination));
+    }
+    
+    private static Message<byte[]> jsonFrame(String destination, String json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(SESSION_ID);
+        accessor.setDestination(destination);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(json.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+    
+    private static MessageHeaders headers(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(SESSION_ID);
+        accessor.setDestination(destination);
+        return accessor.getMessageHeaders();
+    }
+    
+    private static Message<byte[]> cborConnect() {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(SESSION_ID);
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(NativeTransportHandshakeInterceptor.NATIVE_TRANSPORT_ATTRIBUTE, true);
+        accessor.setSessionAttributes(attributes);
+        accessor.setNativeHeader(PayloadEncodingInterceptor.ENCODING_HEADER, PayloadEncodingInterceptor.CBOR);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
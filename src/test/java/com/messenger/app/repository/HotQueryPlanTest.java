@@ -0,0 +1,193 @@
+package com.messenger.app.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the hot message and participant queries are answered from an index once the
+ * tables hold realistic volumes. Each repository method is called once so Hibernate's own SQL is
+ * captured, then planned with EXPLAIN (GENERIC_PLAN), which is how a prepared statement runs
+ * after its first few executions.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(properties = {
+    "spring.jpa.show-sql=false",
+    "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.messenger.app.repository.HotQueryPlanTest$RecordingInspector"
+})
+class HotQueryPlanTest {
+    
+    // GENERIC_PLAN needs PostgreSQL 16
+    @Container
+    static final PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:16-alpine");
+    
+    private static final int USERS = 5_000;
+    private static final int CONVERSATIONS = 2_000;
+    private static final int MEMBERS = 5;
+    private static final int MESSAGES = 200_000;
+    
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\?");
+    
+    @Autowired
+    private MessageRepository messageRepository;
+    
+    @Autowired
+    private ParticipantRepository participantRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Value("${spring.datasource.url}")
+    private String url;
+    
+    @Value("${spring.datasource.username}")
+    private String username;
+    
+    @Value("${spring.datasource.password}")
+    private String password;
+    
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+    
+    @BeforeAll
+    static void seed(@Autowired JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("INSERT INTO users (username, email, password, created_at, is_admin, is_online) " +
+            "SELECT 'user' || g, 'user' || g || '@example.com', 'x', now(), false, false " +
+            "FROM generate_series(1, ?) g", USERS);
+        // Every tenth conversation is a group; the others are direct pairs
+        jdbcTemplate.update("INSERT INTO conversations (conversation_name, is_group, created_at, updated_at) " +
+            "SELECT 'conversation' || g, g % 10 = 0, now(), now() " +
+            "FROM generate_series(1, ?) g", CONVERSATIONS);
+        jdbcTemplate.update("INSERT INTO conversation_sequences (conversation_id, last_seq) " +
+            "SELECT id, ? FROM conversations", MESSAGES / CONVERSATIONS);
+        jdbcTemplate.update("INSERT INTO participants (user_id, conversation_id, joined_at, last_read_seq) " +
+            "SELECT (c * 7 + k) % ? + 1, c, now(), 0 " +
+            "FROM generate_series(1, ?) c, generate_series(0, ?) k", USERS, CONVERSATIONS, MEMBERS - 1);
+        // One in ten messages unread, spread evenly over the conversations and their members
+        jdbcTemplate.update("INSERT INTO messages (content, sender_id, conversation_id, is_read, seq, client_message_id, created_at) " +
+            "SELECT 'message ' || g, (c * 7 + g % ?) % ? + 1, c, g % 10 <> 0, g / ? + 1, 'client-' || g, " +
+            "now() - make_interval(secs => ? - g) " +
+            "FROM (SELECT g, g % ? + 1 AS c FROM generate_series(0, ? - 1) g) s",
+            MEMBERS, USERS, CONVERSATIONS, MESSAGES, CONVERSATIONS, MESSAGES);
+        jdbcTemplate.execute("ANALYZE");
+    }
+    
+    @Test
+    void messageQueriesUseIndexes() throws SQLException {
+        assertIndexed("messages", () -> messageRepository.findHistoryWindow(42L, 0, 49));
+        assertIndexed("messages", () -> messageRepository.findAllDTOs(42L));
+        assertIndexed("messages", () -> messageRepository.findAfterSeq(42L, 50L, PageRequest.of(0, 50)));
+        assertIndexed("messages", () -> messageRepository.countByConversationId(42L));
+        assertIndexed("messages", () -> messageRepository.countUnreadMessages(42L, 1L));
+        assertIndexed("messages", () -> messageRepository.countUnreadMessagesBySender(42L));
+        assertIndexed("messages", () -> messageRepository.markReadUpTo(42L, 1L, 50L));
+        assertIndexed("messages", () -> messageRepository.findSendersInRange(42L, 10L, 60L, PageRequest.of(0, 100)));
+        assertIndexed("messages", () -> messageRepository.findSenderIdBySeq(42L, 10L));
+        assertIndexed("messages", () -> messageRepository.findBySenderIdAndClientMessageId(1L, "client-42"));
+    }
+    
+    @Test
+    void participantQueriesUseIndexes() throws SQLException {
+        assertIndexed("participants", () -> participantRepository.findByUserId(42L));
+        assertIndexed("participants", () -> participantRepository.findByConversationId(42L));
+        assertIndexed("participants", () -> participantRepository.findByUserIdAndConversationId(42L, 6L));
+        assertIndexed("participants", () -> participantRepository.findOtherParticipants(42L, 1L));
+        assertIndexed("participants", () -> participantRepository.findOtherParticipantSummaries(42L, 1L));
+        assertIndexed("participants", () -> participantRepository.findMemberSummaries(42L));
+        assertIndexed("participants", () -> participantRepository.findReadWatermarks(42L));
+    }
+    
+    // Runs the call in a rolled-back transaction and plans every statement it sent against the table
+    private void assertIndexed(String table, Runnable call) throws SQLException {
+        RecordingInspector.statements.clear();
+        transactionTemplate.executeWithoutResult(status -> {
+            call.run();
+            status.setRollbackOnly();
+        });
+        
+        Pattern touchesTable = Pattern.compile("\\b(from|join|update)\\s+" + table + "\\b", Pattern.CASE_INSENSITIVE);
+        List<String> statements = RecordingInspector.statements.stream()
+            .filter(sql -> touchesTable.matcher(sql).find())
+            .toList();
+        assertFalse(statements.isEmpty(), "No statement against " + table + " was recorded");
+        
+        for (String sql : statements) {
+            String plan = explain(sql);
+            assertFalse(plan.contains("Seq Scan on " + table), () -> sql + "\n" + plan);
+            assertTrue(plan.contains("Index"), () -> sql + "\n" + plan);
+        }
+    }
+    
+    // Over the simple query protocol, as the extended one would try to bind the $n placeholders
+    private String explain(String sql) throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("user", username);
+        properties.setProperty("password", password);
+        properties.setProperty("preferQueryMode", "simple");
+        List<String> lines = new ArrayList<>();
+        try (Connection connection = DriverManager.getConnection(url, properties);
+             Statement statement = connection.createStatement();
+             ResultSet plan = statement.executeQuery("EXPLAIN (GENERIC_PLAN) " + positional(sql))) {
+            while (plan.next()) {
+                lines.add(plan.getString(1));
+            }
+        }
+        return String.join("\n", lines);
+    }
+    
+    // Hibernate's ? placeholders as $1, $2, ..., the form EXPLAIN (GENERIC_PLAN) accepts
+    private static String positional(String sql) {
+        Matcher matcher = PLACEHOLDER.matcher(sql);
+        StringBuilder result = new StringBuilder();
+        int index = 0;
+        while (matcher.find()) {
+            matcher.appendReplacement(result, "\\$" + (++index));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+    
+    public static class RecordingInspector implements StatementInspector {
+        
+        static final List<String> statements = new CopyOnWriteArrayList<>();
+        
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.messenger.app.repository;
+
+import com.messenger.app.dto.MessageDTO;
+import com.messenger.app.service.MessageService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * History pages counted back from the newest message. The conversation has seqs 1 to 7 from a
+ * live user and seq 8 from a user pending purge, which is left out of both the page and the
+ * offsets, so pages of three are 5-7, 2-4 and then just 1.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest
+class MessageHistoryWindowTest {
+    
+    @Container
+    static final PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:16-alpine");
+    
+    private static final long LIVE_USER_ID = 1001L;
+    private static final long PURGED_USER_ID = 1002L;
+    private static final long CONVERSATION_ID = 2001L;
+    private static final long EMPTY_CONVERSATION_ID = 2002L;
+    private static final int LIVE_MESSAGES = 7;
+    
+    @Autowired
+    private MessageRepository messageRepository;
+    
+    @Autowired
+    private MessageService messageService;
+    
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+    
+    @BeforeAll
+    static void seed(@Autowired JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("INSERT INTO users (id, username, email, password, created_at, deleted_at) " +
+            "VALUES (?, 'live', 'live@example.com', 'x', now(), NULL), " +
+            "(?, 'purged', 'purged@example.com', 'x', now(), now())", LIVE_USER_ID, PURGED_USER_ID);
+        jdbcTemplate.update("INSERT INTO conversations (id, conversation_name, is_group, created_at, updated_at) " +
+            "VALUES (?, 'history', true, now(), now()), (?, 'empty', true, now(), now())",
+            CONVERSATION_ID, EMPTY_CONVERSATION_ID);
+        jdbcTemplate.update("INSERT INTO messages (content, sender_id, conversation_id, is_read, seq, created_at) " +
+            "SELECT 'message ' || g, CASE WHEN g <= ? THEN ? ELSE ? END, ?, false, g, now() " +
+            "FROM generate_series(1, ?) g", LIVE_MESSAGES, LIVE_USER_ID, PURGED_USER_ID, CONVERSATION_ID, LIVE_MESSAGES + 1);
+    }
+    
+    @Test
+    void pagesStepBackFromTheNewestMessage() {
+        assertEquals(List.of(5L, 6L, 7L), seqs(messageRepository.findHistoryWindow(CONVERSATION_ID, 0, 2)));
+        assertEquals(List.of(2L, 3L, 4L), seqs(messageRepository.findHistoryWindow(CONVERSATION_ID, 3, 5)));
+    }
+    
+    @Test
+    void theLastPageHoldsWhateverIsLeft() {
+        assertEquals(List.of(1L), seqs(messageRepository.findHistoryWindow(CONVERSATION_ID, 6, 8)));
+    }
+    
+    @Test
+    void aPageThatEndsOnTheFirstMessageIsFullAndTheNextIsEmpty() {
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L),
+            seqs(messageRepository.findHistoryWindow(CONVERSATION_ID, 0, LIVE_MESSAGES - 1)));
+        assertEquals(List.of(), messageRepository.findHistoryWindow(CONVERSATION_ID, LIVE_MESSAGES, 2 * LIVE_MESSAGES - 1));
+    }
+    
+    @Test
+    void aPagePastTheEndIsEmpty() {
+        assertEquals(List.of(), messageRepository.findHistoryWindow(CONVERSATION_ID, 9, 11));
+    }
+    
+    @Test
+    void anEmptyConversationHasNoPages() {
+        assertEquals(List.of(), messageRepository.findHistoryWindow(EMPTY_CONVERSATION_ID, 0, 49));
+    }
+    
+    @Test
+    void aPageNumberTooLargeForTheOffsetsIsEmpty() {
+        assertEquals(List.of(), messageService.getMessageDTOPage(CONVERSATION_ID, Integer.MAX_VALUE, 50));
+        assertEquals(List.of(), messageService.getMessageDTOPage(CONVERSATION_ID, Integer.MAX_VALUE / 50, 50));
+    }
+    
+    private static List<Long> seqs(List<MessageDTO> messages) {
+        return messages.stream().map(MessageDTO::getSeq).toList();
+    }
+}
@@ -0,0 +1,149 @@
+package com.messenger.app.service;
+
+import com.messenger.app.model.Attachment;
+import com.messenger.app.repository.AttachmentRepository;
+import com.messenger.app.repository.ParticipantRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Chunk writes against a real file. The repository is a mock that keeps the upload's offset and
+ * status the way the conditional UPDATE in AttachmentRepository.advance does.
+ */
+class AttachmentServiceTest {
+    
+    private static final Long ATTACHMENT_ID = 1L;
+    private static final Long UPLOADER_ID = 2L;
+    private static final byte[] FILE = "0123456789".getBytes();
+    
+    @TempDir
+    Path directory;
+    
+    private final AttachmentRepository attachmentRepository = mock(AttachmentRepository.class);
+    private AttachmentService attachmentService;
+    private Attachment stored;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        attachmentService = new AttachmentService(attachmentRepository, mock(ParticipantRepository.class),
+            new SimpleMeterRegistry(), directory.toString(), 1024, 1024, 4, 60_000);
+        
+        stored = new Attachment(10L, UPLOADER_ID, "file.txt", "text/plain", FILE.length, "upload");
+        stored.setId(ATTACHMENT_ID);
+        Files.createFile(directory.resolve("upload"));
+        
+        // Each lookup returns a fresh copy, as a new persistence context would
+        when(attachmentRepository.findById(ATTACHMENT_ID)).thenAnswer(invocation -> Optional.of(copy(stored)));
+        when(attachmentRepository.findUploadingOffset(ATTACHMENT_ID)).thenAnswer(invocation ->
+            stored.getStatus() == Attachment.Status.UPLOADING ? Optional.of(stored.getReceivedBytes()) : Optional.empty());
+        when(attachmentRepository.advance(eq(ATTACHMENT_ID), anyLong(), anyLong(), any(), any())).thenAnswer(invocation -> {
+            long offset = invocation.getArgument(1);
+            if (stored.getStatus() != Attachment.Status.UPLOADING || stored.getReceivedBytes() != offset) {
+                return 0;
+            }
+            stored.setReceivedBytes(invocation.getArgument(2));
+            stored.setStatus(invocation.getArgument(3));
+            return 1;
+        });
+    }
+    
+    @Test
+    void anUploadResumesWhereTheLastGoodChunkEnded() throws IOException {
+        write(0, 4, sha256(0, 4));
+        // The connection drops three bytes into the second chunk
+        assertThrows(IllegalArgumentException.class, () -> attachmentService.writeChunk(
+            ATTACHMENT_ID, UPLOADER_ID, 4, 4, null, new ByteArrayInputStream(FILE, 4, 3)));
+        assertEquals(4, stored.getReceivedBytes());
+        assertEquals(4, Files.size(file()));
+        
+        // The client asks where the upload stands and carries on from there
+        long offset = attachmentService.findUpload(ATTACHMENT_ID, UPLOADER_ID).orElseThrow().getReceivedBytes();
+        write(offset, 4, sha256(4, 8));
+        Attachment complete = write(8, 2, sha256(8, 10));
+        
+        assertEquals(Attachment.Status.COMPLETE, complete.getStatus());
+        assertArrayEquals(FILE, Files.readAllBytes(file()));
+    }
+    
+    @Test
+    void aChunkWithTheWrongChecksumIsCutOff() throws IOException {
+        write(0, 4, null);
+        
+        assertThrows(IllegalArgumentException.class, () -> write(4, 4, sha256(0, 4)));
+        
+        assertEquals(4, stored.getReceivedBytes());
+        assertEquals(4, Files.size(file()));
+    }
+    
+    @Test
+    void aChunkAlreadyStoredByAnotherRequestIsNotWrittenAgain() throws IOException {
+        // This request read the upload before another one stored the first chunk
+        Attachment stale = copy(stored);
+        when(attachmentRepository.findById(ATTACHMENT_ID)).thenReturn(Optional.of(stale));
+        stored.setReceivedBytes(4);
+        Files.write(file(), Arrays.copyOfRange(FILE, 0, 4));
+        
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> attachmentService.writeChunk(
+            ATTACHMENT_ID, UPLOADER_ID, 0, 4, null, new ByteArrayInputStream("abcd".getBytes())));
+        
+        assertEquals("Upload is at offset 4", e.getMessage());
+        assertArrayEquals(Arrays.copyOfRange(FILE, 0, 4), Files.readAllBytes(file()));
+    }
+    
+    @Test
+    void aStaleOffsetIsRefused() throws IOException {
+        write(0, 4, null);
+        
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> write(0, 4, null));
+        
+        assertEquals("Upload is at offset 4", e.getMessage());
+        assertEquals(4, Files.size(file()));
+    }
+    
+    private Attachment write(long offset, int length, String sha256) throws IOException {
+        return attachmentService.writeChunk(ATTACHMENT_ID, UPLOADER_ID, offset, length, sha256,
+            new ByteArrayInputStream(FILE, (int) offset, length));
+    }
+    
+    private Path file() {
+        return directory.resolve("upload");
+    }
+    
+    private static String sha256(int from, int to) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(Arrays.copyOfRange(FILE, from, to)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static Attachment copy(Attachment attachment) {
+        Attachment copy = new Attachment(attachment.getConversationId(), attachment.getUploaderId(),
+            attachment.getFileName(), attachment.getContentType(), attachment.getSize(), attachment.getStorageKey());
+        copy.setId(attachment.getId());
+        copy.setReceivedBytes(attachment.getReceivedBytes());
+        copy.setStatus(attachment.getStatus());
+        return copy;
+    }
+}
@@ -0,0 +1,110 @@
+package com.messenger.app.service;
+
+import com.messenger.app.dto.MessageDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConversationMessageCacheTest {
+    
+    @Test
+    void appendsAMessageThatFollowsTheTail() {
+        ConversationMessageCache cache = cache(5, 10);
+        cache.populate(1L, messages(1, 3));
+        
+        cache.append(1L, message(4));
+        
+        assertEquals(Optional.of(List.of(1L, 2L, 3L, 4L)), seqs(cache.get(1L, 5)));
+    }
+    
+    @Test
+    void anAppendThatDoesNotFollowTheTailDropsTheEntry() {
+        ConversationMessageCache cache = cache(5, 10);
+        cache.populate(1L, messages(1, 3));
+        cache.populate(2L, messages(1, 3));
+        
+        // Seq 4 committed but its append has not run yet
+        cache.append(1L, message(5));
+        // Delivered twice
+        cache.append(2L, message(3));
+        
+        assertTrue(cache.get(1L, 1).isEmpty());
+        assertTrue(cache.get(2L, 1).isEmpty());
+    }
+    
+    @Test
+    void aFullEntryKeepsTheLatestMessages() {
+        ConversationMessageCache cache = cache(3, 10);
+        cache.populate(1L, messages(1, 3));
+        
+        cache.append(1L, message(4));
+        
+        assertEquals(Optional.of(List.of(2L, 3L, 4L)), seqs(cache.get(1L, 3)));
+    }
+    
+    @Test
+    void aConversationShorterThanThePageIsAnsweredInFull() {
+        ConversationMessageCache cache = cache(5, 10);
+        cache.populate(1L, messages(1, 2));
+        
+        assertEquals(Optional.of(List.of(1L, 2L)), seqs(cache.get(1L, 5)));
+        // Past the capacity the cache cannot answer at all
+        assertTrue(cache.get(1L, 6).isEmpty());
+    }
+    
+    @Test
+    void theLeastRecentlyReadConversationMakesWay() throws InterruptedException {
+        ConversationMessageCache cache = cache(5, 2);
+        cache.populate(1L, messages(1, 2));
+        Thread.sleep(5);
+        cache.populate(2L, messages(1, 2));
+        Thread.sleep(5);
+        // Conversation 1 is read again, so 2 is now the least recently read
+        cache.get(1L, 2);
+        Thread.sleep(5);
+        
+        cache.populate(3L, messages(1, 2));
+        
+        assertTrue(cache.get(1L, 2).isPresent());
+        assertTrue(cache.get(2L, 2).isEmpty());
+        assertTrue(cache.get(3L, 2).isPresent());
+    }
+    
+    @Test
+    void markReadUpdatesOnlyOtherSendersMessages() {
+        ConversationMessageCache cache = cache(5, 10);
+        cache.populate(1L, messages(1, 4));
+        
+        // Odd seqs were sent by user 1, even ones by user 2
+        cache.markRead(1L, 2L);
+        
+        List<MessageDTO> cached = cache.get(1L, 4).orElseThrow();
+        assertEquals(List.of(true, false, true, false), cached.stream().map(MessageDTO::getIsRead).toList());
+    }
+    
+    private static ConversationMessageCache cache(int capacity, int maxConversations) {
+        return new ConversationMessageCache(new SimpleMeterRegistry(), true, capacity, maxConversations, 60_000);
+    }
+    
+    static List<MessageDTO> messages(long fromSeq, long toSeq) {
+        return LongStream.rangeClosed(fromSeq, toSeq).mapToObj(ConversationMessageCacheTest::message).toList();
+    }
+    
+    static MessageDTO message(long seq) {
+        MessageDTO message = new MessageDTO(seq, "message " + seq, seq % 2 == 1 ? 1L : 2L,
+            "user", null, LocalDateTime.now(), false);
+        message.setSeq(seq);
+        return message;
+    }
+    
+    private static Optional<List<Long>> seqs(Optional<List<MessageDTO>> messages) {
+        return messages.map(list -> list.stream().map(MessageDTO::getSeq).toList());
+    }
+}
@@ -0,0 +1,85 @@
+package com.messenger.app.service;
+
+import com.messenger.app.dto.ChatMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConversationStreamBufferTest {
+    
+    @Test
+    void readsAcrossTheWrapAround() {
+        ConversationStreamBuffer.Ring ring = new ConversationStreamBuffer.Ring(4);
+        for (long seq = 1; seq <= 6; seq++) {
+            ring.add(message(seq));
+        }
+        
+        assertEquals(Optional.of(List.of(3L, 4L, 5L, 6L)), seqs(ring.after(2)));
+        assertEquals(Optional.of(List.of(5L, 6L)), seqs(ring.after(4)));
+        assertEquals(Optional.of(List.of()), seqs(ring.after(6)));
+    }
+    
+    @Test
+    void overwrittenMessagesSendTheCallerToTheDatabase() {
+        ConversationStreamBuffer.Ring ring = new ConversationStreamBuffer.Ring(4);
+        for (long seq = 1; seq <= 6; seq++) {
+            ring.add(message(seq));
+        }
+        
+        assertTrue(ring.after(1).isEmpty());
+        assertTrue(ring.after(0).isEmpty());
+    }
+    
+    @Test
+    void stopsBeforeAMessageNotBroadcastYet() {
+        ConversationStreamBuffer.Ring ring = new ConversationStreamBuffer.Ring(8);
+        ring.add(message(1));
+        ring.add(message(2));
+        ring.add(message(4));
+        
+        assertEquals(Optional.of(List.of(1L, 2L)), seqs(ring.after(0)));
+        // Whether seq 3 exists yet is unknown, so the buffer cannot answer from 3 on
+        assertTrue(ring.after(2).isEmpty());
+        
+        ring.add(message(3));
+        assertEquals(Optional.of(List.of(3L, 4L)), seqs(ring.after(2)));
+    }
+    
+    @Test
+    void aHoleLeftBehindByTheWrapAroundIsNotReadAsAnOlderMessage() {
+        ConversationStreamBuffer.Ring ring = new ConversationStreamBuffer.Ring(4);
+        ring.add(message(1));
+        ring.add(message(2));
+        // Slot of seq 5 still holds seq 1
+        ring.add(message(6));
+        
+        assertTrue(ring.after(4).isEmpty());
+        assertEquals(Optional.of(List.of(6L)), seqs(ring.after(5)));
+    }
+    
+    @Test
+    void ignoresMessagesOlderThanTheWindow() {
+        ConversationStreamBuffer.Ring ring = new ConversationStreamBuffer.Ring(4);
+        ring.add(message(9));
+        ring.add(message(5));
+        ring.add(message(6));
+        
+        assertEquals(Optional.of(List.of(6L)), seqs(ring.after(5)));
+        assertTrue(ring.after(4).isEmpty());
+    }
+    
+    private static ChatMessage message(long seq) {
+        ChatMessage message = new ChatMessage();
+        message.setConversationId(1L);
+        message.setSeq(seq);
+        return message;
+    }
+    
+    private static Optional<List<Long>> seqs(Optional<List<ChatMessage>> messages) {
+        return messages.map(list -> list.stream().map(ChatMessage::getSeq).toList());
+    }
+}
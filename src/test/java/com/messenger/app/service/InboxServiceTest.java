@@ -0,0 +1,123 @@
+package com.messenger.app.service;
+
+import com.messenger.app.dto.ChatMessage;
+import com.messenger.app.dto.ConversationSummary;
+import com.messenger.app.dto.InboxUpdate;
+import com.messenger.app.dto.UserSummary;
+import com.messenger.app.repository.ConversationRepository;
+import com.messenger.app.repository.MessageRepository;
+import com.messenger.app.repository.ParticipantRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class InboxServiceTest {
+    
+    private static final Long CONVERSATION_ID = 10L;
+    
+    @Mock
+    private ParticipantRepository participantRepository;
+    
+    @Mock
+    private MessageRepository messageRepository;
+    
+    @Mock
+    private ConversationRepository conversationRepository;
+    
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+    
+    @InjectMocks
+    private InboxService inboxService;
+    
+    @Test
+    void eachSideOfADirectChatSeesTheOtherMembersName() {
+        conversation("alice & bob", false);
+        members(user(1L, "alice"), user(2L, "bob"));
+        
+        inboxService.publishNewMessage(message(1L));
+        
+        assertEquals(List.of("bob", "alice"), sentNames(1L, 2L));
+    }
+    
+    @Test
+    void aDirectChatWithItsOtherMemberPendingPurgeKeepsItsStoredName() {
+        conversation("alice & bob", false);
+        members(user(1L, "alice"));
+        
+        inboxService.publishNewMessage(message(1L));
+        
+        assertEquals(List.of("alice & bob"), sentNames(1L));
+    }
+    
+    @Test
+    void everyMemberOfAGroupSeesTheGroupNameFromThreeQueries() {
+        conversation("team", true);
+        members(user(1L, "alice"), user(2L, "bob"), user(3L, "carol"));
+        
+        inboxService.publishNewMessage(message(1L));
+        
+        assertEquals(List.of("team", "team", "team"), sentNames(1L, 2L, 3L));
+        verify(conversationRepository, times(1)).findSummaryById(CONVERSATION_ID);
+        verify(participantRepository, times(1)).findMemberSummaries(CONVERSATION_ID);
+        verify(messageRepository, times(1)).countUnreadMessagesBySender(CONVERSATION_ID);
+    }
+    
+    private void conversation(String name, boolean group) {
+        ConversationSummary summary = mock(ConversationSummary.class);
+        when(summary.getIsGroup()).thenReturn(group);
+        // A direct chat only falls back to it when no other member is left to name it after
+        lenient().when(summary.getConversationName()).thenReturn(name);
+        when(conversationRepository.findSummaryById(CONVERSATION_ID)).thenReturn(Optional.of(summary));
+    }
+    
+    private void members(UserSummary... users) {
+        when(participantRepository.findMemberSummaries(CONVERSATION_ID)).thenReturn(List.of(users));
+    }
+    
+    private static UserSummary user(Long id, String username) {
+        UserSummary user = mock(UserSummary.class);
+        when(user.getId()).thenReturn(id);
+        // Group events never read member names
+        lenient().when(user.getUsername()).thenReturn(username);
+        return user;
+    }
+    
+    private static ChatMessage message(Long senderId) {
+        ChatMessage message = new ChatMessage();
+        message.setConversationId(CONVERSATION_ID);
+        message.setSenderId(senderId);
+        message.setContent("hello");
+        return message;
+    }
+    
+    // Conversation names pushed to each user, in the order given
+    private List<String> sentNames(Long... userIds) {
+        List<String> names = new ArrayList<>();
+        for (Long userId : userIds) {
+            ArgumentCaptor<InboxUpdate> update = ArgumentCaptor.forClass(InboxUpdate.class);
+            verify(messagingTemplate).convertAndSendToUser(eq(userId.toString()), eq(InboxService.INBOX_DESTINATION), update.capture());
+            names.add(update.getValue().getConversationName());
+        }
+        verify(messagingTemplate, times(userIds.length)).convertAndSendToUser(any(), any(), any(Object.class));
+        return names;
+    }
+}
@@ -0,0 +1,138 @@
+package com.messenger.app.service;
+
+import com.messenger.app.dto.ChatMessage;
+import com.messenger.app.dto.SendResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MessageDeduplicatorTest {
+    
+    @Test
+    void aRetryArrivingDuringTheOriginalSendWaitsForItsResult() throws Exception {
+        MessageService messageService = mock(MessageService.class);
+        MessageDeduplicator deduplicator = new MessageDeduplicator(messageService, new SimpleMeterRegistry(), 60_000, 1000);
+        
+        ChatMessage stored = new ChatMessage();
+        stored.setId(7L);
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(messageService.sendMessage(eq(1L), eq(2L), any(), eq("client-1"), any())).thenAnswer(invocation -> {
+            sending.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return stored;
+        });
+        
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<SendResult> original = executor.submit(() -> deduplicator.send(1L, 2L, "hello", "client-1", null));
+            assertTrue(sending.await(5, TimeUnit.SECONDS));
+            Future<SendResult> retry = executor.submit(() -> deduplicator.send(1L, 2L, "hello", "client-1", null));
+            release.countDown();
+            
+            SendResult first = original.get(5, TimeUnit.SECONDS);
+            SendResult second = retry.get(5, TimeUnit.SECONDS);
+            assertFalse(first.isDuplicate());
+            assertTrue(second.isDuplicate());
+            assertSame(stored, first.getMessage());
+            assertSame(stored, second.getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(messageService, times(1)).sendMessage(eq(1L), eq(2L), any(), eq("client-1"), any());
+    }
+    
+    @Test
+    void manyConcurrentRetriesStoreTheMessageOnce() throws Exception {
+        MessageService messageService = mock(MessageService.class);
+        MessageDeduplicator deduplicator = new MessageDeduplicator(messageService, new SimpleMeterRegistry(), 60_000, 1000);
+        ChatMessage stored = new ChatMessage();
+        when(messageService.sendMessage(eq(1L), eq(2L), any(), eq("client-1"), any())).thenReturn(stored);
+        
+        int senders = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(senders);
+        try {
+            List<Future<SendResult>> results = new ArrayList<>();
+            for (int i = 0; i < senders; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return deduplicator.send(1L, 2L, "hello", "client-1", null);
+                }));
+            }
+            start.countDown();
+            
+            int originals = 0;
+            for (Future<SendResult> result : results) {
+                SendResult sendResult = result.get(5, TimeUnit.SECONDS);
+                assertSame(stored, sendResult.getMessage());
+                originals += sendResult.isDuplicate() ? 0 : 1;
+            }
+            assertEquals(1, originals);
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(messageService, times(1)).sendMessage(eq(1L), eq(2L), any(), eq("client-1"), any());
+        verify(messageService, never()).findByClientMessageId(any(), any());
+    }
+    
+    @Test
+    void aClientIdReusedInAnotherConversationIsRejectedNotAnsweredWithTheFirstMessage() {
+        MessageService messageService = mock(MessageService.class);
+        MessageDeduplicator deduplicator = new MessageDeduplicator(messageService, new SimpleMeterRegistry(), 60_000, 1000);
+        ChatMessage stored = new ChatMessage();
+        stored.setConversationId(2L);
+        when(messageService.sendMessage(eq(1L), eq(2L), any(), eq("client-1"), any())).thenReturn(stored);
+        // The (sender_id, client_message_id) constraint refuses the second insert
+        when(messageService.sendMessage(eq(1L), eq(3L), any(), eq("client-1"), any()))
+            .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(messageService.findByClientMessageId(1L, "client-1")).thenReturn(Optional.of(stored));
+        
+        deduplicator.send(1L, 2L, "hello", "client-1", null);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> deduplicator.send(1L, 3L, "hello", "client-1", null));
+        
+        assertEquals("clientMessageId was already used in another conversation", e.getMessage());
+        // A retry to the original conversation is still answered from memory
+        assertSame(stored, deduplicator.send(1L, 2L, "hello", "client-1", null).getMessage());
+        verify(messageService, times(1)).sendMessage(eq(1L), eq(2L), any(), eq("client-1"), any());
+    }
+    
+    @Test
+    void aRetryAfterTheWindowIsAnsweredFromTheDatabaseForTheSameConversation() {
+        MessageService messageService = mock(MessageService.class);
+        MessageDeduplicator deduplicator = new MessageDeduplicator(messageService, new SimpleMeterRegistry(), 60_000, 1000);
+        ChatMessage stored = new ChatMessage();
+        stored.setConversationId(2L);
+        when(messageService.sendMessage(eq(1L), eq(2L), any(), eq("client-1"), any()))
+            .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(messageService.findByClientMessageId(1L, "client-1")).thenReturn(Optional.of(stored));
+        
+        SendResult result = deduplicator.send(1L, 2L, "hello", "client-1", null);
+        
+        assertTrue(result.isDuplicate());
+        assertSame(stored, result.getMessage());
+    }
+}
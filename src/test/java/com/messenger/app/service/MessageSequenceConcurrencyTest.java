@@ -0,0 +1,184 @@
+package com.messenger.app.service;
+
+import com.messenger.app.dto.ChatMessage;
+import com.messenger.app.repository.ConversationRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Concurrent sends to one conversation. Seqs come from a counter row that stays locked until the
+ * send commits, so they must be handed out without gaps, commit in order, and not hold up the
+ * writes other code makes to the conversation row.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest
+class MessageSequenceConcurrencyTest {
+    
+    @Container
+    static final PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:16-alpine");
+    
+    private static final int SENDERS = 8;
+    private static final int SENDS_PER_SENDER = 50;
+    private static final long FIRST_SENDER_ID = 1001L;
+    private static final long BUSY_CONVERSATION_ID = 2001L;
+    private static final long QUIET_CONVERSATION_ID = 2002L;
+    
+    // Sends to one conversation commit one at a time; 400 take about ten seconds on a laptop
+    // alongside the watcher and flusher below, so this leaves room for a slow CI machine
+    private static final Duration MAX_SEND_TIME = Duration.ofSeconds(60);
+    
+    @Autowired
+    private MessageService messageService;
+    
+    @Autowired
+    private ConversationRepository conversationRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+    
+    @BeforeAll
+    static void seed(@Autowired JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("INSERT INTO users (id, username, email, password, created_at) " +
+            "SELECT g, 'sender' || g, 'sender' || g || '@example.com', 'x', now() " +
+            "FROM generate_series(?, ?) g", FIRST_SENDER_ID, FIRST_SENDER_ID + SENDERS - 1);
+        jdbcTemplate.update("INSERT INTO conversations (id, conversation_name, is_group, created_at, updated_at) " +
+            "VALUES (?, 'busy', true, now(), now()), (?, 'quiet', true, now(), now())",
+            BUSY_CONVERSATION_ID, QUIET_CONVERSATION_ID);
+        jdbcTemplate.update("INSERT INTO participants (user_id, conversation_id, joined_at, last_read_seq) " +
+            "SELECT u, c, now(), 0 FROM generate_series(?, ?) u, unnest(ARRAY[?, ?]::bigint[]) c",
+            FIRST_SENDER_ID, FIRST_SENDER_ID + SENDERS - 1, BUSY_CONVERSATION_ID, QUIET_CONVERSATION_ID);
+    }
+    
+    @Test
+    void concurrentSendsGetGaplessSeqsThatCommitInOrder() throws Exception {
+        AtomicBoolean sending = new AtomicBoolean(true);
+        AtomicInteger gapsSeen = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(SENDERS + 2);
+        try {
+            // A later seq committing before an earlier one shows up as fewer messages than the top seq
+            Future<?> watcher = executor.submit(() -> {
+                while (sending.get()) {
+                    Map<String, Object> row = jdbcTemplate.queryForMap(
+                        "SELECT COUNT(*) AS committed, COALESCE(MAX(seq), 0) AS top FROM messages WHERE conversation_id = ?",
+                        BUSY_CONVERSATION_ID);
+                    if (((Number) row.get("committed")).longValue() != ((Number) row.get("top")).longValue()) {
+                        gapsSeen.incrementAndGet();
+                    }
+                }
+            });
+            // The activity flush writes the conversation row throughout
+            Future<?> flusher = executor.submit(() -> {
+                while (sending.get()) {
+                    conversationRepository.updateActivity(Map.of(BUSY_CONVERSATION_ID, LocalDateTime.now()));
+                }
+            });
+            
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<Long>>> senders = new ArrayList<>();
+            for (int i = 0; i < SENDERS; i++) {
+                long senderId = FIRST_SENDER_ID + i;
+                senders.add(executor.submit(() -> {
+                    start.await();
+                    List<Long> seqs = new ArrayList<>();
+                    for (int n = 0; n < SENDS_PER_SENDER; n++) {
+                        ChatMessage sent = messageService.sendMessage(senderId, BUSY_CONVERSATION_ID,
+                            "message " + n, "client-" + senderId + "-" + n);
+                        seqs.add(sent.getSeq());
+                    }
+                    return seqs;
+                }));
+            }
+            
+            long started = System.nanoTime();
+            start.countDown();
+            for (Future<List<Long>> sender : senders) {
+                List<Long> seqs = sender.get(MAX_SEND_TIME.toSeconds(), TimeUnit.SECONDS);
+                // Each sender's messages are numbered in the order it sent them
+                assertEquals(seqs.stream().sorted().toList(), seqs);
+            }
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - started);
+            sending.set(false);
+            watcher.get(5, TimeUnit.SECONDS);
+            flusher.get(5, TimeUnit.SECONDS);
+            
+            assertTrue(elapsed.compareTo(MAX_SEND_TIME) < 0, "sends took " + elapsed);
+            assertEquals(0, gapsSeen.get());
+        } finally {
+            sending.set(false);
+            executor.shutdownNow();
+        }
+        
+        int total = SENDERS * SENDS_PER_SENDER;
+        assertEquals(LongStream.rangeClosed(1, total).boxed().toList(), jdbcTemplate.queryForList(
+            "SELECT seq FROM messages WHERE conversation_id = ? ORDER BY seq", Long.class, BUSY_CONVERSATION_ID));
+        assertEquals(total, conversationRepository.findLastSeqById(BUSY_CONVERSATION_ID).orElseThrow());
+    }
+    
+    @Test
+    void aSendWaitingToCommitDoesNotBlockWritesToTheConversation() throws Exception {
+        CountDownLatch numbered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // Holds the counter row lock, as a send does between numbering and commit
+            Future<Long> send = executor.submit(() -> transactionTemplate.execute(status -> {
+                long seq = conversationRepository.nextSequence(QUIET_CONVERSATION_ID);
+                numbered.countDown();
+                try {
+                    release.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return seq;
+            }));
+            assertTrue(numbered.await(10, TimeUnit.SECONDS));
+            
+            executor.submit(() -> conversationRepository.updateActivity(
+                Map.of(QUIET_CONVERSATION_ID, LocalDateTime.now()))).get(5, TimeUnit.SECONDS);
+            assertEquals(1, executor.submit(() -> transactionTemplate.execute(status -> conversationRepository.markDeleted(
+                QUIET_CONVERSATION_ID, LocalDateTime.now()))).get(5, TimeUnit.SECONDS));
+            
+            release.countDown();
+            assertEquals(1L, send.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.messenger.app.service;
+
+import com.messenger.app.dto.UserSummary;
+import com.messenger.app.model.Attachment;
+import com.messenger.app.repository.AttachmentRepository;
+import com.messenger.app.repository.ConversationRepository;
+import com.messenger.app.repository.MessageRepository;
+import com.messenger.app.repository.UserRepository;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Sending an upload that another message already carries. The second sender gets the same
+ * answer whether the first send was committed before the check or raced past it to the index.
+ */
+@ExtendWith(MockitoExtension.class)
+class MessageServiceAttachmentTest {
+    
+    private static final Long SENDER_ID = 1L;
+    private static final Long CONVERSATION_ID = 10L;
+    private static final Long ATTACHMENT_ID = 100L;
+    
+    @Mock
+    private MessageRepository messageRepository;
+    
+    @Mock
+    private ConversationRepository conversationRepository;
+    
+    @Mock
+    private UserRepository userRepository;
+    
+    @Mock
+    private AttachmentRepository attachmentRepository;
+    
+    @Mock
+    private OutboxService outboxService;
+    
+    @InjectMocks
+    private MessageService messageService;
+    
+    @BeforeEach
+    void setUp() {
+        when(userRepository.findSummaryById(SENDER_ID)).thenReturn(Optional.of(mock(UserSummary.class)));
+        Attachment attachment = new Attachment(CONVERSATION_ID, SENDER_ID, "photo.jpg", "image/jpeg", 3, "key");
+        attachment.setId(ATTACHMENT_ID);
+        attachment.setStatus(Attachment.Status.COMPLETE);
+        when(attachmentRepository.findById(ATTACHMENT_ID)).thenReturn(Optional.of(attachment));
+    }
+    
+    @Test
+    void anAttachmentAlreadySentIsNotAvailable() {
+        when(messageRepository.existsByAttachmentId(ATTACHMENT_ID)).thenReturn(true);
+        
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, this::send);
+        
+        assertEquals("Attachment is not available", e.getMessage());
+        verify(messageRepository, never()).save(any());
+    }
+    
+    @Test
+    void aConcurrentClaimCaughtByTheIndexIsNotAvailable() {
+        when(messageRepository.save(any())).thenThrow(violation("uk_messages_attachment"));
+        
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, this::send);
+        
+        assertEquals("Attachment is not available", e.getMessage());
+        verify(outboxService, never()).enqueue(any(), any(), any());
+    }
+    
+    @Test
+    void anyOtherViolationIsLeftAlone() {
+        DataIntegrityViolationException violation = violation("uk_messages_sender_client_id");
+        when(messageRepository.save(any())).thenThrow(violation);
+        
+        assertSame(violation, assertThrows(DataIntegrityViolationException.class, this::send));
+    }
+    
+    private void send() {
+        messageService.sendMessage(SENDER_ID, CONVERSATION_ID, "", null, ATTACHMENT_ID);
+    }
+    
+    // As Spring translates a unique violation raised by Hibernate
+    private static DataIntegrityViolationException violation(String constraint) {
+        return new DataIntegrityViolationException("could not execute statement",
+            new ConstraintViolationException("duplicate key value", null, constraint));
+    }
+}
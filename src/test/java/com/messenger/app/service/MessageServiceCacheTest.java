@@ -0,0 +1,126 @@
+package com.messenger.app.service;
+
+import com.messenger.app.dto.MessageDTO;
+import com.messenger.app.model.Conversation;
+import com.messenger.app.model.Message;
+import com.messenger.app.repository.ConversationRepository;
+import com.messenger.app.repository.MessageRepository;
+import com.messenger.app.repository.ParticipantRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * How MessageService keeps the hot-conversation cache in step with reads and read marks.
+ * Outside a transaction its after-commit work runs at once.
+ */
+@ExtendWith(MockitoExtension.class)
+class MessageServiceCacheTest {
+    
+    private static final Long CONVERSATION_ID = 1L;
+    private static final int CAPACITY = 5;
+    
+    @Mock
+    private MessageRepository messageRepository;
+    
+    @Mock
+    private ConversationRepository conversationRepository;
+    
+    @Mock
+    private ParticipantRepository participantRepository;
+    
+    @Mock
+    private ReadWatermarkService readWatermarkService;
+    
+    @Mock
+    private OutboxService outboxService;
+    
+    @Spy
+    private ConversationMessageCache messageCache =
+        new ConversationMessageCache(new SimpleMeterRegistry(), true, CAPACITY, 10, 60_000);
+    
+    @InjectMocks
+    private MessageService messageService;
+    
+    @Test
+    void theSecondLoadIsServedFromTheCache() {
+        when(messageRepository.findHistoryWindow(CONVERSATION_ID, 0, CAPACITY - 1))
+            .thenReturn(ConversationMessageCacheTest.messages(1, 4));
+        
+        assertEquals(List.of(3L, 4L), seqs(messageService.getLatestMessageDTOs(CONVERSATION_ID, 2)));
+        assertEquals(List.of(1L, 2L, 3L, 4L), seqs(messageService.getLatestMessageDTOs(CONVERSATION_ID, CAPACITY)));
+        
+        verify(messageRepository, times(1)).findHistoryWindow(CONVERSATION_ID, 0, CAPACITY - 1);
+    }
+    
+    @Test
+    void markingOneMessageReadInvalidatesTheConversation() {
+        when(messageRepository.findHistoryWindow(CONVERSATION_ID, 0, CAPACITY - 1))
+            .thenReturn(ConversationMessageCacheTest.messages(1, 4));
+        messageService.getLatestMessageDTOs(CONVERSATION_ID, CAPACITY);
+        
+        Conversation conversation = new Conversation();
+        conversation.setId(CONVERSATION_ID);
+        Message message = new Message();
+        message.setId(2L);
+        message.setConversation(conversation);
+        when(messageRepository.findById(2L)).thenReturn(Optional.of(message));
+        messageService.markAsRead(2L);
+        
+        messageService.getLatestMessageDTOs(CONVERSATION_ID, CAPACITY);
+        verify(messageRepository, times(2)).findHistoryWindow(CONVERSATION_ID, 0, CAPACITY - 1);
+    }
+    
+    @Test
+    void markingAGroupReadUpdatesTheCachedCopies() {
+        when(messageRepository.findHistoryWindow(CONVERSATION_ID, 0, CAPACITY - 1))
+            .thenReturn(ConversationMessageCacheTest.messages(1, 4));
+        messageService.getLatestMessageDTOs(CONVERSATION_ID, CAPACITY);
+        
+        when(conversationRepository.findLastSeqById(CONVERSATION_ID)).thenReturn(Optional.of(4L));
+        when(participantRepository.advanceReadWatermark(CONVERSATION_ID, 2L, 4L)).thenReturn(0L);
+        when(readWatermarkService.isGroup(CONVERSATION_ID)).thenReturn(true);
+        when(messageRepository.markReadUpTo(CONVERSATION_ID, 2L, 4L)).thenReturn(2);
+        messageService.markConversationAsRead(CONVERSATION_ID, 2L);
+        
+        // Served from the updated cache: user 1's messages (odd seqs) are now read
+        List<MessageDTO> latest = messageService.getLatestMessageDTOs(CONVERSATION_ID, CAPACITY);
+        assertEquals(List.of(true, false, true, false), latest.stream().map(MessageDTO::getIsRead).toList());
+        verify(messageRepository, times(1)).findHistoryWindow(CONVERSATION_ID, 0, CAPACITY - 1);
+    }
+    
+    @Test
+    void markingADirectConversationReadUpdatesTheCachedCopies() {
+        when(messageRepository.findHistoryWindow(CONVERSATION_ID, 0, CAPACITY - 1))
+            .thenReturn(ConversationMessageCacheTest.messages(1, 4));
+        messageService.getLatestMessageDTOs(CONVERSATION_ID, CAPACITY);
+        
+        when(conversationRepository.findLastSeqById(CONVERSATION_ID)).thenReturn(Optional.of(4L));
+        when(participantRepository.advanceReadWatermark(any(), any(), anyLong())).thenReturn(0L);
+        when(readWatermarkService.isGroup(CONVERSATION_ID)).thenReturn(false);
+        when(messageRepository.findByConversationIdOrderByCreatedAtAsc(CONVERSATION_ID)).thenReturn(List.of());
+        messageService.markConversationAsRead(CONVERSATION_ID, 1L);
+        
+        List<MessageDTO> latest = messageService.getLatestMessageDTOs(CONVERSATION_ID, CAPACITY);
+        assertEquals(List.of(false, true, false, true), latest.stream().map(MessageDTO::getIsRead).toList());
+        verify(messageRepository, times(1)).findHistoryWindow(CONVERSATION_ID, 0, CAPACITY - 1);
+    }
+    
+    private static List<Long> seqs(List<MessageDTO> messages) {
+        return messages.stream().map(MessageDTO::getSeq).toList();
+    }
+}
@@ -0,0 +1,232 @@
+package com.messenger.app.service;
+
+import com.messenger.app.dto.ChatMessage;
+import com.messenger.app.model.OutboxEvent;
+import com.messenger.app.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.postgresql.PostgreSQLContainer;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Outbox delivery against a real database. The scheduled poller is pushed out of the way and
+ * pollDue is called by hand, so each retry happens exactly when the test asks for it.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(properties = {
+    "messenger.outbox.poll-interval-ms=3600000",
+    "messenger.outbox.max-attempts=3",
+    "messenger.outbox.retry-backoff-ms=1",
+    "messenger.outbox.lease-ms=60000"
+})
+class OutboxDeliveryTest {
+    
+    @Container
+    static final PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:16-alpine");
+    
+    private static final long CONVERSATION_ID = 2001L;
+    
+    @MockitoBean
+    private ConversationBroadcaster conversationBroadcaster;
+    
+    @MockitoBean
+    private InboxService inboxService;
+    
+    @Autowired
+    private OutboxService outboxService;
+    
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+    
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+    
+    @AfterEach
+    void clear() {
+        jdbcTemplate.update("DELETE FROM outbox_events");
+        reset(conversationBroadcaster, inboxService);
+    }
+    
+    @Test
+    void aRolledBackTransactionSendsNothing() {
+        transactionTemplate.executeWithoutResult(status -> {
+            outboxService.enqueue(OutboxEvent.Type.CHAT_MESSAGE, CONVERSATION_ID, message(1L));
+            status.setRollbackOnly();
+        });
+        outboxDispatcher.pollDue();
+        
+        verify(conversationBroadcaster, after(500).never()).publish(any());
+        assertEquals(0, countEvents());
+    }
+    
+    @Test
+    void aCommittedEventIsDeliveredOnceAndDeleted() {
+        transactionTemplate.executeWithoutResult(status ->
+            outboxService.enqueue(OutboxEvent.Type.CHAT_MESSAGE, CONVERSATION_ID, message(2L)));
+        
+        verify(conversationBroadcaster, timeout(5000)).publish(argThat(message -> message.getId() == 2L));
+        awaitEvents(0);
+        // Nothing left for the poller to send again
+        outboxDispatcher.pollDue();
+        verify(conversationBroadcaster, after(500).times(1)).publish(any());
+        verify(inboxService, times(1)).publishNewMessage(argThat(message -> message.getId() == 2L));
+    }
+    
+    @Test
+    void aFailingEventIsRetriedThenDroppedAfterMaxAttempts() throws InterruptedException {
+        doThrow(new IllegalStateException("broker down")).when(conversationBroadcaster).publish(any());
+        double droppedBefore = meterRegistry.counter("messenger.outbox.dropped").count();
+        
+        transactionTemplate.executeWithoutResult(status ->
+            outboxService.enqueue(OutboxEvent.Type.CHAT_MESSAGE, CONVERSATION_ID, message(3L)));
+        verify(conversationBroadcaster, timeout(5000).times(1)).publish(any());
+        awaitAttempts(1);
+        
+        // Each poll claims the event again once its backoff has passed, until max-attempts
+        for (int attempt = 2; attempt <= 3; attempt++) {
+            Thread.sleep(50);
+            outboxDispatcher.pollDue();
+            verify(conversationBroadcaster, timeout(5000).times(attempt)).publish(any());
+            awaitAttempts(attempt);
+        }
+        Thread.sleep(50);
+        outboxDispatcher.pollDue();
+        
+        assertEquals(0, countEvents());
+        assertEquals(droppedBefore + 1, meterRegistry.counter("messenger.outbox.dropped").count());
+        verify(conversationBroadcaster, after(500).times(3)).publish(any());
+        verify(inboxService, never()).publishNewMessage(any());
+    }
+    
+    @Test
+    void concurrentClaimsSkipRowsLockedByAnotherPoller() throws Exception {
+        LocalDateTime due = LocalDateTime.now().minusSeconds(1);
+        for (int i = 0; i < 10; i++) {
+            outboxEventRepository.save(new OutboxEvent(OutboxEvent.Type.READ_RECEIPTS, CONVERSATION_ID, "[]", due, due));
+        }
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM outbox_events ORDER BY id", Long.class);
+        List<Long> locked = ids.subList(0, 5);
+        
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // Another poller part way through its claim of the first five rows
+            Future<?> otherPoller = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.queryForList("SELECT id FROM outbox_events WHERE id <= ? FOR UPDATE",
+                    Long.class, locked.get(locked.size() - 1));
+                holding.countDown();
+                try {
+                    release.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(holding.await(10, TimeUnit.SECONDS));
+            
+            LocalDateTime now = LocalDateTime.now();
+            // Returns at once with the unlocked rows instead of waiting for the other poller
+            List<Long> claimed = executor.submit(() -> claimedIds(now)).get(5, TimeUnit.SECONDS);
+            assertEquals(ids.subList(5, 10), claimed);
+            
+            release.countDown();
+            otherPoller.get(5, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+        
+        // Once released, the skipped rows are still due; the claimed ones are leased
+        assertEquals(locked, claimedIds(LocalDateTime.now()));
+    }
+    
+    private static ChatMessage message(long id) {
+        ChatMessage message = new ChatMessage();
+        message.setId(id);
+        message.setConversationId(CONVERSATION_ID);
+        message.setContent("hello");
+        message.setSeq(id);
+        return message;
+    }
+    
+    private List<Long> claimedIds(LocalDateTime now) {
+        return outboxEventRepository.claimDue(now, now.plusMinutes(1), 100).stream()
+            .map(OutboxEvent::getId)
+            .toList();
+    }
+    
+    private long countEvents() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox_events", Long.class);
+    }
+    
+    private void awaitEvents(long expected) {
+        awaitUntil(() -> countEvents() == expected, "outbox rows: " + expected);
+    }
+    
+    // The failure is recorded just after the handler throws, on the dispatch thread
+    private void awaitAttempts(int expected) {
+        awaitUntil(() -> expected == jdbcTemplate.queryForObject(
+            "SELECT COALESCE(MAX(attempts), 0) FROM outbox_events", Integer.class), "attempts: " + expected);
+    }
+    
+    private static void awaitUntil(BooleanSupplier condition, String description) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Timed out waiting for " + description);
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
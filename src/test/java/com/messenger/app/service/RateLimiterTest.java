@@ -0,0 +1,76 @@
+package com.messenger.app.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTest {
+    
+    @Test
+    void aFullBucketAllowsExactlyTheBurst() {
+        RateLimiter limiter = limiter(1, 5, 1000, 1000);
+        
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(RateLimiter.Limit.USER_SEND, 1L, "test"), "send " + i);
+        }
+        assertFalse(limiter.tryAcquire(RateLimiter.Limit.USER_SEND, 1L, "test"));
+        // Other keys have their own buckets
+        assertTrue(limiter.tryAcquire(RateLimiter.Limit.USER_SEND, 2L, "test"));
+    }
+    
+    @Test
+    void anExhaustedBucketRefillsAtTheRate() throws InterruptedException {
+        // One token every 50ms
+        RateLimiter limiter = limiter(20, 2, 1000, 1000);
+        assertTrue(limiter.tryAcquire(RateLimiter.Limit.USER_SEND, 1L, "test"));
+        assertTrue(limiter.tryAcquire(RateLimiter.Limit.USER_SEND, 1L, "test"));
+        assertFalse(limiter.tryAcquire(RateLimiter.Limit.USER_SEND, 1L, "test"));
+        
+        Thread.sleep(60);
+        
+        assertTrue(limiter.tryAcquire(RateLimiter.Limit.USER_SEND, 1L, "test"));
+    }
+    
+    @Test
+    void aSendRefusedByTheConversationKeepsTheSendersToken() {
+        RateLimiter limiter = limiter(1, 2, 1, 1);
+        
+        assertNull(limiter.tryAcquireSend(1L, 10L, "test"));
+        assertEquals(RateLimiter.Limit.CONVERSATION_SEND, limiter.tryAcquireSend(1L, 10L, "test"));
+        // The refused send did not count against the sender's burst of two
+        assertNull(limiter.tryAcquireSend(1L, 20L, "test"));
+        assertEquals(RateLimiter.Limit.USER_SEND, limiter.tryAcquireSend(1L, 30L, "test"));
+    }
+    
+    @Test
+    void typingDrawsOnItsOwnBucket() {
+        RateLimiter limiter = new RateLimiter(new SimpleMeterRegistry(), true, 1000, 1, 1, 1, 1, 1, 1, 1, 2);
+        
+        assertTrue(limiter.tryAcquire(RateLimiter.Limit.USER_TYPING, 1L, "stomp"));
+        assertTrue(limiter.tryAcquire(RateLimiter.Limit.USER_TYPING, 1L, "stomp"));
+        assertFalse(limiter.tryAcquire(RateLimiter.Limit.USER_TYPING, 1L, "stomp"));
+        // Typing does not use up the sender's message tokens
+        assertNull(limiter.tryAcquireSend(1L, 10L, "stomp"));
+    }
+    
+    @Test
+    void throttledCallsAreCounted() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RateLimiter limiter = new RateLimiter(registry, true, 1000, 1, 1, 1, 1, 1, 1, 1, 1);
+        
+        limiter.tryAcquireRead(1L, "stomp");
+        assertEquals(RateLimiter.Limit.USER_READ, limiter.tryAcquireRead(1L, "stomp"));
+        
+        assertEquals(1.0, registry.counter("messenger.ratelimit.throttled",
+            "limit", "user-read", "transport", "stomp").count());
+    }
+    
+    private static RateLimiter limiter(double userRate, int userBurst, double conversationRate, int conversationBurst) {
+        return new RateLimiter(new SimpleMeterRegistry(), true, 1000,
+            userRate, userBurst, conversationRate, conversationBurst, 1, 1, 1, 1);
+    }
+}
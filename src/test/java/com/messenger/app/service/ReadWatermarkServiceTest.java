@@ -0,0 +1,92 @@
+package com.messenger.app.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Keeping the sorted watermark array in order as members read. Counts are checked at every
+ * seq up to the highest watermark, so a value left out of order shows up as a wrong count.
+ */
+class ReadWatermarkServiceTest {
+    
+    // Not a member, so no sender is subtracted from the counts
+    private static final Long NO_SENDER = -1L;
+    
+    @Test
+    void advancingTheLowestWatermarkKeepsTheArraySorted() {
+        ReadWatermarkService.Entry entry = entry(Map.of(1L, 2L, 2L, 5L, 3L, 8L));
+        
+        entry.advance(1L, 6L);
+        
+        assertCounts(entry, Map.of(1L, 6L, 2L, 5L, 3L, 8L));
+    }
+    
+    @Test
+    void advancingTheHighestWatermarkKeepsTheArraySorted() {
+        ReadWatermarkService.Entry entry = entry(Map.of(1L, 2L, 2L, 5L, 3L, 8L));
+        
+        entry.advance(3L, 20L);
+        
+        assertCounts(entry, Map.of(1L, 2L, 2L, 5L, 3L, 20L));
+    }
+    
+    @Test
+    void advancingTheLowestWatermarkPastAllOthers() {
+        ReadWatermarkService.Entry entry = entry(Map.of(1L, 2L, 2L, 5L, 3L, 8L));
+        
+        entry.advance(1L, 10L);
+        
+        assertCounts(entry, Map.of(1L, 10L, 2L, 5L, 3L, 8L));
+    }
+    
+    @Test
+    void advancingOneOfSeveralEqualWatermarks() {
+        ReadWatermarkService.Entry entry = entry(Map.of(1L, 3L, 2L, 3L, 3L, 3L, 4L, 7L));
+        
+        entry.advance(2L, 5L);
+        assertCounts(entry, Map.of(1L, 3L, 2L, 5L, 3L, 3L, 4L, 7L));
+        
+        // Onto a value another member already holds
+        entry.advance(3L, 7L);
+        assertCounts(entry, Map.of(1L, 3L, 2L, 5L, 3L, 7L, 4L, 7L));
+    }
+    
+    @Test
+    void staleAndUnknownMovesAreIgnored() {
+        ReadWatermarkService.Entry entry = entry(Map.of(1L, 4L, 2L, 6L));
+        
+        entry.advance(2L, 6L);
+        entry.advance(2L, 3L);
+        entry.advance(99L, 10L);
+        
+        assertCounts(entry, Map.of(1L, 4L, 2L, 6L));
+        assertEquals(2, entry.size());
+    }
+    
+    @Test
+    void theSenderIsNotCountedAsAReader() {
+        ReadWatermarkService.Entry entry = entry(Map.of(1L, 5L, 2L, 5L, 3L, 2L));
+        
+        assertEquals(1, entry.seenBy(4L, 1L));
+        assertEquals(2, entry.seenBy(2L, 1L));
+        assertEquals(List.of(2L), entry.readers(4L, 1L, 10));
+    }
+    
+    private static ReadWatermarkService.Entry entry(Map<Long, Long> watermarks) {
+        return new ReadWatermarkService.Entry(true, new LinkedHashMap<>(watermarks));
+    }
+    
+    private static void assertCounts(ReadWatermarkService.Entry entry, Map<Long, Long> expected) {
+        long highest = expected.values().stream().mapToLong(Long::longValue).max().orElse(0);
+        for (long seq = 0; seq <= highest + 1; seq++) {
+            long atSeq = seq;
+            long readers = expected.values().stream().filter(watermark -> watermark >= atSeq).count();
+            assertEquals(readers, entry.seenBy(seq, NO_SENDER), "seen by at seq " + seq);
+        }
+    }
+}
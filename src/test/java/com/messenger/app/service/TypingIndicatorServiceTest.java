@@ -0,0 +1,69 @@
+package com.messenger.app.service;
+
+import com.messenger.app.model.Participant;
+import com.messenger.app.repository.ParticipantRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TypingIndicatorServiceTest {
+    
+    private final ParticipantRepository participantRepository = mock(ParticipantRepository.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final TypingIndicatorService service = new TypingIndicatorService(
+        mock(SimpMessagingTemplate.class), participantRepository, registry, 60_000, 60_000, 3, 60_000);
+    
+    @Test
+    void aThrottledRepeatIsDroppedBeforeTheMembershipLookup() {
+        member(1L, 10L);
+        
+        service.update("session", 10L, 1L, "alice", true);
+        // A new session has nothing cached, so only the throttle can spare the lookup
+        service.update("other-session", 10L, 1L, "alice", true);
+        
+        verify(participantRepository, times(1)).findByUserIdAndConversationId(any(), any());
+        assertEquals(1.0, registry.counter("messenger.typing.throttled").count());
+    }
+    
+    @Test
+    void aRejectedMembershipIsCachedForTheSession() {
+        when(participantRepository.findByUserIdAndConversationId(1L, 10L)).thenReturn(Optional.empty());
+        
+        service.update("session", 10L, 1L, "alice", true);
+        service.update("session", 10L, 1L, "alice", true);
+        
+        verify(participantRepository, times(1)).findByUserIdAndConversationId(1L, 10L);
+        assertEquals(2.0, registry.counter("messenger.typing.rejected").count());
+    }
+    
+    @Test
+    void probingManyConversationsEvictsTheLeastRecentlyUsed() {
+        when(participantRepository.findByUserIdAndConversationId(eq(1L), any())).thenReturn(Optional.empty());
+        
+        // Conversation 0 first, then enough others to fill the session's cache
+        for (long conversationId = 0; conversationId <= 256; conversationId++) {
+            service.update("session", conversationId, 1L, "alice", true);
+        }
+        service.update("session", 256L, 1L, "alice", true);
+        service.update("session", 0L, 1L, "alice", true);
+        
+        // 256 was still cached; 0 had been evicted and is looked up again
+        verify(participantRepository, times(1)).findByUserIdAndConversationId(1L, 256L);
+        verify(participantRepository, times(2)).findByUserIdAndConversationId(1L, 0L);
+    }
+    
+    private void member(Long userId, Long conversationId) {
+        when(participantRepository.findByUserIdAndConversationId(userId, conversationId))
+            .thenReturn(Optional.of(new Participant()));
+    }
+}